@@ -160,6 +160,30 @@ public class BasicClientConnectionManager implements IConnectionManager {
         releaseOrShutdownConnection(connectionBean, false);
     }
 
+    /**
+     * <p>Release connection.</p>
+     * Set the given connection to idle, whichever thread it was registered for.<br>
+     *
+     * @param connectionBean the connection bean
+     * @param connection     the connection
+     */
+    @Override
+    public void releaseConnection(ConnectionBean connectionBean, IConnection connection) {
+        connectionMonitor.notifyObservers(this, connectionBean, connections);
+        Map<Thread, ConnectionManagerBean> threadManagerBeanMap = connections.get(connectionBean);
+        if (null == threadManagerBeanMap) {
+            LOG.info("Then host {} 's do not has any connections!", connectionBean.getHost());
+            return;
+        }
+        for (ConnectionManagerBean managerBean : threadManagerBeanMap.values()) {
+            if (managerBean.getConnectionClient() == connection) {
+                operationFactory.setConnection2Idle(managerBean);
+                return;
+            }
+        }
+        LOG.info("Then host {} 's connection has been closed!", connectionBean.getHost());
+    }
+
     /**
      * Close connection.
      *
@@ -270,9 +294,18 @@ public class BasicClientConnectionManager implements IConnectionManager {
                 .isConnectionBorrowed(true)
                 .connectionClient(connection)
                 .build();
-        Map<Thread, ConnectionManagerBean> managerBeanThreadLocal = new ConcurrentHashMap<>(DEFAULT_MAX_CONNECTION_SIZE);
-        managerBeanThreadLocal.put(Thread.currentThread(), managerBean);
-        connections.put(connectionBean, managerBeanThreadLocal);
+        // Keep the connections of the other threads, only the entry of this thread is replaced.
+        ConnectionManagerBean staleBean = connections
+                .computeIfAbsent(connectionBean, bean -> new ConcurrentHashMap<>(DEFAULT_MAX_CONNECTION_SIZE))
+                .put(Thread.currentThread(), managerBean);
+        if (staleBean != null && staleBean.getConnectionClient() != null) {
+            // The entry of this thread is only replaced when its connection is no longer valid.
+            try {
+                staleBean.getConnectionClient().disconnect();
+            } catch (ConnectionException e) {
+                LOG.error("Failed to disconnect the stale connection of host {}", connectionBean.getHost(), e);
+            }
+        }
         LOG.debug("New a connection for host {}, thread {}",
                 connectionBean.getHost(), Thread.currentThread().getName());
         return connection;
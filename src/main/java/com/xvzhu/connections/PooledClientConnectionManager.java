@@ -21,8 +21,10 @@ import org.apache.commons.pool2.impl.GenericObjectPool;
 import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import java.util.Deque;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
 
 /**
  * The type Pooled sftp client connection manager.
@@ -43,6 +45,17 @@ public class PooledClientConnectionManager implements IConnectionManager {
 
     private GenericObjectPool<IConnection> connectionPool;
 
+    /**
+     * The connections borrowed by each thread, the latest borrowed is returned first.
+     */
+    private ThreadLocal<Deque<IConnection>> borrowedConnections = ThreadLocal.withInitial(ConcurrentLinkedDeque::new);
+
+    /**
+     * The borrowed connections to the deque of the borrowing thread,
+     * so a connection can be released by another thread.
+     */
+    private Map<IConnection, Deque<IConnection>> borrowers = new ConcurrentHashMap<>();
+
     /**
      * monitor container.<br>
      * Static container for monitor all connections for each host, thread.
@@ -74,7 +87,10 @@ public class PooledClientConnectionManager implements IConnectionManager {
             throws ConnectionException {
         connectionMonitor.notifyObservers(this, connectionBean, connections);
         try {
-            return (T) connectionPool.borrowObject(connectionManagerConfig.getBorrowMaxWaitTimeMS());
+            IConnection connection = connectionPool.borrowObject(connectionManagerConfig.getBorrowMaxWaitTimeMS());
+            borrowedConnections.get().push(connection);
+            borrowers.put(connection, borrowedConnections.get());
+            return (T) connection;
         } catch (Exception e) {
             LOG.error("Failed to borrow connection", e);
             throw new ConnectionException("Failed to borrow connection.");
@@ -82,13 +98,38 @@ public class PooledClientConnectionManager implements IConnectionManager {
     }
 
     /**
-     * Release connection.
+     * <p>Release connection.</p>
+     * Return the latest connection borrowed by current thread to the pool.<br>
      *
      * @param connectionBean the connection bean
      */
     @Override
     public void releaseConnection(ConnectionBean connectionBean) {
-        LOG.error("Not need to release.");
+        IConnection connection = borrowedConnections.get().poll();
+        if (connection == null) {
+            LOG.info("The thread {} has no connection to release.", Thread.currentThread().getName());
+            return;
+        }
+        borrowers.remove(connection);
+        connectionPool.returnObject(connection);
+    }
+
+    /**
+     * <p>Release connection.</p>
+     * Return the connection to the pool, it is removed from the connections of the borrowing thread.<br>
+     *
+     * @param connectionBean the connection bean
+     * @param connection     the connection
+     */
+    @Override
+    public void releaseConnection(ConnectionBean connectionBean, IConnection connection) {
+        Deque<IConnection> borrowed = borrowers.remove(connection);
+        if (borrowed == null) {
+            LOG.info("The connection has been released.");
+            return;
+        }
+        borrowed.removeFirstOccurrence(connection);
+        connectionPool.returnObject(connection);
     }
 
     /**
@@ -28,6 +28,56 @@ public class ConnectionConst {
      */
     public static final String POOLED_DEFAULT_THREAD_NAME = "Pooled-default-thread";
 
+    /**
+     * The constant SFTP_WALKER_THREAD_NAME.
+     */
+    public static final String SFTP_WALKER_THREAD_NAME = "Sftp-Walker-Thread-";
+
+    /**
+     * The constant SFTP_SYNC_THREAD_NAME.
+     */
+    public static final String SFTP_SYNC_THREAD_NAME = "Sftp-Sync-Thread-";
+
+    /**
+     * The constant SFTP_BATCH_THREAD_NAME.
+     */
+    public static final String SFTP_BATCH_THREAD_NAME = "Sftp-Batch-Thread-";
+
+    /**
+     * The constant SFTP_SCHEDULER_THREAD_NAME.
+     */
+    public static final String SFTP_SCHEDULER_THREAD_NAME = "Sftp-Scheduler-Thread-";
+
+    /**
+     * The constant SFTP_SPOOL_THREAD_NAME.
+     */
+    public static final String SFTP_SPOOL_THREAD_NAME = "Sftp-Spool-Thread-";
+
+    /**
+     * The constant SFTP_WATCHER_THREAD_NAME.
+     */
+    public static final String SFTP_WATCHER_THREAD_NAME = "Sftp-Watcher-Thread-";
+
+    /**
+     * The constant SFTP_TAIL_THREAD_NAME.
+     */
+    public static final String SFTP_TAIL_THREAD_NAME = "Sftp-Tail-Thread-";
+
+    /**
+     * The constant SFTP_ASYNC_THREAD_NAME.
+     */
+    public static final String SFTP_ASYNC_THREAD_NAME = "Sftp-Async-Thread-";
+
+    /**
+     * The constant SHELL_FAN_OUT_THREAD_NAME.
+     */
+    public static final String SHELL_FAN_OUT_THREAD_NAME = "Shell-Fan-Out-Thread-";
+
+    /**
+     * The constant SHELL_FAN_OUT_BORROW_THREAD_NAME.
+     */
+    public static final String SHELL_FAN_OUT_BORROW_THREAD_NAME = "Shell-Fan-Out-Borrow-Thread-";
+
     private ConnectionConst() {
 
     }
@@ -29,15 +29,30 @@ public interface IConnectionManager {
 
     /**
      * <p>Release connection.</p>
-     * Used for Basic Connection API.<br>
      * Release connection to manager, don't close.<br>
-     * If a pooled manager, do not need to invoke this API, you can reuse directly.<br>
+     * If a pooled manager, the latest connection borrowed by current thread is returned to the pool.<br>
      *
      * @param connectionBean the connection bean
      * @throws ConnectionException the connection exception
      */
     void releaseConnection(ConnectionBean connectionBean) throws ConnectionException;
 
+    /**
+     * <p>Release the connection.</p>
+     * Release the given connection to manager, don't close.<br>
+     * The thread may differ from the borrower, so a connection can be held by an object
+     * instead of the borrowing thread, and released when the object is closed.<br>
+     * The default falls back to {@link #releaseConnection(ConnectionBean)}, which is only right
+     * when the calling thread is the borrower. The managers of this library override it.<br>
+     *
+     * @param connectionBean the connection bean
+     * @param connection     the connection
+     * @throws ConnectionException the connection exception
+     */
+    default void releaseConnection(ConnectionBean connectionBean, IConnection connection) throws ConnectionException {
+        releaseConnection(connectionBean);
+    }
+
     /**
      * <p>Close connection.</p>
      * Close connection or connection pool.<Br>
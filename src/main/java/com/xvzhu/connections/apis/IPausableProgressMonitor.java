@@ -0,0 +1,24 @@
+/*
+ * Copyright (c)  Xvzhu 2020.  All rights reserved.
+ */
+
+package com.xvzhu.connections.apis;
+
+import com.jcraft.jsch.SftpProgressMonitor;
+
+/**
+ * The progress monitor which is told when the transfer was paused on purpose.
+ *
+ * @author : xvzhu
+ * @version V1.0
+ * @since Date : 2020-03-29 15:20
+ */
+public interface IPausableProgressMonitor extends SftpProgressMonitor {
+    /**
+     * <p>Called in the transfer thread after the transfer was paused, by the bandwidth throttle for example.</p>
+     * The pause is not a stall of the server, so it is not counted into the gap between two progresses.<br>
+     *
+     * @param nanos the paused nanos
+     */
+    void pause(long nanos);
+}
@@ -0,0 +1,24 @@
+/*
+ * Copyright (c)  Xvzhu 2020.  All rights reserved.
+ */
+
+package com.xvzhu.connections.apis;
+
+/**
+ * <p>The producer of items for the subscribers, with the same contract as java.util.concurrent.Flow.Publisher.</p>
+ * The items are only produced on the demand of the subscriber, so nothing is buffered for a slow subscriber.<br>
+ *
+ * @param <T> the type of the items
+ * @author : xvzhu
+ * @version V1.0
+ * @since Date : 2020-04-05 15:10
+ */
+@FunctionalInterface
+public interface IPublisher<T> {
+    /**
+     * Subscribe, each subscription is independent and starts from the first item.
+     *
+     * @param subscriber the subscriber
+     */
+    void subscribe(ISubscriber<? super T> subscriber);
+}
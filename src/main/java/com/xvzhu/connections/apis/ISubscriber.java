@@ -0,0 +1,42 @@
+/*
+ * Copyright (c)  Xvzhu 2020.  All rights reserved.
+ */
+
+package com.xvzhu.connections.apis;
+
+/**
+ * <p>The receiver of items, with the same contract as java.util.concurrent.Flow.Subscriber.</p>
+ * The methods of a subscription are called in sequence, never at the same time.<br>
+ *
+ * @param <T> the type of the items
+ * @author : xvzhu
+ * @version V1.0
+ * @since Date : 2020-04-05 15:10
+ */
+public interface ISubscriber<T> {
+    /**
+     * On subscribe, called before any other method, no item is sent before the first request.
+     *
+     * @param subscription the subscription
+     */
+    void onSubscribe(ISubscription subscription);
+
+    /**
+     * On next item.
+     *
+     * @param item the item
+     */
+    void onNext(T item);
+
+    /**
+     * On error, no method is called after it.
+     *
+     * @param throwable the throwable
+     */
+    void onError(Throwable throwable);
+
+    /**
+     * On complete, no method is called after it.
+     */
+    void onComplete();
+}
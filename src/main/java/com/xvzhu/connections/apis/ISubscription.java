@@ -0,0 +1,27 @@
+/*
+ * Copyright (c)  Xvzhu 2020.  All rights reserved.
+ */
+
+package com.xvzhu.connections.apis;
+
+/**
+ * <p>The link between a publisher and a subscriber, with the same contract as java.util.concurrent.Flow.Subscription.</p>
+ * The methods may be called by any thread.<br>
+ *
+ * @author : xvzhu
+ * @version V1.0
+ * @since Date : 2020-04-05 15:10
+ */
+public interface ISubscription {
+    /**
+     * Request more items, the demand is added to the not yet fulfilled demand.
+     *
+     * @param count the count, must be positive
+     */
+    void request(long count);
+
+    /**
+     * Cancel, the publisher stops sending items and releases its resources.
+     */
+    void cancel();
+}
@@ -0,0 +1,25 @@
+/*
+ * Copyright (c)  Xvzhu 2020.  All rights reserved.
+ */
+
+package com.xvzhu.connections.apis;
+
+import lombok.NonNull;
+
+/**
+ * The listener of the finished transfers.
+ *
+ * @author : xvzhu
+ * @version V1.0
+ * @since Date : 2020-03-29 09:12
+ */
+@FunctionalInterface
+public interface ITransferListener {
+    /**
+     * <p>Called in the transfer thread when a transfer is finished.</p>
+     * The listener should return quickly, the connection is not released before it returns.<br>
+     *
+     * @param statistic the statistic
+     */
+    void onTransferCompleted(@NonNull TransferStatistic statistic);
+}
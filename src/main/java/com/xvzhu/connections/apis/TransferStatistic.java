@@ -0,0 +1,39 @@
+/*
+ * Copyright (c)  Xvzhu 2020.  All rights reserved.
+ */
+
+package com.xvzhu.connections.apis;
+
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * The statistic of a single finished transfer.
+ *
+ * @author : xvzhu
+ * @version V1.0
+ * @since Date : 2020-03-29 09:12
+ */
+@Data
+@Builder
+public class TransferStatistic {
+    private static final long MILLIS_PER_SECOND = 1000L;
+
+    private ConnectionBean connectionBean;
+    private boolean upload;
+    private String source;
+    private String destination;
+    private long bytes;
+    private long durationMillis;
+    private int stallCount;
+    private long stallMillis;
+
+    /**
+     * Gets the throughput of the transfer.
+     *
+     * @return the bytes per second
+     */
+    public long getBytesPerSecond() {
+        return durationMillis == 0L ? bytes * MILLIS_PER_SECOND : bytes * MILLIS_PER_SECOND / durationMillis;
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright (c)  Xvzhu 2020.  All rights reserved.
+ */
+
+package com.xvzhu.connections.apis;
+
+import lombok.Data;
+import lombok.NonNull;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The aggregated transfer statistic of a host.
+ *
+ * @author : xvzhu
+ * @version V1.0
+ * @since Date : 2020-03-29 09:12
+ */
+@Data
+public class TransferSummary {
+    private static final long MILLIS_PER_SECOND = 1000L;
+
+    private final AtomicLong transfers = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+    private final AtomicLong durationMillis = new AtomicLong();
+    private final AtomicLong stallCount = new AtomicLong();
+    private final AtomicLong stallMillis = new AtomicLong();
+    private volatile long lastBytesPerSecond;
+
+    /**
+     * Add a finished transfer.
+     *
+     * @param statistic the statistic
+     */
+    public void add(@NonNull TransferStatistic statistic) {
+        transfers.incrementAndGet();
+        bytes.addAndGet(statistic.getBytes());
+        durationMillis.addAndGet(statistic.getDurationMillis());
+        stallCount.addAndGet(statistic.getStallCount());
+        stallMillis.addAndGet(statistic.getStallMillis());
+        lastBytesPerSecond = statistic.getBytesPerSecond();
+    }
+
+    /**
+     * <p>Gets the average throughput of a single transfer.</p>
+     * Parallel transfers are summed up by duration, so the throughput of the link can be higher.<br>
+     *
+     * @return the bytes per second
+     */
+    public long getBytesPerSecond() {
+        long duration = durationMillis.get();
+        return duration == 0L ? bytes.get() * MILLIS_PER_SECOND : bytes.get() * MILLIS_PER_SECOND / duration;
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (c)  Xvzhu 2020.  All rights reserved.
+ */
+
+package com.xvzhu.connections.apis.protocol;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * The checksum algorithms, with the remote command computing the same digest.
+ *
+ * @author : xvzhu
+ * @version V1.0
+ * @since Date : 2020-03-28 10:36
+ */
+public enum ChecksumAlgorithm {
+    /**
+     * Md5 checksum algorithm.
+     */
+    MD5("MD5", "md5sum"),
+    /**
+     * Sha256 checksum algorithm.
+     */
+    SHA256("SHA-256", "sha256sum");
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private String digestName;
+    private String command;
+
+    ChecksumAlgorithm(String digestName, String command) {
+        this.digestName = digestName;
+        this.command = command;
+    }
+
+    /**
+     * Gets the remote command.
+     *
+     * @return the command
+     */
+    public String getCommand() {
+        return command;
+    }
+
+    /**
+     * Compute the checksum of the local file.
+     *
+     * @param localFile the local file
+     * @return the lower case hex checksum
+     * @throws IOException the io exception
+     */
+    public String checksum(Path localFile) throws IOException {
+        MessageDigest digest = newDigest();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        try (FileChannel channel = FileChannel.open(localFile, StandardOpenOption.READ)) {
+            while (channel.read(buffer) != -1) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        }
+        return toHex(digest.digest());
+    }
+
+    /**
+     * Compute the checksum of the stream, the stream is read to the end but not closed.
+     *
+     * @param in     the in
+     * @param buffer the buffer to read with
+     * @return the lower case hex checksum
+     * @throws IOException the io exception
+     */
+    public String checksum(InputStream in, byte[] buffer) throws IOException {
+        MessageDigest digest = newDigest();
+        int size;
+        while ((size = in.read(buffer)) != -1) {
+            digest.update(buffer, 0, size);
+        }
+        return toHex(digest.digest());
+    }
+
+    private MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance(digestName);
+        } catch (NoSuchAlgorithmException e) {
+            // MD5 and SHA-256 are required for every java platform.
+            throw new IllegalStateException("The digest is not supported: " + digestName, e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[i * 2] = HEX_DIGITS[(bytes[i] >> 4) & 0x0f];
+            chars[i * 2 + 1] = HEX_DIGITS[bytes[i] & 0x0f];
+        }
+        return new String(chars);
+    }
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright (c)  Xvzhu 2020.  All rights reserved.
+ */
+
+package com.xvzhu.connections.apis.protocol;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * <p>The result of a remote command.</p>
+ * The output of a stream is kept up to the limit of the connection, the rest is read and dropped,
+ * the truncated flag tells whether the output is complete.<br>
+ *
+ * @author : xvzhu
+ * @version V1.0
+ * @since Date : 2020-04-06 09:40
+ */
+@Data
+@AllArgsConstructor
+public class ExecResult {
+    private int exitStatus;
+    private String stdout;
+    private String stderr;
+    private boolean truncated;
+    private long durationMillis;
+
+    /**
+     * Is the command successful.
+     *
+     * @return true if the exit status is 0
+     */
+    public boolean isSuccess() {
+        return exitStatus == 0;
+    }
+}
@@ -8,7 +8,13 @@ import com.jcraft.jsch.ChannelSftp;
 import com.xvzhu.connections.apis.ConnectionException;
 
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
 import java.util.List;
+import java.util.function.Predicate;
 
 /**
  * Sftp Connection API.
@@ -33,6 +39,16 @@ public interface ISftpConnection extends IConnection{
      */
     String currentDirectory() throws ConnectionException;
 
+    /**
+     * <p>Change directory.</p>
+     * The other operations work on the given paths and never change the directory.<br>
+     * The current directory is tracked, so changing to it again sends no request.<br>
+     *
+     * @param dir the dir
+     * @throws ConnectionException the connection exception
+     */
+    void changeDirectory(String dir) throws ConnectionException;
+
     /**
      * List list.
      *
@@ -41,6 +57,18 @@ public interface ISftpConnection extends IConnection{
      */
     List<String> list(String path);
 
+    /**
+     * <p>Stream the entries of the path to the consumer.</p>
+     * Entries are handed over while the listing is read, nothing is materialized.<br>
+     * The entries "." and ".." are skipped.<br>
+     *
+     * @param path       the path
+     * @param nameFilter the file name filter
+     * @param consumer   the consumer, return false to stop listing
+     * @throws ConnectionException the connection exception
+     */
+    void list(String path, Predicate<String> nameFilter, ISftpEntryConsumer consumer) throws ConnectionException;
+
     /**
      * Rename.
      *
@@ -50,6 +78,31 @@ public interface ISftpConnection extends IConnection{
      */
     void rename(String oldName, String newName) throws ConnectionException;
 
+    /**
+     * <p>Copy the remote file or directory to the target path on the same server.</p>
+     * The copy is made by the remote cp over an exec channel of the same session, so the data never leaves the server.
+     * A directory is copied recursively, its target must not exist. An existing target file is overwritten,
+     * the target of a file must not be a directory.
+     * If the remote cp is not available, the data is copied through this client.<br>
+     *
+     * @param source the source path
+     * @param target the target path of the copy
+     * @throws ConnectionException the connection exception
+     */
+    void copy(String source, String target) throws ConnectionException;
+
+    /**
+     * <p>Move the remote file or directory to the target path on the same server, by renames only.</p>
+     * If the target does not exist, the move is a single rename. If the target directory exists,
+     * the entries of the source are renamed into it one by one, the sub directories existing on both sides
+     * are merged the same way, the files existing on both sides are replaced, then the source is removed.<br>
+     *
+     * @param source the source path
+     * @param target the target path
+     * @throws ConnectionException the connection exception
+     */
+    void move(String source, String target) throws ConnectionException;
+
     /**
      * Download byte [ ].
      *
@@ -60,6 +113,32 @@ public interface ISftpConnection extends IConnection{
      */
     InputStream download(String dir, String name) throws ConnectionException;
 
+    /**
+     * <p>Read a range of the remote file.</p>
+     * The read starts at the offset of the remote file, the bytes before it are not transferred.
+     * Less bytes are read only at the end of the file.<br>
+     *
+     * @param path   the path
+     * @param offset the offset in the remote file
+     * @param length the max bytes to read, limited by the remaining of the target
+     * @param target the target buffer
+     * @return the read bytes, or -1 if the offset is at or after the end of the file
+     * @throws ConnectionException the connection exception
+     */
+    int read(String path, long offset, int length, ByteBuffer target) throws ConnectionException;
+
+    /**
+     * <p>Open a read only channel over the remote file.</p>
+     * The channel reads from its position with offset reads, sequential reads continue
+     * the same request stream and a new position starts a new one.
+     * The channel uses this connection, so the connection must be held until the channel is closed.<br>
+     *
+     * @param path the path
+     * @return the seekable byte channel
+     * @throws ConnectionException the connection exception
+     */
+    SeekableByteChannel openChannel(String path) throws ConnectionException;
+
     /**
      * Upload.
      *
@@ -70,6 +149,95 @@ public interface ISftpConnection extends IConnection{
      */
     void upload(String dir, String name, InputStream in) throws ConnectionException;
 
+    /**
+     * <p>Download the remote file into the target channel.</p>
+     * The bytes are copied through a reusable buffer of the connection, the target is not closed.<br>
+     *
+     * @param dir    the dir
+     * @param name   the name
+     * @param target the target channel
+     * @return the transferred bytes
+     * @throws ConnectionException the connection exception
+     */
+    long download(String dir, String name, WritableByteChannel target) throws ConnectionException;
+
+    /**
+     * <p>Upload the content of the source channel to the remote file.</p>
+     * The bytes are copied through a reusable buffer of the connection, the source is not closed.<br>
+     *
+     * @param dir    the dir
+     * @param name   the name
+     * @param source the source channel
+     * @return the transferred bytes
+     * @throws ConnectionException the connection exception
+     */
+    long upload(String dir, String name, ReadableByteChannel source) throws ConnectionException;
+
+    /**
+     * <p>Upload the local file to the remote file.</p>
+     * The local file is memory mapped, so no read buffer is needed on the local side.<br>
+     *
+     * @param dir       the dir
+     * @param name      the name
+     * @param localFile the local file
+     * @return the transferred bytes
+     * @throws ConnectionException the connection exception
+     */
+    long upload(String dir, String name, Path localFile) throws ConnectionException;
+
+    /**
+     * <p>Upload the local directory tree into the remote directory in a single stream.</p>
+     * A tar archive of the tree is built on the fly and extracted by the remote tar over an exec channel
+     * of the same session, so a file costs a few header bytes instead of several round trips.
+     * The tree is uploaded file by file over sftp if the remote tar is not available.<br>
+     * Only the directories and the regular files are uploaded, the existing remote files are overwritten.<br>
+     *
+     * @param localDir  the local dir
+     * @param remoteDir the remote dir, created if it does not exist
+     * @return the count of the uploaded files
+     * @throws ConnectionException the connection exception
+     */
+    long uploadTree(Path localDir, String remoteDir) throws ConnectionException;
+
+    /**
+     * <p>Download the remote directory tree into the local directory in a single stream.</p>
+     * The remote tar archives the tree into the exec channel, the archive is extracted locally while it arrives.
+     * The tree is downloaded file by file over sftp if the remote tar is not available.<br>
+     * Only the directories and the regular files are downloaded, an entry leaving the local directory is refused.<br>
+     *
+     * @param remoteDir the remote dir
+     * @param localDir  the local dir, created if it does not exist
+     * @return the count of the downloaded files
+     * @throws ConnectionException the connection exception
+     */
+    long downloadTree(String remoteDir, Path localDir) throws ConnectionException;
+
+    /**
+     * <p>Upload the local file only if the remote file has different content.</p>
+     * The checksums are only compared when the sizes are equal.<br>
+     *
+     * @param dir       the dir
+     * @param name      the name
+     * @param localFile the local file
+     * @param algorithm the checksum algorithm
+     * @return true if the file was uploaded, false if the remote file already matches
+     * @throws ConnectionException the connection exception
+     */
+    boolean uploadIfChanged(String dir, String name, Path localFile, ChecksumAlgorithm algorithm)
+            throws ConnectionException;
+
+    /**
+     * <p>Compute the checksum of the remote file.</p>
+     * The checksum is computed by the remote command over an exec channel of the same session,
+     * the file content is streamed and hashed locally if the command is not available.<br>
+     *
+     * @param path      the path
+     * @param algorithm the checksum algorithm
+     * @return the lower case hex checksum
+     * @throws ConnectionException the connection exception
+     */
+    String checksum(String path, ChecksumAlgorithm algorithm) throws ConnectionException;
+
     /**
      * Delete directory.
      *
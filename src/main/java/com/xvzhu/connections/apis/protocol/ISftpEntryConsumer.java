@@ -0,0 +1,26 @@
+/*
+ * Copyright (c)  Xvzhu 2020.  All rights reserved.
+ */
+
+package com.xvzhu.connections.apis.protocol;
+
+import com.jcraft.jsch.ChannelSftp;
+
+/**
+ * The consumer of streaming directory listing.
+ *
+ * @author : xvzhu
+ * @version V1.0
+ * @since Date : 2020-03-21 10:12
+ */
+@FunctionalInterface
+public interface ISftpEntryConsumer {
+    /**
+     * <p>Accept an entry as soon as it arrives from the server.</p>
+     * The entry contains the file name and the {@link com.jcraft.jsch.SftpATTRS} of the file.<br>
+     *
+     * @param entry the entry
+     * @return true to continue listing, false to stop listing
+     */
+    boolean accept(ChannelSftp.LsEntry entry);
+}
@@ -0,0 +1,31 @@
+/*
+ * Copyright (c)  Xvzhu 2020.  All rights reserved.
+ */
+
+package com.xvzhu.connections.apis.protocol;
+
+/**
+ * <p>The listener of the lines appended to a followed remote file.</p>
+ * The lines are delivered by the follower thread, which polls all files of the host,
+ * so the listener should return quickly.<br>
+ *
+ * @author : xvzhu
+ * @version V1.0
+ * @since Date : 2020-04-04 14:20
+ */
+public interface ISftpTailListener {
+    /**
+     * On line, the line separator is not included.
+     *
+     * @param path the path of the file
+     * @param line the line
+     */
+    void onLine(String path, String line);
+
+    /**
+     * On rotated, the file was truncated or replaced, and is followed again from the beginning.
+     *
+     * @param path the path of the file
+     */
+    void onRotated(String path);
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright (c)  Xvzhu 2020.  All rights reserved.
+ */
+
+package com.xvzhu.connections.apis.protocol;
+
+import com.jcraft.jsch.SftpATTRS;
+import com.xvzhu.connections.apis.ConnectionException;
+
+/**
+ * <p>The visitor of remote tree walking.</p>
+ * Directories are visited in parallel, so the visitor must be thread safe.<br>
+ * The attributes are the ones returned by the listing of the parent directory.<br>
+ *
+ * @author : xvzhu
+ * @version V1.0
+ * @since Date : 2020-03-22 14:05
+ */
+public interface ISftpTreeVisitor {
+    /**
+     * Pre visit directory.
+     *
+     * @param connection the connection
+     * @param dir        the dir
+     * @param attrs      the attrs
+     * @return true to walk into the directory, false to skip it
+     * @throws ConnectionException the connection exception
+     */
+    boolean preVisitDirectory(ISftpConnection connection, String dir, SftpATTRS attrs) throws ConnectionException;
+
+    /**
+     * Visit file, symbolic links are visited as files.
+     *
+     * @param connection the connection
+     * @param path       the path
+     * @param attrs      the attrs
+     * @throws ConnectionException the connection exception
+     */
+    void visitFile(ISftpConnection connection, String path, SftpATTRS attrs) throws ConnectionException;
+
+    /**
+     * Post visit directory, invoked after all the children of the directory were visited.
+     *
+     * @param connection the connection
+     * @param dir        the dir
+     * @throws ConnectionException the connection exception
+     */
+    void postVisitDirectory(ISftpConnection connection, String dir) throws ConnectionException;
+}
@@ -0,0 +1,24 @@
+/*
+ * Copyright (c)  Xvzhu 2020.  All rights reserved.
+ */
+
+package com.xvzhu.connections.apis.protocol;
+
+/**
+ * <p>The listener of the changes of a watched remote directory.</p>
+ * The events are delivered by the watcher thread, which polls all directories of the host,
+ * so the listener should return quickly.<br>
+ *
+ * @author : xvzhu
+ * @version V1.0
+ * @since Date : 2020-04-02 20:15
+ */
+@FunctionalInterface
+public interface ISftpWatchListener {
+    /**
+     * On event.
+     *
+     * @param event the event
+     */
+    void onEvent(SftpWatchEvent event);
+}
@@ -5,6 +5,9 @@
 package com.xvzhu.connections.apis.protocol;
 
 import com.jcraft.jsch.ChannelShell;
+import com.xvzhu.connections.apis.ConnectionException;
+
+import java.util.List;
 
 /**
  * The interface Shell connection.
@@ -20,4 +23,71 @@ public interface IShellConnection extends IConnection {
      * @return the channel shell
      */
     ChannelShell getChannelShell();
+
+    /**
+     * <p>Run the command and wait for its exit.</p>
+     * The command runs on an exec channel of the session of this connection, so no new login is needed,
+     * and the interactive shell is not touched.<br>
+     * The stdout and the stderr are read at the same time into bounded buffers.<br>
+     *
+     * @param command            the command
+     * @param timeoutMilliSecond the timeout of the whole command
+     * @return the exec result
+     * @throws ConnectionException the connection exception, also thrown when the command timed out
+     */
+    ExecResult exec(String command, int timeoutMilliSecond) throws ConnectionException;
+
+    /**
+     * <p>Run the command, its output lines are delivered to the consumer as soon as they arrive.</p>
+     * The stdout and the stderr are decoded as UTF-8 into reused buffers, nothing is accumulated,
+     * so the memory stays constant however large the output is. A line over 64KB is delivered in pieces.<br>
+     * The lines are delivered by the calling thread, the output is not read while the consumer is busy,
+     * so the server is slowed down by the flow control of the session instead of the output being buffered.<br>
+     *
+     * @param command            the command
+     * @param timeoutMilliSecond the timeout of the whole command, including the time spent in the consumer
+     * @param consumer           the consumer
+     * @return the exit status, or -1 if the consumer stopped the command
+     * @throws ConnectionException the connection exception, also thrown when the command timed out
+     */
+    int exec(String command, int timeoutMilliSecond, IShellLineConsumer consumer) throws ConnectionException;
+
+    /**
+     * <p>Run the command in the persistent shell of this connection.</p>
+     * The shell is opened by the first command and kept for the next ones,
+     * so a command costs a round trip instead of a channel open.<br>
+     * The stderr is merged into the stdout.
+     * After a timeout the shell is closed, the next command opens a new one.<br>
+     *
+     * @param command            the command
+     * @param timeoutMilliSecond the timeout milli second
+     * @return the exec result
+     * @throws ConnectionException the connection exception
+     */
+    ExecResult execInShell(String command, int timeoutMilliSecond) throws ConnectionException;
+
+    /**
+     * <p>Run the command in the persistent shell, its output lines are delivered to the consumer as they arrive.</p>
+     * The stderr is merged into the stdout, so every line is delivered as a stdout line.
+     * If the consumer stops the command, the shell is closed, the next command opens a new one.<br>
+     *
+     * @param command            the command
+     * @param timeoutMilliSecond the timeout milli second
+     * @param consumer           the consumer
+     * @return the exit status, or -1 if the consumer stopped the command
+     * @throws ConnectionException the connection exception
+     */
+    int execInShell(String command, int timeoutMilliSecond, IShellLineConsumer consumer) throws ConnectionException;
+
+    /**
+     * <p>Run the commands in sequence in the persistent shell of this connection.</p>
+     * The commands are sent at once, so the whole batch costs a single round trip.
+     * A command runs even if the previous one failed.<br>
+     *
+     * @param commands           the commands
+     * @param timeoutMilliSecond the timeout of the whole batch
+     * @return the results in the order of the commands
+     * @throws ConnectionException the connection exception
+     */
+    List<ExecResult> execInShell(List<String> commands, int timeoutMilliSecond) throws ConnectionException;
 }
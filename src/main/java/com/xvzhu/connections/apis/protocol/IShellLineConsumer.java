@@ -0,0 +1,28 @@
+/*
+ * Copyright (c)  Xvzhu 2020.  All rights reserved.
+ */
+
+package com.xvzhu.connections.apis.protocol;
+
+/**
+ * The consumer of the streaming output lines of a command.
+ *
+ * @author : xvzhu
+ * @version V1.0
+ * @since Date : 2020-04-08 09:30
+ */
+@FunctionalInterface
+public interface IShellLineConsumer {
+    /**
+     * <p>Accept a line as soon as it is decoded, the line separator is not included.</p>
+     * The line is backed by a reused buffer, it is only valid during this call,
+     * call toString() on it to keep it.<br>
+     * The next bytes are not read before this call returns, so a slow consumer slows down the command
+     * instead of piling up its output in memory.<br>
+     *
+     * @param line   the line
+     * @param stderr true if the line comes from the stderr
+     * @return true to continue reading, false to stop the command
+     */
+    boolean accept(CharSequence line, boolean stderr);
+}
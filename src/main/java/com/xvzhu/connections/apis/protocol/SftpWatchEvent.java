@@ -0,0 +1,55 @@
+/*
+ * Copyright (c)  Xvzhu 2020.  All rights reserved.
+ */
+
+package com.xvzhu.connections.apis.protocol;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * The change of an entry of a watched remote directory.
+ *
+ * @author : xvzhu
+ * @version V1.0
+ * @since Date : 2020-04-02 20:15
+ */
+@Data
+@AllArgsConstructor
+public class SftpWatchEvent {
+    private Kind kind;
+
+    private String dir;
+
+    private String name;
+
+    /**
+     * The size of the entry, the last known one if deleted.
+     */
+    private long size;
+
+    /**
+     * The mtime of the entry in seconds, the last known one if deleted.
+     */
+    private int mtime;
+
+    private boolean directory;
+
+    /**
+     * The kind of the change.
+     */
+    public enum Kind {
+        /**
+         * The entry was created.
+         */
+        CREATED,
+        /**
+         * The size or the mtime of the entry was changed.
+         */
+        MODIFIED,
+        /**
+         * The entry was deleted.
+         */
+        DELETED
+    }
+}
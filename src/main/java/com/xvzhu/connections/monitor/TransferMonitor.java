@@ -0,0 +1,147 @@
+/*
+ * Copyright (c)  Xvzhu 2020.  All rights reserved.
+ */
+
+package com.xvzhu.connections.monitor;
+
+import com.jcraft.jsch.SftpProgressMonitor;
+import com.xvzhu.connections.apis.ConnectionBean;
+import com.xvzhu.connections.apis.ITransferListener;
+import com.xvzhu.connections.apis.TransferStatistic;
+import com.xvzhu.connections.apis.TransferSummary;
+import lombok.NonNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * <p>Transfer Monitor.</p>
+ * The sftp transfers report the bytes, the duration and the stalls by a progress monitor.<br>
+ * The statistics are aggregated per host, and passed to the attached listeners.<br>
+ * A stall is a gap between two progress reports longer than the stall threshold.<br>
+ *
+ * @author : xvzhu
+ * @version V1.0
+ * @since Date : 2020-03-29 09:12
+ */
+public class TransferMonitor {
+    private static final Logger LOG = LoggerFactory.getLogger(TransferMonitor.class);
+    private static final long DEFAULT_STALL_THRESHOLD_MS = 1000L;
+
+    private final Map<ConnectionBean, TransferSummary> summaries = new ConcurrentHashMap<>();
+    private final List<ITransferListener> listeners = new CopyOnWriteArrayList<>();
+    private volatile long stallThresholdMillis = DEFAULT_STALL_THRESHOLD_MS;
+
+    private static class TransferMonitorHolder {
+        private static final TransferMonitor INSTANCE = new TransferMonitor();
+    }
+
+    private TransferMonitor() {
+    }
+
+    /**
+     * Gets instance.
+     *
+     * @return the instance
+     */
+    public static TransferMonitor getInstance() {
+        return TransferMonitorHolder.INSTANCE;
+    }
+
+    /**
+     * Create the progress monitor of a single transfer.
+     *
+     * @param connectionBean the connection bean
+     * @return the progress monitor
+     */
+    public SftpProgressMonitor newProgressMonitor(@NonNull ConnectionBean connectionBean) {
+        return new TransferProgressMonitor(this, connectionBean, stallThresholdMillis);
+    }
+
+    /**
+     * Gets the summary of the host.
+     *
+     * @param connectionBean the connection bean
+     * @return the summary, empty if nothing was transferred
+     */
+    public TransferSummary getSummary(@NonNull ConnectionBean connectionBean) {
+        TransferSummary summary = summaries.get(connectionBean);
+        return summary == null ? new TransferSummary() : summary;
+    }
+
+    /**
+     * Gets the summaries of all hosts.
+     *
+     * @return the summaries
+     */
+    public Map<ConnectionBean, TransferSummary> getSummaries() {
+        return Collections.unmodifiableMap(summaries);
+    }
+
+    /**
+     * Reset the summary of the host.
+     *
+     * @param connectionBean the connection bean
+     */
+    public void reset(@NonNull ConnectionBean connectionBean) {
+        summaries.remove(connectionBean);
+    }
+
+    /**
+     * Attach the listener.
+     *
+     * @param listener the listener
+     */
+    public void attach(@NonNull ITransferListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Detach the listener.
+     *
+     * @param listener the listener
+     */
+    public void detach(@NonNull ITransferListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Gets stall threshold millis.
+     *
+     * @return the stall threshold millis
+     */
+    public long getStallThresholdMillis() {
+        return stallThresholdMillis;
+    }
+
+    /**
+     * <p>Sets stall threshold millis.</p>
+     * The threshold is applied to the transfers started later.<br>
+     *
+     * @param stallThresholdMillis the stall threshold millis
+     */
+    public void setStallThresholdMillis(long stallThresholdMillis) {
+        this.stallThresholdMillis = stallThresholdMillis;
+    }
+
+    /**
+     * Record the finished transfer.
+     *
+     * @param statistic the statistic
+     */
+    void record(TransferStatistic statistic) {
+        summaries.computeIfAbsent(statistic.getConnectionBean(), bean -> new TransferSummary()).add(statistic);
+        for (ITransferListener listener : listeners) {
+            try {
+                listener.onTransferCompleted(statistic);
+            } catch (RuntimeException e) {
+                LOG.error("Failed to notify the transfer listener.", e);
+            }
+        }
+    }
+}
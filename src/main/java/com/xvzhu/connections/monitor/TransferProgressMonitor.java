@@ -0,0 +1,87 @@
+/*
+ * Copyright (c)  Xvzhu 2020.  All rights reserved.
+ */
+
+package com.xvzhu.connections.monitor;
+
+import com.jcraft.jsch.SftpProgressMonitor;
+import com.xvzhu.connections.apis.ConnectionBean;
+import com.xvzhu.connections.apis.IPausableProgressMonitor;
+import com.xvzhu.connections.apis.TransferStatistic;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>The progress monitor of a single transfer.</p>
+ * It is called by the transfer thread only, so the state is not synchronized.<br>
+ *
+ * @author : xvzhu
+ * @version V1.0
+ * @since Date : 2020-03-29 09:12
+ */
+class TransferProgressMonitor implements IPausableProgressMonitor {
+    private final TransferMonitor transferMonitor;
+    private final ConnectionBean connectionBean;
+    private final long stallThresholdNanos;
+    private boolean upload;
+    private String source;
+    private String destination;
+    private long bytes;
+    private long startNanos;
+    private long lastCountNanos;
+    private int stallCount;
+    private long stallNanos;
+    private boolean ended;
+
+    TransferProgressMonitor(TransferMonitor transferMonitor, ConnectionBean connectionBean, long stallThresholdMillis) {
+        this.transferMonitor = transferMonitor;
+        this.connectionBean = connectionBean;
+        this.stallThresholdNanos = TimeUnit.MILLISECONDS.toNanos(stallThresholdMillis);
+    }
+
+    @Override
+    public void init(int op, String src, String dest, long max) {
+        upload = op == SftpProgressMonitor.PUT;
+        source = src;
+        destination = dest;
+        startNanos = System.nanoTime();
+        lastCountNanos = startNanos;
+    }
+
+    @Override
+    public boolean count(long count) {
+        long now = System.nanoTime();
+        long gap = now - lastCountNanos;
+        if (gap >= stallThresholdNanos) {
+            stallCount++;
+            stallNanos += gap;
+        }
+        lastCountNanos = now;
+        bytes += count;
+        return true;
+    }
+
+    @Override
+    public void pause(long nanos) {
+        lastCountNanos += nanos;
+    }
+
+    @Override
+    public void end() {
+        // A stream may be closed more than once.
+        if (ended) {
+            return;
+        }
+        ended = true;
+        transferMonitor.record(TransferStatistic.builder()
+                .connectionBean(connectionBean)
+                .upload(upload)
+                .source(source)
+                .destination(destination)
+                .bytes(bytes)
+                .durationMillis(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos))
+                .stallCount(stallCount)
+                .stallMillis(TimeUnit.NANOSECONDS.toMillis(stallNanos))
+                .build());
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright (c)  Xvzhu 2020.  All rights reserved.
+ */
+
+package com.xvzhu.connections.operation;
+
+import com.jcraft.jsch.SftpProgressMonitor;
+import com.xvzhu.connections.apis.ConnectionBean;
+import com.xvzhu.connections.apis.IPausableProgressMonitor;
+import lombok.NonNull;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Bandwidth Throttle.</p>
+ * The transfers of a host share the token bucket of the host, and all transfers share the global one.<br>
+ * The tokens are taken when the transfer stream reports the progress, so the throttle applies to
+ * uploads and downloads of every connection, pooled or not.<br>
+ * The limits can be changed at runtime, the running transfers follow the new limits at once.<br>
+ * The wait is reported to a {@link IPausableProgressMonitor}, so a throttled transfer is not seen as stalled.<br>
+ *
+ * @author : xvzhu
+ * @version V1.0
+ * @since Date : 2020-03-29 15:20
+ */
+public class BandwidthThrottle {
+    private static final long UNLIMITED = 0L;
+
+    private final TokenBucket globalBucket = new TokenBucket(UNLIMITED);
+    private final Map<ConnectionBean, TokenBucket> hostBuckets = new ConcurrentHashMap<>();
+
+    private static class BandwidthThrottleHolder {
+        private static final BandwidthThrottle INSTANCE = new BandwidthThrottle();
+    }
+
+    private BandwidthThrottle() {
+    }
+
+    /**
+     * Gets instance.
+     *
+     * @return the instance
+     */
+    public static BandwidthThrottle getInstance() {
+        return BandwidthThrottleHolder.INSTANCE;
+    }
+
+    /**
+     * Sets the global limit.
+     *
+     * @param bytesPerSecond the bytes per second, zero or negative for unlimited
+     */
+    public void setGlobalLimit(long bytesPerSecond) {
+        globalBucket.setBytesPerSecond(bytesPerSecond);
+    }
+
+    /**
+     * Gets the global limit.
+     *
+     * @return the bytes per second, zero or negative for unlimited
+     */
+    public long getGlobalLimit() {
+        return globalBucket.getBytesPerSecond();
+    }
+
+    /**
+     * Sets the limit of the host.
+     *
+     * @param connectionBean the connection bean
+     * @param bytesPerSecond the bytes per second, zero or negative for unlimited
+     */
+    public void setHostLimit(@NonNull ConnectionBean connectionBean, long bytesPerSecond) {
+        hostBuckets.computeIfAbsent(connectionBean, bean -> new TokenBucket(bytesPerSecond))
+                .setBytesPerSecond(bytesPerSecond);
+    }
+
+    /**
+     * Gets the limit of the host.
+     *
+     * @param connectionBean the connection bean
+     * @return the bytes per second, zero or negative for unlimited
+     */
+    public long getHostLimit(@NonNull ConnectionBean connectionBean) {
+        TokenBucket bucket = hostBuckets.get(connectionBean);
+        return bucket == null ? UNLIMITED : bucket.getBytesPerSecond();
+    }
+
+    /**
+     * Wait until the bytes of the host may be transferred.
+     *
+     * @param connectionBean the connection bean
+     * @param bytes          the bytes
+     * @return the waited nanos
+     */
+    public long acquire(@NonNull ConnectionBean connectionBean, long bytes) {
+        TokenBucket hostBucket = hostBuckets.get(connectionBean);
+        long waitNanos = Math.max(globalBucket.reserve(bytes), hostBucket == null ? 0L : hostBucket.reserve(bytes));
+        if (waitNanos <= 0L) {
+            return 0L;
+        }
+        long begin = System.nanoTime();
+        try {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return System.nanoTime() - begin;
+    }
+
+    /**
+     * Wrap the progress monitor of a transfer, the transfer waits for the tokens when it reports the progress.
+     *
+     * @param connectionBean the connection bean
+     * @param delegate       the delegate monitor
+     * @return the throttled progress monitor
+     */
+    public SftpProgressMonitor throttle(@NonNull ConnectionBean connectionBean, @NonNull SftpProgressMonitor delegate) {
+        return new SftpProgressMonitor() {
+            @Override
+            public void init(int op, String src, String dest, long max) {
+                delegate.init(op, src, dest, max);
+            }
+
+            @Override
+            public boolean count(long count) {
+                boolean proceed = delegate.count(count);
+                long waitedNanos = acquire(connectionBean, count);
+                // The wait is on purpose, the delegate must not see it as a stall of the server.
+                if (waitedNanos > 0L && delegate instanceof IPausableProgressMonitor) {
+                    ((IPausableProgressMonitor) delegate).pause(waitedNanos);
+                }
+                return proceed;
+            }
+
+            @Override
+            public void end() {
+                delegate.end();
+            }
+        };
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright (c)  Xvzhu 2020.  All rights reserved.
+ */
+
+package com.xvzhu.connections.operation;
+
+import lombok.NonNull;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>The thread factory of the worker threads.</p>
+ * Threads are daemon and named by the prefix and a sequence number.<br>
+ *
+ * @author : xvzhu
+ * @version V1.0
+ * @since Date : 2020-03-23 20:41
+ */
+public class NamedThreadFactory implements ThreadFactory {
+    private final String prefix;
+    private final AtomicInteger sequence = new AtomicInteger();
+
+    /**
+     * Instantiates a new Named thread factory.
+     *
+     * @param prefix the prefix of thread names
+     */
+    public NamedThreadFactory(@NonNull String prefix) {
+        this.prefix = prefix;
+    }
+
+    /**
+     * New thread.
+     *
+     * @param runnable the runnable
+     * @return the thread
+     */
+    @Override
+    public Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable);
+        thread.setName(prefix + sequence.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (c)  Xvzhu 2020.  All rights reserved.
+ */
+
+package com.xvzhu.connections.operation;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>The token bucket of a bandwidth limit.</p>
+ * The bucket holds at most one second of tokens, so an idle transfer can burst for one second.<br>
+ * A reservation larger than the available tokens is granted at once and the debt is paid by waiting,
+ * so a chunk larger than the bucket does not block forever.<br>
+ * The rate can be changed at any time, the reservations made later use the new rate.<br>
+ *
+ * @author : xvzhu
+ * @version V1.0
+ * @since Date : 2020-03-29 15:20
+ */
+public class TokenBucket {
+    private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1L);
+
+    private volatile long bytesPerSecond;
+    private double tokens;
+    private long lastRefillNanos = System.nanoTime();
+
+    /**
+     * Instantiates a new Token bucket.
+     *
+     * @param bytesPerSecond the rate, zero or negative for unlimited
+     */
+    public TokenBucket(long bytesPerSecond) {
+        this.bytesPerSecond = bytesPerSecond;
+        this.tokens = Math.max(bytesPerSecond, 0L);
+    }
+
+    /**
+     * Gets the rate.
+     *
+     * @return the bytes per second, zero or negative for unlimited
+     */
+    public long getBytesPerSecond() {
+        return bytesPerSecond;
+    }
+
+    /**
+     * Sets the rate.
+     *
+     * @param bytesPerSecond the bytes per second, zero or negative for unlimited
+     */
+    public synchronized void setBytesPerSecond(long bytesPerSecond) {
+        refill();
+        this.bytesPerSecond = bytesPerSecond;
+        tokens = Math.min(tokens, Math.max(bytesPerSecond, 0L));
+    }
+
+    /**
+     * Reserve the tokens of the bytes.
+     *
+     * @param bytes the bytes
+     * @return the nanos to wait before the bytes may be transferred
+     */
+    public long reserve(long bytes) {
+        if (bytesPerSecond <= 0L) {
+            return 0L;
+        }
+        synchronized (this) {
+            long rate = bytesPerSecond;
+            if (rate <= 0L) {
+                return 0L;
+            }
+            refill();
+            tokens -= bytes;
+            return tokens >= 0 ? 0L : (long) (-tokens * NANOS_PER_SECOND / rate);
+        }
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        long rate = bytesPerSecond;
+        if (rate > 0L) {
+            tokens = Math.min(rate, tokens + (double) (now - lastRefillNanos) * rate / NANOS_PER_SECOND);
+        }
+        lastRefillNanos = now;
+    }
+}
@@ -0,0 +1,303 @@
+/*
+ * Copyright (c)  Xvzhu 2020.  All rights reserved.
+ */
+
+package com.xvzhu.connections.sftp;
+
+import com.jcraft.jsch.SftpATTRS;
+import com.jcraft.jsch.SftpException;
+import com.xvzhu.connections.apis.ConnectionBean;
+import com.xvzhu.connections.apis.ConnectionConst;
+import com.xvzhu.connections.apis.ConnectionException;
+import com.xvzhu.connections.apis.IConnectionManager;
+import com.xvzhu.connections.apis.protocol.ISftpConnection;
+import com.xvzhu.connections.operation.NamedThreadFactory;
+import lombok.NonNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>The asynchronous sftp operations over the connection manager.</p>
+ * Each operation borrows a connection, runs on the bounded I/O executor and releases the connection,
+ * the caller only gets a future and never blocks.<br>
+ * At most maxConnections operations of a host run at the same time, the others are queued by the client
+ * instead of blocking an I/O thread on the borrow, so a saturated host does not hold the threads of the others.<br>
+ * The futures are completed by the I/O threads, the dependent stages which block should run on their own executor.<br>
+ *
+ * @author : xvzhu
+ * @version V1.0
+ * @since Date : 2020-04-05 10:30
+ */
+public class SftpAsyncClient {
+    private static final Logger LOG = LoggerFactory.getLogger(SftpAsyncClient.class);
+
+    private final IConnectionManager connectionManager;
+    private final int maxConnections;
+    private final Map<ConnectionBean, HostQueue> hostQueues = new HashMap<>();
+    private final ExecutorService executor;
+    private boolean shutdown;
+
+    /**
+     * Instantiates a new Sftp async client.
+     *
+     * @param connectionManager the connection manager
+     * @param ioThreads         the threads of the I/O executor
+     * @param maxConnections    the max connections used per host
+     */
+    public SftpAsyncClient(@NonNull IConnectionManager connectionManager, int ioThreads, int maxConnections) {
+        if (ioThreads <= 0 || maxConnections <= 0) {
+            throw new IllegalArgumentException("The threads and the connections must be positive.");
+        }
+        this.connectionManager = connectionManager;
+        this.maxConnections = maxConnections;
+        this.executor = new ThreadPoolExecutor(ioThreads, ioThreads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), new NamedThreadFactory(ConnectionConst.SFTP_ASYNC_THREAD_NAME));
+    }
+
+    /**
+     * List the path, the entries "." and ".." are included.
+     *
+     * @param connectionBean the connection bean
+     * @param path           the path
+     * @return the future of the names
+     */
+    public CompletableFuture<List<String>> list(@NonNull ConnectionBean connectionBean, @NonNull String path) {
+        return submit(connectionBean, connection -> connection.list(path));
+    }
+
+    /**
+     * Get the attributes of the path, the symbolic links are followed.
+     *
+     * @param connectionBean the connection bean
+     * @param path           the path
+     * @return the future of the attributes
+     */
+    public CompletableFuture<SftpATTRS> stat(@NonNull ConnectionBean connectionBean, @NonNull String path) {
+        return submit(connectionBean, connection -> {
+            try {
+                return connection.getChannelSftp().stat(path);
+            } catch (SftpException e) {
+                LOG.error("Failed to get the attributes of the path: {}", path);
+                throw new ConnectionException(String.format("Failed to get the attributes of the path: %s", path), e);
+            }
+        });
+    }
+
+    /**
+     * Upload the local file to the remote file.
+     *
+     * @param connectionBean the connection bean
+     * @param dir            the dir
+     * @param name           the name
+     * @param localFile      the local file
+     * @return the future of the transferred bytes
+     */
+    public CompletableFuture<Long> upload(@NonNull ConnectionBean connectionBean, @NonNull String dir,
+                                          @NonNull String name, @NonNull Path localFile) {
+        return submit(connectionBean, connection -> connection.upload(dir, name, localFile));
+    }
+
+    /**
+     * Download the remote file to the local file, the parent of the local file is created if absent.
+     *
+     * @param connectionBean the connection bean
+     * @param dir            the dir
+     * @param name           the name
+     * @param localFile      the local file
+     * @return the future of the transferred bytes
+     */
+    public CompletableFuture<Long> download(@NonNull ConnectionBean connectionBean, @NonNull String dir,
+                                            @NonNull String name, @NonNull Path localFile) {
+        return submit(connectionBean, connection -> download(connection, dir, name, localFile));
+    }
+
+    /**
+     * Rename the remote path.
+     *
+     * @param connectionBean the connection bean
+     * @param oldName        the old name
+     * @param newName        the new name
+     * @return the future of completion
+     */
+    public CompletableFuture<Void> rename(@NonNull ConnectionBean connectionBean, @NonNull String oldName,
+                                          @NonNull String newName) {
+        return submit(connectionBean, connection -> {
+            connection.rename(oldName, newName);
+            return null;
+        });
+    }
+
+    /**
+     * Delete the remote file.
+     *
+     * @param connectionBean the connection bean
+     * @param dir            the dir
+     * @param name           the name
+     * @return the future of completion
+     */
+    public CompletableFuture<Void> delete(@NonNull ConnectionBean connectionBean, @NonNull String dir,
+                                          @NonNull String name) {
+        return submit(connectionBean, connection -> {
+            connection.deleteFile(dir, name);
+            return null;
+        });
+    }
+
+    /**
+     * Gets the count of the queued operations of the host, the running ones are not included.
+     *
+     * @param connectionBean the connection bean
+     * @return the count
+     */
+    public synchronized int getQueuedCount(@NonNull ConnectionBean connectionBean) {
+        HostQueue hostQueue = hostQueues.get(connectionBean);
+        return hostQueue == null ? 0 : hostQueue.queue.size();
+    }
+
+    /**
+     * Shutdown the client, the queued operations are failed and the running ones are completed.
+     */
+    public void shutdown() {
+        synchronized (this) {
+            shutdown = true;
+            for (HostQueue hostQueue : hostQueues.values()) {
+                Operation<?> operation;
+                while ((operation = hostQueue.queue.poll()) != null) {
+                    operation.future.completeExceptionally(new ConnectionException("The client is shutdown."));
+                }
+            }
+        }
+        executor.shutdown();
+    }
+
+    private <T> CompletableFuture<T> submit(ConnectionBean connectionBean, SftpCall<T> call) {
+        Operation<T> operation = new Operation<>(connectionBean, call);
+        synchronized (this) {
+            if (shutdown) {
+                operation.future.completeExceptionally(new ConnectionException("The client is shutdown."));
+                return operation.future;
+            }
+            HostQueue hostQueue = hostQueues.computeIfAbsent(connectionBean, bean -> new HostQueue());
+            hostQueue.queue.add(operation);
+            dispatch(hostQueue);
+        }
+        return operation.future;
+    }
+
+    /**
+     * Start the queued operations of the host while it has free connections, called with the lock held.
+     */
+    private void dispatch(HostQueue hostQueue) {
+        Operation<?> operation;
+        while (hostQueue.running < maxConnections && (operation = hostQueue.queue.poll()) != null) {
+            hostQueue.running++;
+            Operation<?> started = operation;
+            executor.execute(() -> run(hostQueue, started));
+        }
+    }
+
+    private void run(HostQueue hostQueue, Operation<?> operation) {
+        try {
+            operation.run();
+        } finally {
+            synchronized (this) {
+                hostQueue.running--;
+                if (!shutdown) {
+                    dispatch(hostQueue);
+                }
+            }
+        }
+    }
+
+    private static long download(ISftpConnection connection, String dir, String name, Path localFile)
+            throws ConnectionException {
+        try {
+            Path parent = localFile.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            try (FileChannel target = FileChannel.open(localFile, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                return connection.download(dir, name, target);
+            }
+        } catch (IOException e) {
+            LOG.error("Failed to write the local file {}", localFile);
+            throw new ConnectionException("Failed to write the local file!", e);
+        }
+    }
+
+    /**
+     * The call on a borrowed connection.
+     */
+    @FunctionalInterface
+    private interface SftpCall<T> {
+        T call(ISftpConnection connection) throws ConnectionException;
+    }
+
+    /**
+     * The queued operations of a host, guarded by the client lock.
+     */
+    private static class HostQueue {
+        private final Deque<Operation<?>> queue = new ArrayDeque<>();
+        private int running;
+    }
+
+    /**
+     * A submitted operation.
+     */
+    private class Operation<T> {
+        private final ConnectionBean connectionBean;
+        private final SftpCall<T> call;
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+
+        Operation(ConnectionBean connectionBean, SftpCall<T> call) {
+            this.connectionBean = connectionBean;
+            this.call = call;
+        }
+
+        void run() {
+            ISftpConnection connection;
+            try {
+                connection = connectionManager.borrowConnection(connectionBean, ISftpConnection.class);
+            } catch (ConnectionException | RuntimeException e) {
+                future.completeExceptionally(e);
+                return;
+            }
+            T result = null;
+            Exception error = null;
+            try {
+                result = call.call(connection);
+            } catch (ConnectionException | RuntimeException e) {
+                error = e;
+            } finally {
+                try {
+                    connectionManager.releaseConnection(connectionBean);
+                } catch (ConnectionException e) {
+                    LOG.error("Failed to release the connection", e);
+                }
+            }
+            // Completed after the release, a dependent stage may borrow from the same thread.
+            if (error != null) {
+                future.completeExceptionally(error);
+            } else {
+                future.complete(result);
+            }
+        }
+    }
+}
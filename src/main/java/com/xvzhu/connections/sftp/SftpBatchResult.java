@@ -0,0 +1,54 @@
+/*
+ * Copyright (c)  Xvzhu 2020.  All rights reserved.
+ */
+
+package com.xvzhu.connections.sftp;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * The result of a batch transfer, the file results are in the order of the input items.
+ *
+ * @author : xvzhu
+ * @version V1.0
+ * @since Date : 2020-03-24 20:18
+ */
+@Data
+@AllArgsConstructor
+public class SftpBatchResult {
+    private static final long MILLIS_PER_SECOND = 1000L;
+
+    private List<SftpTransferResult> results;
+
+    private long elapsedMillis;
+
+    /**
+     * Gets the transferred bytes of succeeded files.
+     *
+     * @return the total bytes
+     */
+    public long getTotalBytes() {
+        return results.stream().filter(SftpTransferResult::isSuccess).mapToLong(SftpTransferResult::getBytes).sum();
+    }
+
+    /**
+     * Gets the count of failed files.
+     *
+     * @return the failed count
+     */
+    public long getFailedCount() {
+        return results.stream().filter(result -> !result.isSuccess()).count();
+    }
+
+    /**
+     * Gets the aggregate throughput of the batch.
+     *
+     * @return the bytes per second
+     */
+    public long getBytesPerSecond() {
+        return getTotalBytes() * MILLIS_PER_SECOND / Math.max(elapsedMillis, 1L);
+    }
+}
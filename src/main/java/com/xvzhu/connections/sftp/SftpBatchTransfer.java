@@ -0,0 +1,270 @@
+/*
+ * Copyright (c)  Xvzhu 2020.  All rights reserved.
+ */
+
+package com.xvzhu.connections.sftp;
+
+import com.jcraft.jsch.SftpException;
+import com.xvzhu.connections.apis.ConnectionBean;
+import com.xvzhu.connections.apis.ConnectionConst;
+import com.xvzhu.connections.apis.ConnectionException;
+import com.xvzhu.connections.apis.IConnectionManager;
+import com.xvzhu.connections.apis.protocol.ISftpConnection;
+import com.xvzhu.connections.operation.NamedThreadFactory;
+import lombok.NonNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Transfer many files over the connection pool.</p>
+ * The parent directories are created once per batch, then the files are spread over
+ * at most parallelism connections. Each worker keeps its connection for the whole batch.<br>
+ * The uploads are grouped by their remote directory, a worker takes the files of a directory together,
+ * so the requests of a directory go to the same connection. A large directory is split into as many
+ * groups as workers, so it does not leave the other workers idle.<br>
+ * An empty batch returns at once without any connection.<br>
+ * A failed file does not stop the batch, see the result of each file.<br>
+ *
+ * @author : xvzhu
+ * @version V1.0
+ * @since Date : 2020-03-24 20:18
+ */
+public class SftpBatchTransfer {
+    private static final Logger LOG = LoggerFactory.getLogger(SftpBatchTransfer.class);
+    private static final String SEPARATOR = "/";
+    private static final String CURRENT_DIR = ".";
+
+    private IConnectionManager connectionManager;
+    private ConnectionBean connectionBean;
+    private int parallelism;
+
+    /**
+     * Instantiates a new Sftp batch transfer.
+     *
+     * @param connectionManager the connection manager
+     * @param connectionBean    the connection bean
+     * @param parallelism       the max connections used by a batch
+     */
+    public SftpBatchTransfer(@NonNull IConnectionManager connectionManager,
+                             @NonNull ConnectionBean connectionBean,
+                             int parallelism) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("The parallelism must be positive.");
+        }
+        this.connectionManager = connectionManager;
+        this.connectionBean = connectionBean;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Upload the local files to the remote files.
+     *
+     * @param items the items
+     * @return the batch result
+     * @throws ConnectionException the connection exception
+     */
+    public SftpBatchResult upload(@NonNull List<SftpTransferItem> items) throws ConnectionException {
+        if (items.isEmpty()) {
+            return new SftpBatchResult(new ArrayList<>(), 0L);
+        }
+        long begin = System.nanoTime();
+        TreeMap<String, List<Integer>> remoteDirs = new TreeMap<>();
+        for (int i = 0; i < items.size(); i++) {
+            remoteDirs.computeIfAbsent(parentOf(items.get(i).getRemoteFile()), key -> new ArrayList<>()).add(i);
+        }
+        ISftpConnection connection = borrow();
+        try {
+            // Sorted, so a parent is created before its children and mkdirs returns at once for them.
+            for (String remoteDir : remoteDirs.keySet()) {
+                connection.mkdirs(remoteDir);
+            }
+        } finally {
+            connectionManager.releaseConnection(connectionBean);
+        }
+        int workers = workersOf(items);
+        int groupSize = (items.size() + workers - 1) / workers;
+        Queue<List<Integer>> pending = new ConcurrentLinkedQueue<>();
+        for (List<Integer> indexes : remoteDirs.values()) {
+            for (int from = 0; from < indexes.size(); from += groupSize) {
+                pending.add(indexes.subList(from, Math.min(from + groupSize, indexes.size())));
+            }
+        }
+        return transfer(items, pending, begin, (sftp, item) -> {
+            try {
+                sftp.getChannelSftp().put(item.getLocalFile().toString(), item.getRemoteFile(),
+                        SftpImpl.newProgressMonitor(connectionBean));
+                return Files.size(item.getLocalFile());
+            } catch (SftpException | IOException e) {
+                LOG.error("Failed to upload the file {}", item.getLocalFile());
+                throw new ConnectionException("Failed to upload the file!", e);
+            }
+        });
+    }
+
+    /**
+     * Download the remote files to the local files.
+     *
+     * @param items the items
+     * @return the batch result
+     * @throws ConnectionException the connection exception
+     */
+    public SftpBatchResult download(@NonNull List<SftpTransferItem> items) throws ConnectionException {
+        if (items.isEmpty()) {
+            return new SftpBatchResult(new ArrayList<>(), 0L);
+        }
+        long begin = System.nanoTime();
+        try {
+            for (Path localDir : new TreeSet<>(parentsOf(items))) {
+                Files.createDirectories(localDir);
+            }
+        } catch (IOException e) {
+            LOG.error("Failed to create the local directory");
+            throw new ConnectionException("Failed to create the local directory!", e);
+        }
+        Queue<List<Integer>> pending = new ConcurrentLinkedQueue<>();
+        for (int i = 0; i < items.size(); i++) {
+            pending.add(Collections.singletonList(i));
+        }
+        return transfer(items, pending, begin, (sftp, item) -> {
+            try {
+                sftp.getChannelSftp().get(item.getRemoteFile(), item.getLocalFile().toString(),
+                        SftpImpl.newProgressMonitor(connectionBean));
+                return Files.size(item.getLocalFile());
+            } catch (SftpException | IOException e) {
+                LOG.error("Failed to download the file {}", item.getRemoteFile());
+                throw new ConnectionException("Failed to get the file from ftp server!", e);
+            }
+        });
+    }
+
+    private SftpBatchResult transfer(List<SftpTransferItem> items, Queue<List<Integer>> pending, long begin,
+                                     FileTransfer fileTransfer) throws ConnectionException {
+        SftpTransferResult[] results = new SftpTransferResult[items.size()];
+        int workers = Math.min(workersOf(items), pending.size());
+        ExecutorService executor = Executors.newFixedThreadPool(workers,
+                new NamedThreadFactory(ConnectionConst.SFTP_BATCH_THREAD_NAME));
+        try {
+            for (int i = 0; i < workers; i++) {
+                executor.execute(() -> drain(items, pending, results, fileTransfer));
+            }
+            executor.shutdown();
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ConnectionException("The batch transfer was interrupted!", e);
+        } finally {
+            executor.shutdownNow();
+        }
+        // Left by the workers which failed to borrow a connection.
+        List<Integer> indexes;
+        while ((indexes = pending.poll()) != null) {
+            for (int index : indexes) {
+                results[index] = new SftpTransferResult(items.get(index), 0L, 0L,
+                        new ConnectionException("Failed to borrow connection."));
+            }
+        }
+        // Left by a worker which died in the middle of a file.
+        for (int i = 0; i < results.length; i++) {
+            if (results[i] == null) {
+                results[i] = new SftpTransferResult(items.get(i), 0L, 0L,
+                        new ConnectionException("The file was not transferred."));
+            }
+        }
+        return new SftpBatchResult(new ArrayList<>(Arrays.asList(results)),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - begin));
+    }
+
+    private void drain(List<SftpTransferItem> items, Queue<List<Integer>> pending, SftpTransferResult[] results,
+                       FileTransfer fileTransfer) {
+        ISftpConnection connection;
+        try {
+            connection = borrow();
+        } catch (ConnectionException e) {
+            LOG.error("Failed to borrow connection for batch transfer", e);
+            return;
+        }
+        try {
+            List<Integer> indexes;
+            while ((indexes = pending.poll()) != null) {
+                for (int index : indexes) {
+                    transfer(items.get(index), index, connection, results, fileTransfer);
+                }
+            }
+        } finally {
+            try {
+                connectionManager.releaseConnection(connectionBean);
+            } catch (ConnectionException e) {
+                LOG.error("Failed to release the connection", e);
+            }
+        }
+    }
+
+    private static void transfer(SftpTransferItem item, int index, ISftpConnection connection,
+                                 SftpTransferResult[] results, FileTransfer fileTransfer) {
+        long begin = System.nanoTime();
+        try {
+            long bytes = fileTransfer.transfer(connection, item);
+            results[index] = new SftpTransferResult(item, bytes,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - begin), null);
+        } catch (ConnectionException e) {
+            results[index] = new SftpTransferResult(item, 0L,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - begin), e);
+        } catch (RuntimeException e) {
+            // The worker goes on with the next file, a bug in one transfer does not lose the others.
+            LOG.error("Failed to transfer the file {}", item.getRemoteFile(), e);
+            results[index] = new SftpTransferResult(item, 0L,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - begin),
+                    new ConnectionException("Failed to transfer the file!", e));
+        }
+    }
+
+    private int workersOf(List<SftpTransferItem> items) {
+        return Math.min(parallelism, Math.max(items.size(), 1));
+    }
+
+    private ISftpConnection borrow() throws ConnectionException {
+        return connectionManager.borrowConnection(connectionBean, ISftpConnection.class);
+    }
+
+    private static String parentOf(String remoteFile) {
+        int separatorPos = remoteFile.lastIndexOf(SEPARATOR);
+        if (separatorPos < 0) {
+            return CURRENT_DIR;
+        }
+        return separatorPos == 0 ? SEPARATOR : remoteFile.substring(0, separatorPos);
+    }
+
+    private static List<Path> parentsOf(List<SftpTransferItem> items) {
+        List<Path> parents = new ArrayList<>(items.size());
+        for (SftpTransferItem item : items) {
+            Path parent = item.getLocalFile().toAbsolutePath().getParent();
+            if (parent != null) {
+                parents.add(parent);
+            }
+        }
+        return parents;
+    }
+
+    /**
+     * The transfer of a single file.
+     */
+    @FunctionalInterface
+    private interface FileTransfer {
+        long transfer(ISftpConnection connection, SftpTransferItem item) throws ConnectionException;
+    }
+}
@@ -4,6 +4,7 @@
 
 package com.xvzhu.connections.sftp;
 
+import com.jcraft.jsch.SftpException;
 import com.xvzhu.connections.apis.ConnectionBean;
 import com.xvzhu.connections.apis.ConnectionException;
 import com.xvzhu.connections.apis.protocol.ISftpConnection;
@@ -81,6 +82,27 @@ public class SftpConnectionFactory extends BasePooledObjectFactory<ISftpConnecti
         }
     }
 
+    /**
+     * <p>Reset the directory before the connection is returned to the pool.</p>
+     * No request is sent if the borrower did not change the directory.<br>
+     *
+     * @param connectionPool the connection pool.
+     * @throws ConnectionException the connection exception
+     */
+    @Override
+    public void passivateObject(PooledObject<ISftpConnection> connectionPool) throws ConnectionException {
+        ISftpConnection sftp = connectionPool.getObject();
+        if (sftp == null || !sftp.isValid()) {
+            return;
+        }
+        try {
+            sftp.changeDirectory(sftp.getChannelSftp().getHome());
+        } catch (SftpException e) {
+            LOG.error("Failed to get the home directory.", e);
+            throw new ConnectionException("Failed to reset the directory of connection", e);
+        }
+    }
+
     /**
      * <p>Validate the connection is connected.</p>
      *
@@ -0,0 +1,157 @@
+/*
+ * Copyright (c)  Xvzhu 2020.  All rights reserved.
+ */
+
+package com.xvzhu.connections.sftp;
+
+import com.xvzhu.connections.apis.ConnectionBean;
+import lombok.NonNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * <p>The known directories of a host.</p>
+ * All the connections of a host share the cache, a known directory is created without any request.<br>
+ * The cache of a host lives as long as one of its connections, so the caches of the hosts no longer
+ * connected are not kept.<br>
+ * Only absolute paths are cached. The directories are indexed by their parent, so a path is invalidated
+ * by walking the directories under it only. The cache is cleared when it is full.<br>
+ *
+ * @author : xvzhu
+ * @version V1.0
+ * @since Date : 2020-03-26 19:47
+ */
+public class SftpDirectoryCache {
+    private static final Logger LOG = LoggerFactory.getLogger(SftpDirectoryCache.class);
+    private static final int DEFAULT_MAX_SIZE = 10000;
+    private static final String SEPARATOR = "/";
+    private static final Map<ConnectionBean, WeakReference<SftpDirectoryCache>> CACHES = new HashMap<>();
+
+    private final Set<String> directories = ConcurrentHashMap.newKeySet();
+    private final Map<String, Set<String>> children = new HashMap<>();
+
+    /**
+     * Instantiates a new cache which is not shared.
+     */
+    SftpDirectoryCache() {
+    }
+
+    /**
+     * Gets the cache of the host.
+     *
+     * @param connectionBean the connection bean
+     * @return the cache
+     */
+    public static SftpDirectoryCache of(@NonNull ConnectionBean connectionBean) {
+        synchronized (CACHES) {
+            WeakReference<SftpDirectoryCache> reference = CACHES.get(connectionBean);
+            SftpDirectoryCache cache = reference == null ? null : reference.get();
+            if (cache == null) {
+                // The caches of the hosts without any connection were collected, forget them.
+                CACHES.values().removeIf(cached -> cached.get() == null);
+                cache = new SftpDirectoryCache();
+                CACHES.put(connectionBean, new WeakReference<>(cache));
+            }
+            return cache;
+        }
+    }
+
+    /**
+     * Is the directory known.
+     *
+     * @param dir the dir
+     * @return the boolean
+     */
+    public boolean contains(@NonNull String dir) {
+        return directories.contains(dir);
+    }
+
+    /**
+     * Add a known directory.
+     *
+     * @param dir the dir
+     */
+    public synchronized void add(@NonNull String dir) {
+        if (!dir.startsWith(SEPARATOR) || directories.contains(dir)) {
+            return;
+        }
+        if (directories.size() + children.size() >= DEFAULT_MAX_SIZE) {
+            LOG.info("The directory cache is full, clear it.");
+            clear();
+        }
+        directories.add(dir);
+        // Link each level to its parent, so the directory is found from any of its parents.
+        String child = dir;
+        String parent = parentOf(trim(dir));
+        while (parent != null && children.computeIfAbsent(parent, key -> new HashSet<>()).add(child)) {
+            child = parent;
+            parent = parentOf(child);
+        }
+    }
+
+    /**
+     * Forget the path and all the directories under it.
+     *
+     * @param path the path
+     */
+    public synchronized void invalidate(@NonNull String path) {
+        String trimmed = trim(path);
+        String withSeparator = trimmed.endsWith(SEPARATOR) ? trimmed : trimmed + SEPARATOR;
+        directories.remove(trimmed);
+        directories.remove(withSeparator);
+        String parent = parentOf(trimmed);
+        if (parent != null) {
+            Set<String> siblings = children.get(parent);
+            if (siblings != null) {
+                siblings.remove(trimmed);
+                siblings.remove(withSeparator);
+                if (siblings.isEmpty()) {
+                    children.remove(parent);
+                }
+            }
+        }
+        forgetChildren(trimmed);
+    }
+
+    /**
+     * Forget all directories, for example after the remote tree was changed by others.
+     */
+    public synchronized void clear() {
+        directories.clear();
+        children.clear();
+    }
+
+    private void forgetChildren(String dir) {
+        Set<String> subDirs = children.remove(dir);
+        if (subDirs == null) {
+            return;
+        }
+        for (String subDir : subDirs) {
+            directories.remove(subDir);
+            forgetChildren(trim(subDir));
+        }
+    }
+
+    private static String trim(String path) {
+        String trimmed = path;
+        while (trimmed.length() > 1 && trimmed.endsWith(SEPARATOR)) {
+            trimmed = trimmed.substring(0, trimmed.length() - 1);
+        }
+        return trimmed;
+    }
+
+    private static String parentOf(String path) {
+        int index = path.lastIndexOf(SEPARATOR);
+        if (index < 0 || path.equals(SEPARATOR)) {
+            return null;
+        }
+        return index == 0 ? SEPARATOR : trim(path.substring(0, index));
+    }
+}
@@ -0,0 +1,288 @@
+/*
+ * Copyright (c)  Xvzhu 2020.  All rights reserved.
+ */
+
+package com.xvzhu.connections.sftp;
+
+import com.jcraft.jsch.SftpATTRS;
+import com.xvzhu.connections.apis.ConnectionBean;
+import com.xvzhu.connections.apis.ConnectionConst;
+import com.xvzhu.connections.apis.ConnectionException;
+import com.xvzhu.connections.apis.IConnectionManager;
+import com.xvzhu.connections.apis.protocol.ISftpConnection;
+import com.xvzhu.connections.apis.protocol.ISftpWatchListener;
+import com.xvzhu.connections.apis.protocol.SftpWatchEvent;
+import com.xvzhu.connections.operation.NamedThreadFactory;
+import lombok.NonNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Watch the remote directories of a host by polling.</p>
+ * Each directory keeps a snapshot of name to size and mtime. A listing is collected into a second map,
+ * which replaces the snapshot only when the listing completed, so a failed listing reports its changes
+ * by the next poll. The two maps are reused and the states of unchanged entries are shared,
+ * so an unchanged directory allocates nothing but the listing itself.<br>
+ * A listener which throws only loses its own event, the others are still sent.<br>
+ * A directory is polled at the min interval after a change, the interval is doubled by each poll
+ * without change up to the max interval.<br>
+ * All directories are polled by a single thread over a single connection of the host.
+ * The first listing of a directory is the baseline, no event is sent for the existing entries.
+ * The baseline of a directory watched after start is listed by the next poll.<br>
+ *
+ * @author : xvzhu
+ * @version V1.0
+ * @since Date : 2020-04-02 20:15
+ */
+public class SftpDirectoryWatcher {
+    private static final Logger LOG = LoggerFactory.getLogger(SftpDirectoryWatcher.class);
+
+    private final IConnectionManager connectionManager;
+    private final ConnectionBean connectionBean;
+    private final long minIntervalMillis;
+    private final long maxIntervalMillis;
+    private final Map<String, WatchedDirectory> directories = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(
+            new NamedThreadFactory(ConnectionConst.SFTP_WATCHER_THREAD_NAME));
+    private final List<SftpWatchEvent> events = new ArrayList<>();
+
+    /**
+     * The connection of the watcher thread, only used by that thread.
+     */
+    private ISftpConnection connection;
+    private boolean started;
+
+    /**
+     * Instantiates a new Sftp directory watcher.
+     *
+     * @param connectionManager the connection manager
+     * @param connectionBean    the connection bean
+     * @param minIntervalMillis the poll interval of a changing directory
+     * @param maxIntervalMillis the poll interval of an idle directory
+     */
+    public SftpDirectoryWatcher(@NonNull IConnectionManager connectionManager,
+                                @NonNull ConnectionBean connectionBean,
+                                long minIntervalMillis,
+                                long maxIntervalMillis) {
+        if (minIntervalMillis <= 0L || maxIntervalMillis < minIntervalMillis) {
+            throw new IllegalArgumentException("The intervals must be positive, and min is not more than max.");
+        }
+        this.connectionManager = connectionManager;
+        this.connectionBean = connectionBean;
+        this.minIntervalMillis = minIntervalMillis;
+        this.maxIntervalMillis = maxIntervalMillis;
+    }
+
+    /**
+     * Watch the directory, replace the listener if the directory is watched.
+     *
+     * @param dir      the dir
+     * @param listener the listener
+     */
+    public void watch(@NonNull String dir, @NonNull ISftpWatchListener listener) {
+        WatchedDirectory watched = directories.putIfAbsent(dir, new WatchedDirectory(dir, listener, minIntervalMillis));
+        if (watched != null) {
+            watched.listener = listener;
+        }
+    }
+
+    /**
+     * Stop watching the directory.
+     *
+     * @param dir the dir
+     */
+    public void unwatch(@NonNull String dir) {
+        directories.remove(dir);
+    }
+
+    /**
+     * <p>Start polling.</p>
+     * The baselines of the watched directories are listed before return,
+     * so the changes made after start are all reported.
+     * If a baseline fails, the watcher is not started and start can be called again.<br>
+     *
+     * @throws ConnectionException the connection exception
+     */
+    public synchronized void start() throws ConnectionException {
+        if (started) {
+            return;
+        }
+        started = true;
+        try {
+            executor.submit(() -> {
+                pollBaselines();
+                return null;
+            }).get();
+        } catch (InterruptedException e) {
+            started = false;
+            Thread.currentThread().interrupt();
+            throw new ConnectionException("The watcher start was interrupted!", e);
+        } catch (ExecutionException e) {
+            started = false;
+            LOG.error("Failed to list the watched directories.");
+            throw new ConnectionException("Failed to list the watched directories!", e);
+        }
+        executor.scheduleWithFixedDelay(this::pollDue, minIntervalMillis, minIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stop polling and release the connection.
+     */
+    public synchronized void close() {
+        if (executor.isShutdown()) {
+            return;
+        }
+        executor.execute(this::releaseConnection);
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(maxIntervalMillis, TimeUnit.MILLISECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * List the baselines of the watched directories, unlike the scheduled polls the failure is thrown.
+     */
+    private void pollBaselines() throws ConnectionException {
+        for (WatchedDirectory watched : directories.values()) {
+            try {
+                poll(watched);
+            } catch (ConnectionException e) {
+                releaseConnection();
+                throw e;
+            }
+        }
+    }
+
+    private void pollDue() {
+        long now = System.currentTimeMillis();
+        for (WatchedDirectory watched : directories.values()) {
+            if (watched.nextPollMillis > now) {
+                continue;
+            }
+            try {
+                poll(watched);
+            } catch (ConnectionException e) {
+                LOG.error("Failed to poll the directory {}", watched.dir, e);
+                // The connection may be broken, a new one is borrowed by the next poll.
+                releaseConnection();
+                watched.nextPollMillis = now + maxIntervalMillis;
+            } catch (RuntimeException e) {
+                LOG.error("Failed to poll the directory {}", watched.dir, e);
+            }
+        }
+    }
+
+    private void poll(WatchedDirectory watched) throws ConnectionException {
+        if (connection == null) {
+            connection = connectionManager.borrowConnection(connectionBean, ISftpConnection.class);
+        }
+        boolean baseline = !watched.baselined;
+        Map<String, FileState> listing = watched.listing;
+        listing.clear();
+        connection.list(watched.dir, name -> true, entry -> {
+            SftpATTRS attrs = entry.getAttrs();
+            FileState state = watched.snapshot.get(entry.getFilename());
+            if (state == null || state.size != attrs.getSize() || state.mtime != attrs.getMTime()
+                    || state.directory != attrs.isDir()) {
+                state = new FileState(attrs.getSize(), attrs.getMTime(), attrs.isDir());
+            }
+            listing.put(entry.getFilename(), state);
+            return true;
+        });
+        events.clear();
+        for (Map.Entry<String, FileState> entry : listing.entrySet()) {
+            FileState former = watched.snapshot.get(entry.getKey());
+            if (former == null) {
+                addEvent(baseline, SftpWatchEvent.Kind.CREATED, watched.dir, entry.getKey(), entry.getValue());
+            } else if (former != entry.getValue()) {
+                addEvent(baseline, SftpWatchEvent.Kind.MODIFIED, watched.dir, entry.getKey(), entry.getValue());
+            }
+        }
+        for (Map.Entry<String, FileState> entry : watched.snapshot.entrySet()) {
+            if (!listing.containsKey(entry.getKey())) {
+                addEvent(baseline, SftpWatchEvent.Kind.DELETED, watched.dir, entry.getKey(), entry.getValue());
+            }
+        }
+        watched.listing = watched.snapshot;
+        watched.snapshot = listing;
+        watched.baselined = true;
+        watched.intervalMillis = events.isEmpty()
+                ? Math.min(watched.intervalMillis * 2, maxIntervalMillis) : minIntervalMillis;
+        watched.nextPollMillis = System.currentTimeMillis() + watched.intervalMillis;
+        // Sent after the listing, no other request is allowed while the listing is running.
+        for (SftpWatchEvent event : events) {
+            try {
+                watched.listener.onEvent(event);
+            } catch (RuntimeException e) {
+                LOG.error("Failed to notify the change of {} in the directory {}", event.getName(), watched.dir, e);
+            }
+        }
+    }
+
+    private void addEvent(boolean baseline, SftpWatchEvent.Kind kind, String dir, String name, FileState state) {
+        if (!baseline) {
+            events.add(new SftpWatchEvent(kind, dir, name, state.size, state.mtime, state.directory));
+        }
+    }
+
+    private void releaseConnection() {
+        if (connection == null) {
+            return;
+        }
+        connection = null;
+        try {
+            connectionManager.releaseConnection(connectionBean);
+        } catch (ConnectionException e) {
+            LOG.error("Failed to release the connection", e);
+        }
+    }
+
+    /**
+     * A watched directory, only changed by the watcher thread except the listener.
+     */
+    private static class WatchedDirectory {
+        private final String dir;
+        private Map<String, FileState> snapshot = new LinkedHashMap<>();
+        private Map<String, FileState> listing = new LinkedHashMap<>();
+        private volatile ISftpWatchListener listener;
+        private boolean baselined;
+        private long intervalMillis;
+        private long nextPollMillis;
+
+        WatchedDirectory(String dir, ISftpWatchListener listener, long intervalMillis) {
+            this.dir = dir;
+            this.listener = listener;
+            this.intervalMillis = intervalMillis;
+        }
+    }
+
+    /**
+     * The state of an entry in the snapshot, shared by the next listing while the entry is not changed.
+     */
+    private static class FileState {
+        private final long size;
+        private final int mtime;
+        private final boolean directory;
+
+        FileState(long size, int mtime, boolean directory) {
+            this.size = size;
+            this.mtime = mtime;
+            this.directory = directory;
+        }
+    }
+}
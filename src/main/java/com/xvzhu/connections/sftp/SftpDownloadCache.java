@@ -0,0 +1,360 @@
+/*
+ * Copyright (c)  Xvzhu 2020.  All rights reserved.
+ */
+
+package com.xvzhu.connections.sftp;
+
+import com.jcraft.jsch.SftpATTRS;
+import com.jcraft.jsch.SftpException;
+import com.xvzhu.connections.apis.ConnectionBean;
+import com.xvzhu.connections.apis.ConnectionException;
+import com.xvzhu.connections.apis.IConnectionManager;
+import com.xvzhu.connections.apis.protocol.ISftpConnection;
+import lombok.NonNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>Read-through local disk cache of remote files.</p>
+ * A cached file is validated by a single lstat, it is served from the disk if the size and the mtime
+ * are not changed, otherwise it is downloaded again.<br>
+ * The files are evicted in least recently used order when the cached bytes exceed the budget.
+ * A file larger than the budget is not cached, each open downloads its own copy,
+ * which is deleted when the stream is closed.<br>
+ * Concurrent misses of the same file version share a single download.<br>
+ * The cache directory is owned by the cache, the files left by a former cache are removed.<br>
+ *
+ * @author : xvzhu
+ * @version V1.0
+ * @since Date : 2020-04-01 20:05
+ */
+public class SftpDownloadCache {
+    private static final Logger LOG = LoggerFactory.getLogger(SftpDownloadCache.class);
+    private static final String SEPARATOR = "/";
+    private static final String CURRENT_DIR = ".";
+    private static final String CACHE_SUFFIX = ".cache";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final int MAX_OPEN_ATTEMPTS = 3;
+
+    private final IConnectionManager connectionManager;
+    private final ConnectionBean connectionBean;
+    private final Path cacheDir;
+    private final long maxBytes;
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final Map<String, CompletableFuture<CacheEntry>> loadings = new ConcurrentHashMap<>();
+
+    /**
+     * The cached files by the remote path in access order, guarded by this.
+     */
+    private final LinkedHashMap<String, CacheEntry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long cachedBytes;
+
+    /**
+     * Instantiates a new Sftp download cache.
+     *
+     * @param connectionManager the connection manager
+     * @param connectionBean    the connection bean
+     * @param cacheDir          the cache dir
+     * @param maxBytes          the max cached bytes
+     * @throws ConnectionException the connection exception
+     */
+    public SftpDownloadCache(@NonNull IConnectionManager connectionManager,
+                             @NonNull ConnectionBean connectionBean,
+                             @NonNull Path cacheDir,
+                             long maxBytes) throws ConnectionException {
+        if (maxBytes <= 0L) {
+            throw new IllegalArgumentException("The max bytes must be positive.");
+        }
+        this.connectionManager = connectionManager;
+        this.connectionBean = connectionBean;
+        this.cacheDir = cacheDir;
+        this.maxBytes = maxBytes;
+        try {
+            Files.createDirectories(cacheDir);
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(cacheDir, "*{" + CACHE_SUFFIX + ","
+                    + TEMP_SUFFIX + "}")) {
+                for (Path file : files) {
+                    Files.delete(file);
+                }
+            }
+        } catch (IOException e) {
+            LOG.error("Failed to prepare the cache directory {}", cacheDir);
+            throw new ConnectionException("Failed to prepare the cache directory!", e);
+        }
+    }
+
+    /**
+     * Open the remote file, served from the local disk if the cached file is still valid.
+     *
+     * @param remoteFile the remote file
+     * @return the input stream of the local file
+     * @throws ConnectionException the connection exception
+     */
+    public InputStream open(@NonNull String remoteFile) throws ConnectionException {
+        for (int i = 0; i < MAX_OPEN_ATTEMPTS; i++) {
+            InputStream in = tryOpen(remoteFile);
+            if (in != null) {
+                return in;
+            }
+        }
+        throw new ConnectionException("The cached file: %s was evicted before opened!", remoteFile);
+    }
+
+    /**
+     * Gets the count of the opens served without download.
+     *
+     * @return the hit count
+     */
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * Gets the count of the downloads.
+     *
+     * @return the miss count
+     */
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * Gets the cached bytes.
+     *
+     * @return the cached bytes
+     */
+    public synchronized long getCachedBytes() {
+        return cachedBytes;
+    }
+
+    /**
+     * Remove all cached files.
+     */
+    public synchronized void clear() {
+        for (CacheEntry entry : entries.values()) {
+            deleteQuietly(entry.file);
+        }
+        entries.clear();
+        cachedBytes = 0L;
+    }
+
+    /**
+     * Open the file once.
+     *
+     * @return the stream, or null if the cached file was evicted in between
+     */
+    private InputStream tryOpen(String remoteFile) throws ConnectionException {
+        CompletableFuture<CacheEntry> loading;
+        CompletableFuture<CacheEntry> leader = new CompletableFuture<>();
+        ISftpConnection connection = connectionManager.borrowConnection(connectionBean, ISftpConnection.class);
+        try {
+            SftpATTRS attrs = lstat(connection, remoteFile);
+            InputStream in = openCached(remoteFile, attrs.getSize(), attrs.getMTime());
+            if (in != null) {
+                hitCount.incrementAndGet();
+                return in;
+            }
+            if (attrs.getSize() > maxBytes) {
+                return loadUncached(connection, remoteFile);
+            }
+            String version = remoteFile + SEPARATOR + attrs.getSize() + SEPARATOR + attrs.getMTime();
+            loading = loadings.putIfAbsent(version, leader);
+            if (loading == null) {
+                try {
+                    return load(connection, remoteFile, attrs, leader);
+                } finally {
+                    loadings.remove(version, leader);
+                }
+            }
+        } finally {
+            connectionManager.releaseConnection(connectionBean);
+        }
+        // Another thread is downloading the same version, wait for it without holding a connection.
+        CacheEntry entry = await(loading);
+        return openCached(remoteFile, entry.size, entry.mtime);
+    }
+
+    /**
+     * Download the file larger than the budget, it is not shared with the concurrent opens.
+     */
+    private InputStream loadUncached(ISftpConnection connection, String remoteFile) throws ConnectionException {
+        missCount.incrementAndGet();
+        Path tempFile = download(connection, remoteFile);
+        try {
+            return Files.newInputStream(tempFile, StandardOpenOption.DELETE_ON_CLOSE);
+        } catch (IOException e) {
+            deleteQuietly(tempFile);
+            LOG.error("Failed to open the downloaded file {}", tempFile);
+            throw new ConnectionException("Failed to open the downloaded file!", e);
+        }
+    }
+
+    private InputStream load(ISftpConnection connection, String remoteFile, SftpATTRS attrs,
+                             CompletableFuture<CacheEntry> leader) throws ConnectionException {
+        missCount.incrementAndGet();
+        Path tempFile = null;
+        try {
+            tempFile = download(connection, remoteFile);
+            Path cacheFile = cacheDir.resolve(sequence.getAndIncrement() + CACHE_SUFFIX);
+            Files.move(tempFile, cacheFile, StandardCopyOption.ATOMIC_MOVE);
+            CacheEntry entry = new CacheEntry(cacheFile, attrs.getSize(), attrs.getMTime());
+            InputStream in = put(remoteFile, entry);
+            leader.complete(entry);
+            return in;
+        } catch (ConnectionException e) {
+            leader.completeExceptionally(e);
+            throw e;
+        } catch (IOException e) {
+            deleteQuietly(tempFile);
+            LOG.error("Failed to download the file {} to the cache", remoteFile);
+            ConnectionException failure = new ConnectionException("Failed to download the file to the cache!", e);
+            leader.completeExceptionally(failure);
+            throw failure;
+        } catch (RuntimeException e) {
+            // The waiting threads must not wait forever for a leader which failed.
+            deleteQuietly(tempFile);
+            LOG.error("Failed to download the file {} to the cache", remoteFile, e);
+            leader.completeExceptionally(new ConnectionException("Failed to download the file to the cache!", e));
+            throw e;
+        }
+    }
+
+    /**
+     * Download the file to a temporary file of the cache directory.
+     */
+    private Path download(ISftpConnection connection, String remoteFile) throws ConnectionException {
+        Path tempFile = cacheDir.resolve(sequence.getAndIncrement() + TEMP_SUFFIX);
+        int separatorPos = remoteFile.lastIndexOf(SEPARATOR);
+        String dir = separatorPos < 0 ? CURRENT_DIR
+                : separatorPos == 0 ? SEPARATOR : remoteFile.substring(0, separatorPos);
+        try (FileChannel target = FileChannel.open(tempFile, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.WRITE)) {
+            connection.download(dir, remoteFile.substring(separatorPos + 1), target);
+            return tempFile;
+        } catch (ConnectionException e) {
+            deleteQuietly(tempFile);
+            throw e;
+        } catch (IOException e) {
+            deleteQuietly(tempFile);
+            LOG.error("Failed to download the file {} to the cache", remoteFile);
+            throw new ConnectionException("Failed to download the file to the cache!", e);
+        }
+    }
+
+    /**
+     * Index the downloaded file and evict the least recently used files over the budget.
+     */
+    private synchronized InputStream put(String remoteFile, CacheEntry entry) throws IOException {
+        CacheEntry stale = entries.put(remoteFile, entry);
+        if (stale != null) {
+            cachedBytes -= stale.size;
+            deleteQuietly(stale.file);
+        }
+        cachedBytes += entry.size;
+        Iterator<Map.Entry<String, CacheEntry>> iterator = entries.entrySet().iterator();
+        while (cachedBytes > maxBytes && iterator.hasNext()) {
+            CacheEntry eldest = iterator.next().getValue();
+            if (eldest == entry) {
+                continue;
+            }
+            iterator.remove();
+            cachedBytes -= eldest.size;
+            deleteQuietly(eldest.file);
+        }
+        // Opened with the lock held, so the file can not be evicted before it is opened.
+        try {
+            return Files.newInputStream(entry.file);
+        } catch (IOException e) {
+            entries.remove(remoteFile, entry);
+            cachedBytes -= entry.size;
+            deleteQuietly(entry.file);
+            throw e;
+        }
+    }
+
+    private synchronized InputStream openCached(String remoteFile, long size, int mtime) throws ConnectionException {
+        CacheEntry entry = entries.get(remoteFile);
+        if (entry == null || entry.size != size || entry.mtime != mtime) {
+            return null;
+        }
+        try {
+            return Files.newInputStream(entry.file);
+        } catch (NoSuchFileException e) {
+            LOG.warn("The cached file {} was removed outside the cache", entry.file);
+            entries.remove(remoteFile);
+            cachedBytes -= entry.size;
+            return null;
+        } catch (IOException e) {
+            LOG.error("Failed to open the cached file {}", entry.file);
+            throw new ConnectionException("Failed to open the cached file!", e);
+        }
+    }
+
+    private static SftpATTRS lstat(ISftpConnection connection, String remoteFile) throws ConnectionException {
+        try {
+            return connection.getChannelSftp().lstat(remoteFile);
+        } catch (SftpException e) {
+            LOG.error("The file: {} is not existed!", remoteFile);
+            throw new ConnectionException(String.format("The file: %s is not existed!", remoteFile), e);
+        }
+    }
+
+    private static CacheEntry await(CompletableFuture<CacheEntry> loading) throws ConnectionException {
+        try {
+            return loading.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ConnectionException("The download was interrupted!", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof ConnectionException) {
+                throw (ConnectionException) e.getCause();
+            }
+            throw new ConnectionException("Failed to download the file to the cache!", e);
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        if (file == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            LOG.error("Failed to delete the cached file {}", file, e);
+        }
+    }
+
+    /**
+     * A cached file.
+     */
+    private static class CacheEntry {
+        private final Path file;
+        private final long size;
+        private final int mtime;
+
+        CacheEntry(Path file, long size, int mtime) {
+            this.file = file;
+            this.size = size;
+            this.mtime = mtime;
+        }
+    }
+}
@@ -4,23 +4,59 @@
 
 package com.xvzhu.connections.sftp;
 
+import com.jcraft.jsch.ChannelExec;
 import com.jcraft.jsch.ChannelSftp;
 import com.jcraft.jsch.JSch;
 import com.jcraft.jsch.JSchException;
 import com.jcraft.jsch.Session;
 import com.jcraft.jsch.SftpATTRS;
 import com.jcraft.jsch.SftpException;
+import com.jcraft.jsch.SftpProgressMonitor;
 import com.xvzhu.connections.apis.ConnectionBean;
 import com.xvzhu.connections.apis.ConnectionException;
+import com.xvzhu.connections.apis.protocol.ChecksumAlgorithm;
 import com.xvzhu.connections.apis.protocol.ISftpConnection;
+import com.xvzhu.connections.apis.protocol.ISftpEntryConsumer;
+import com.xvzhu.connections.monitor.TransferMonitor;
+import com.xvzhu.connections.operation.BandwidthThrottle;
 import lombok.Builder;
 import lombok.NonNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
 
 /**
  * The sftp client implements.
@@ -32,13 +68,33 @@ import java.util.Properties;
 public class SftpImpl implements ISftpConnection {
     private static final Logger LOG = LoggerFactory.getLogger(SftpImpl.class);
     private static final String SEPARATOR = "/";
+    private static final String CURRENT_DIR = ".";
+    private static final String PARENT_DIR = "..";
     /**
      * The constant DIRECTORY_NOT_EXISTS.
      */
     private static final String DIRECTORY_NOT_EXISTS = "Directory not exists!";
     private static Properties sshConfig = new Properties();
     private static final String CHANNEL_TYPE = "sftp";
+    private static final String EXEC_CHANNEL_TYPE = "exec";
+    private static final int CHECKSUM_OUTPUT_LIMIT = 4 * 1024;
+    private static final int MESSAGE_LIMIT = 4 * 1024;
+    private static final int TAR_BUFFER_SIZE = 64 * 1024;
+    private static final long NO_TIMEOUT = Long.MAX_VALUE;
+    private static final int COMMAND_NOT_EXECUTABLE = 126;
+    private static final int COMMAND_NOT_FOUND = 127;
+    private static final int SSH_FX_FILE_ALREADY_EXISTS = 11;
+    private static final long EXIT_STATUS_POLL_MS = 10L;
+    private static final int TRANSFER_BUFFER_SIZE = 256 * 1024;
+    private static final long MAPPED_WINDOW_SIZE = 64L * 1024 * 1024;
     private ChannelSftp channelSftp;
+    private byte[] transferBuffer;
+    private String currentDirectory;
+    private SftpDirectoryCache directoryCache = new SftpDirectoryCache();
+    private Set<ChecksumAlgorithm> unsupportedChecksums = EnumSet.noneOf(ChecksumAlgorithm.class);
+    private Map<String, Boolean> remoteCommands = new HashMap<>();
+    private int timeoutMilliSecond;
+    private ConnectionBean connectionBean;
     @Builder.Default
     private JSch jsch = new JSch();
 
@@ -71,6 +127,26 @@ public class SftpImpl implements ISftpConnection {
         }
     }
 
+    /**
+     * Change directory, skipped if the directory is the tracked current directory.
+     *
+     * @param dir the dir
+     * @throws ConnectionException the connection exception
+     */
+    @Override
+    public void changeDirectory(@NonNull String dir) throws ConnectionException {
+        if (dir.equals(currentDirectory)) {
+            return;
+        }
+        try {
+            channelSftp.cd(dir);
+            currentDirectory = channelSftp.pwd();
+        } catch (SftpException e) {
+            LOG.error("Failed to change directory to {}", dir);
+            throw new ConnectionException("Failed to change directory", e);
+        }
+    }
+
     /**
      * List list.
      *
@@ -88,6 +164,32 @@ public class SftpImpl implements ISftpConnection {
         }
     }
 
+    /**
+     * Stream the entries of the path.
+     *
+     * @param path       the path
+     * @param nameFilter the name filter
+     * @param consumer   the consumer
+     * @throws ConnectionException the connection exception
+     */
+    @Override
+    public void list(@NonNull String path, @NonNull Predicate<String> nameFilter,
+                     @NonNull ISftpEntryConsumer consumer) throws ConnectionException {
+        try {
+            channelSftp.ls(path, entry -> {
+                String fileName = entry.getFilename();
+                if (CURRENT_DIR.equals(fileName) || PARENT_DIR.equals(fileName) || !nameFilter.test(fileName)) {
+                    return ChannelSftp.LsEntrySelector.CONTINUE;
+                }
+                return consumer.accept(entry) ? ChannelSftp.LsEntrySelector.CONTINUE
+                        : ChannelSftp.LsEntrySelector.BREAK;
+            });
+        } catch (SftpException e) {
+            LOG.error("Failed to list the files of {}", path);
+            throw new ConnectionException("Failed to list the files!", e);
+        }
+    }
+
     /**
      * Rename.
      *
@@ -99,12 +201,180 @@ public class SftpImpl implements ISftpConnection {
     public void rename(@NonNull String oldPath, @NonNull String newPath) throws ConnectionException {
         try {
             channelSftp.rename(oldPath, newPath);
+            directoryCache.invalidate(oldPath);
         } catch (SftpException e) {
             LOG.error("Failed to rename the file!");
             throw new ConnectionException("Failed to rename the file!");
         }
     }
 
+    /**
+     * Copy the remote file or directory by the remote cp if available.
+     *
+     * @param source the source
+     * @param target the target
+     * @throws ConnectionException the connection exception
+     */
+    @Override
+    public void copy(@NonNull String source, @NonNull String target) throws ConnectionException {
+        SftpATTRS sourceAttrs = lstatOrNull(source);
+        if (sourceAttrs == null) {
+            LOG.error("The file: {} is not existed!", source);
+            throw new ConnectionException("The source does not exist!");
+        }
+        boolean directory = sourceAttrs.isDir();
+        if (directory && lstatOrNull(target) != null) {
+            LOG.error("The target of the directory copy already exists: {}", target);
+            throw new ConnectionException("The target already exists!");
+        }
+        // The remote cp would copy the file into the directory, while the copy through the client fails.
+        SftpATTRS targetAttrs = directory ? null : statOrNull(target);
+        if (targetAttrs != null && targetAttrs.isDir()) {
+            LOG.error("The target of the file copy is a directory: {}", target);
+            throw new ConnectionException("The target is a directory!");
+        }
+        if (isCommandAvailable("cp")) {
+            CommandMessages messages = new CommandMessages();
+            String command = (directory ? "cp -R -p -- " : "cp -p -- ") + quote(source) + " " + quote(target);
+            // The copy takes as long as the data, it is not bounded by the timeout of the connection.
+            int exitStatus = execStatus(command, messages, NO_TIMEOUT);
+            if (exitStatus != 0) {
+                LOG.error("Failed to copy {} to {}, exit status: {}, {}", source, target, exitStatus, messages);
+                throw new ConnectionException("Failed to copy the file!");
+            }
+            return;
+        }
+        if (directory) {
+            copyTreeThroughClient(source, target);
+        } else {
+            copyFileThroughClient(source, target);
+        }
+    }
+
+    /**
+     * Move the remote file or directory by renames only.
+     *
+     * @param source the source
+     * @param target the target
+     * @throws ConnectionException the connection exception
+     */
+    @Override
+    public void move(@NonNull String source, @NonNull String target) throws ConnectionException {
+        SftpATTRS sourceAttrs = lstatOrNull(source);
+        if (sourceAttrs == null) {
+            LOG.error("The file: {} is not existed!", source);
+            throw new ConnectionException("The source does not exist!");
+        }
+        SftpATTRS targetAttrs = lstatOrNull(target);
+        if (targetAttrs == null) {
+            rename(source, target);
+            return;
+        }
+        if (sourceAttrs.isDir() != targetAttrs.isDir()) {
+            LOG.error("Failed to move {} onto {}, one is a directory and the other is not.", source, target);
+            throw new ConnectionException("Failed to move the file!");
+        }
+        if (!sourceAttrs.isDir()) {
+            replaceFile(source, target);
+            return;
+        }
+        List<ChannelSftp.LsEntry> entries = new ArrayList<>();
+        list(source, name -> true, entries::add);
+        // Only the sub directories existing on both sides are walked, everything else is moved by one rename.
+        for (ChannelSftp.LsEntry entry : entries) {
+            move(source + SEPARATOR + entry.getFilename(), target + SEPARATOR + entry.getFilename());
+        }
+        deleteDirectory(source);
+    }
+
+    /**
+     * Rename the file onto the existing target.
+     * The rename replaces the target if the server supports the posix rename,
+     * otherwise it fails because the target exists, then the target is removed and the rename is retried.
+     */
+    private void replaceFile(String source, String target) throws ConnectionException {
+        try {
+            channelSftp.rename(source, target);
+            directoryCache.invalidate(source);
+            return;
+        } catch (SftpException e) {
+            // The version 3 of the protocol has no status for an existing target, most servers report a failure.
+            boolean targetExists = e.id == SSH_FX_FILE_ALREADY_EXISTS || e.id == ChannelSftp.SSH_FX_FAILURE;
+            if (!targetExists || lstatOrNull(target) == null) {
+                LOG.error("Failed to move {} to {}", source, target);
+                throw new ConnectionException("Failed to move the file!", e);
+            }
+        }
+        deleteFile(directoryOf(target), nameOf(target));
+        rename(source, target);
+    }
+
+    private void copyFileThroughClient(String source, String target) throws ConnectionException {
+        Path localFile = null;
+        try {
+            localFile = Files.createTempFile("sftp", ".copy");
+            try (FileChannel fileChannel = FileChannel.open(localFile, StandardOpenOption.WRITE)) {
+                download(directoryOf(source), nameOf(source), fileChannel);
+            }
+            upload(directoryOf(target), nameOf(target), localFile);
+        } catch (IOException e) {
+            LOG.error("Failed to copy {} to {}", source, target);
+            throw new ConnectionException("Failed to copy the file!", e);
+        } finally {
+            deleteLocal(localFile);
+        }
+    }
+
+    private void copyTreeThroughClient(String source, String target) throws ConnectionException {
+        Path localDir = null;
+        try {
+            localDir = Files.createTempDirectory("sftp");
+            downloadTree(source, localDir);
+            uploadTree(localDir, target);
+        } catch (IOException e) {
+            LOG.error("Failed to copy {} to {}", source, target);
+            throw new ConnectionException("Failed to copy the directory!", e);
+        } finally {
+            deleteLocal(localDir);
+        }
+    }
+
+    private SftpATTRS lstatOrNull(String path) {
+        try {
+            return channelSftp.lstat(path);
+        } catch (SftpException e) {
+            return null;
+        }
+    }
+
+    private SftpATTRS statOrNull(String path) {
+        try {
+            return channelSftp.stat(path);
+        } catch (SftpException e) {
+            return null;
+        }
+    }
+
+    private static String directoryOf(String path) {
+        String parent = parentOf(path);
+        return parent == null ? CURRENT_DIR : parent;
+    }
+
+    private static String nameOf(String path) {
+        return path.substring(path.lastIndexOf(SEPARATOR) + 1);
+    }
+
+    private static void deleteLocal(Path root) {
+        if (root == null) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(root)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        } catch (IOException | UncheckedIOException e) {
+            LOG.error("Failed to delete the temporary files: {}", root);
+        }
+    }
+
     /**
      * Download input stream.
      *
@@ -115,23 +385,120 @@ public class SftpImpl implements ISftpConnection {
      */
     @Override
     public InputStream download(@NonNull String dir, @NonNull String name) throws ConnectionException {
-        if (!isExist(dir)) {
-            LOG.error("The directory: {} is not existed!", dir);
-            throw new ConnectionException(String.format("The directory: %s is not existed!", dir));
-        }
         String filePath = dir + SEPARATOR + name;
-        if (!isExist(filePath)) {
-            LOG.error("The file: {} is not existed!", filePath);
-            throw new ConnectionException(String.format("The file: %s is not existed!", filePath));
-        }
         try {
-            channelSftp.cd(dir);
-            return channelSftp.get(name);
+            return channelSftp.get(filePath, newProgressMonitor());
         } catch (SftpException e) {
+            if (e.id == ChannelSftp.SSH_FX_NO_SUCH_FILE) {
+                LOG.error("The file: {} is not existed!", filePath);
+                throw new ConnectionException(String.format("The file: %s is not existed!", filePath));
+            }
             throw new ConnectionException("Failed to get the file from ftp server!");
         }
     }
 
+    /**
+     * Read a range of the remote file.
+     *
+     * @param path   the path
+     * @param offset the offset
+     * @param length the length
+     * @param target the target
+     * @return the read bytes, or -1 at the end of the file
+     * @throws ConnectionException the connection exception
+     */
+    @Override
+    public int read(@NonNull String path, long offset, int length, @NonNull ByteBuffer target)
+            throws ConnectionException {
+        if (offset < 0 || length < 0) {
+            throw new IllegalArgumentException("The offset and length must not be negative.");
+        }
+        int limit = Math.min(length, target.remaining());
+        if (limit == 0) {
+            return 0;
+        }
+        try (InputStream in = open(path, offset)) {
+            int total = 0;
+            while (total < limit) {
+                int size = read(in, target, limit - total);
+                if (size < 0) {
+                    break;
+                }
+                total += size;
+            }
+            return total == 0 ? -1 : total;
+        } catch (SftpException e) {
+            if (e.id == ChannelSftp.SSH_FX_NO_SUCH_FILE) {
+                LOG.error("The file: {} is not existed!", path);
+                throw new ConnectionException(String.format("The file: %s is not existed!", path), e);
+            }
+            LOG.error("Failed to read the file: {}", path);
+            throw new ConnectionException("Failed to read the file from ftp server!", e);
+        } catch (IOException e) {
+            LOG.error("Failed to read the file: {}", path);
+            throw new ConnectionException("Failed to read the file from ftp server!", e);
+        }
+    }
+
+    /**
+     * Open a read only channel over the remote file.
+     *
+     * @param path the path
+     * @return the seekable byte channel
+     * @throws ConnectionException the connection exception
+     */
+    @Override
+    public SeekableByteChannel openChannel(@NonNull String path) throws ConnectionException {
+        try {
+            if (channelSftp.stat(path).isDir()) {
+                LOG.error("The path: {} is a directory!", path);
+                throw new ConnectionException(String.format("The path: %s is a directory!", path));
+            }
+        } catch (SftpException e) {
+            LOG.error("The file: {} is not existed!", path);
+            throw new ConnectionException(String.format("The file: %s is not existed!", path), e);
+        }
+        return new SftpSeekableByteChannel(this, path);
+    }
+
+    /**
+     * Read once from the stream into the target.
+     *
+     * @param in     the stream of the remote file
+     * @param target the target
+     * @param length the max bytes
+     * @return the read bytes, or -1 at the end of the stream
+     * @throws IOException the io exception
+     */
+    int read(InputStream in, ByteBuffer target, int length) throws IOException {
+        int size;
+        if (target.hasArray()) {
+            size = in.read(target.array(), target.arrayOffset() + target.position(), length);
+            if (size > 0) {
+                target.position(target.position() + size);
+            }
+        } else {
+            byte[] buffer = getTransferBuffer();
+            size = in.read(buffer, 0, Math.min(length, buffer.length));
+            if (size > 0) {
+                target.put(buffer, 0, size);
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Open the stream of the remote file from the offset.
+     *
+     * @param path   the path
+     * @param offset the offset
+     * @return the input stream
+     * @throws SftpException the sftp exception
+     */
+    InputStream open(String path, long offset) throws SftpException {
+        return channelSftp.get(path, newProgressMonitor(), offset);
+    }
+
     /**
      * Upload.
      *
@@ -142,19 +509,592 @@ public class SftpImpl implements ISftpConnection {
      */
     @Override
     public void upload(@NonNull String dir, @NonNull String name, @NonNull InputStream in) throws ConnectionException {
+        String filePath = dir + SEPARATOR + name;
         try {
-            if (!isDirectory(dir)) {
-                LOG.error("Directory not exists, make new directory!");
-                mkdirs(dir);
-            }
-            channelSftp.cd(dir);
-            channelSftp.put(in, name);
+            createParentIfAbsent(dir, () -> {
+                channelSftp.put(in, filePath, newProgressMonitor());
+                return null;
+            });
         } catch (SftpException e) {
             LOG.error("Failed to upload the file");
             throw new ConnectionException("Failed to upload the file!");
         }
     }
 
+    /**
+     * Download into the target channel.
+     *
+     * @param dir    the dir
+     * @param name   the name
+     * @param target the target
+     * @return the transferred bytes
+     * @throws ConnectionException the connection exception
+     */
+    @Override
+    public long download(@NonNull String dir, @NonNull String name, @NonNull WritableByteChannel target)
+            throws ConnectionException {
+        String filePath = dir + SEPARATOR + name;
+        byte[] buffer = getTransferBuffer();
+        long total = 0L;
+        try (InputStream in = channelSftp.get(filePath, newProgressMonitor())) {
+            int size;
+            while ((size = in.read(buffer)) != -1) {
+                ByteBuffer view = ByteBuffer.wrap(buffer, 0, size);
+                while (view.hasRemaining()) {
+                    target.write(view);
+                }
+                total += size;
+            }
+            return total;
+        } catch (SftpException | IOException e) {
+            LOG.error("Failed to download the file: {}", filePath);
+            throw new ConnectionException("Failed to get the file from ftp server!", e);
+        }
+    }
+
+    /**
+     * Upload from the source channel.
+     *
+     * @param dir    the dir
+     * @param name   the name
+     * @param source the source
+     * @return the transferred bytes
+     * @throws ConnectionException the connection exception
+     */
+    @Override
+    public long upload(@NonNull String dir, @NonNull String name, @NonNull ReadableByteChannel source)
+            throws ConnectionException {
+        byte[] buffer = getTransferBuffer();
+        ByteBuffer view = ByteBuffer.wrap(buffer);
+        long total = 0L;
+        try (OutputStream out = openUploadStream(dir, name)) {
+            while (source.read(view) != -1) {
+                if (view.position() > 0) {
+                    out.write(buffer, 0, view.position());
+                    total += view.position();
+                    view.clear();
+                }
+            }
+            return total;
+        } catch (IOException e) {
+            LOG.error("Failed to upload the file");
+            throw new ConnectionException("Failed to upload the file!", e);
+        }
+    }
+
+    /**
+     * Upload the memory mapped local file.
+     *
+     * @param dir       the dir
+     * @param name      the name
+     * @param localFile the local file
+     * @return the transferred bytes
+     * @throws ConnectionException the connection exception
+     */
+    @Override
+    public long upload(@NonNull String dir, @NonNull String name, @NonNull Path localFile)
+            throws ConnectionException {
+        byte[] buffer = getTransferBuffer();
+        try (FileChannel fileChannel = FileChannel.open(localFile, StandardOpenOption.READ);
+             OutputStream out = openUploadStream(dir, name)) {
+            long size = fileChannel.size();
+            for (long position = 0L; position < size; position += MAPPED_WINDOW_SIZE) {
+                MappedByteBuffer window = fileChannel.map(FileChannel.MapMode.READ_ONLY, position,
+                        Math.min(MAPPED_WINDOW_SIZE, size - position));
+                while (window.hasRemaining()) {
+                    int length = Math.min(buffer.length, window.remaining());
+                    window.get(buffer, 0, length);
+                    out.write(buffer, 0, length);
+                }
+            }
+            return size;
+        } catch (IOException e) {
+            LOG.error("Failed to upload the file: {}", localFile);
+            throw new ConnectionException("Failed to upload the file!", e);
+        }
+    }
+
+    /**
+     * Upload the local directory tree, as a tar stream if the remote tar is available.
+     *
+     * @param localDir  the local dir
+     * @param remoteDir the remote dir
+     * @return the count of the uploaded files
+     * @throws ConnectionException the connection exception
+     */
+    @Override
+    public long uploadTree(@NonNull Path localDir, @NonNull String remoteDir) throws ConnectionException {
+        if (!Files.isDirectory(localDir)) {
+            LOG.error("The local directory does not exist: {}", localDir);
+            throw new ConnectionException("The local directory does not exist!");
+        }
+        mkdirs(remoteDir);
+        if (!isCommandAvailable("tar")) {
+            return uploadTreeFileByFile(localDir, remoteDir);
+        }
+        ChannelExec channel = null;
+        CommandMessages messages = new CommandMessages();
+        try {
+            channel = (ChannelExec) channelSftp.getSession().openChannel(EXEC_CHANNEL_TYPE);
+            channel.setCommand("tar -x -f - -C " + quote(remoteDir));
+            channel.setOutputStream(messages, true);
+            channel.setErrStream(messages, true);
+            OutputStream out = channel.getOutputStream();
+            channel.connect(timeoutMilliSecond);
+            SftpProgressMonitor monitor = newProgressMonitor();
+            monitor.init(SftpProgressMonitor.PUT, localDir.toString(), remoteDir, SftpProgressMonitor.UNKNOWN_SIZE);
+            long count;
+            // Closing the stream ends the input of tar, which exits after extracting the rest.
+            try (OutputStream archive = new BufferedOutputStream(new MonitoredOutputStream(out, monitor),
+                    TAR_BUFFER_SIZE)) {
+                count = writeTree(localDir, new TarArchiveWriter(archive));
+            }
+            int exitStatus = waitForExit(channel, timeoutMilliSecond);
+            if (exitStatus != 0) {
+                LOG.error("Failed to extract the archive into {}, exit status: {}, {}", remoteDir, exitStatus, messages);
+                throw new ConnectionException("Failed to extract the archive!");
+            }
+            return count;
+        } catch (JSchException | IOException e) {
+            LOG.error("Failed to upload the directory: {}", localDir);
+            throw new ConnectionException("Failed to upload the directory!", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ConnectionException("The upload was interrupted!", e);
+        } finally {
+            if (channel != null) {
+                channel.disconnect();
+            }
+        }
+    }
+
+    /**
+     * Download the remote directory tree, as a tar stream if the remote tar is available.
+     *
+     * @param remoteDir the remote dir
+     * @param localDir  the local dir
+     * @return the count of the downloaded files
+     * @throws ConnectionException the connection exception
+     */
+    @Override
+    public long downloadTree(@NonNull String remoteDir, @NonNull Path localDir) throws ConnectionException {
+        Path root = localDir.toAbsolutePath().normalize();
+        try {
+            Files.createDirectories(root);
+        } catch (IOException e) {
+            LOG.error("Failed to create the local directory: {}", root);
+            throw new ConnectionException("Failed to create the local directory!", e);
+        }
+        if (!isCommandAvailable("tar")) {
+            return downloadTreeFileByFile(remoteDir, root);
+        }
+        ChannelExec channel = null;
+        CommandMessages messages = new CommandMessages();
+        try {
+            channel = (ChannelExec) channelSftp.getSession().openChannel(EXEC_CHANNEL_TYPE);
+            channel.setCommand("tar -c -f - -C " + quote(remoteDir) + " .");
+            channel.setErrStream(messages, true);
+            InputStream channelIn = channel.getInputStream();
+            channel.connect(timeoutMilliSecond);
+            SftpProgressMonitor monitor = newProgressMonitor();
+            monitor.init(SftpProgressMonitor.GET, remoteDir, root.toString(), SftpProgressMonitor.UNKNOWN_SIZE);
+            long count;
+            try (InputStream in = new MonitoredInputStream(channelIn, monitor)) {
+                count = readTree(new TarArchiveReader(in), root);
+                // The blocks after the end of the archive are drained, so the channel can be closed.
+                while (in.read(getTransferBuffer()) != -1) {
+                    continue;
+                }
+            }
+            int exitStatus = waitForExit(channel, timeoutMilliSecond);
+            if (exitStatus != 0) {
+                LOG.error("Failed to archive the directory {}, exit status: {}, {}", remoteDir, exitStatus, messages);
+                throw new ConnectionException("Failed to archive the directory!");
+            }
+            return count;
+        } catch (JSchException | IOException e) {
+            LOG.error("Failed to download the directory: {}", remoteDir);
+            throw new ConnectionException("Failed to download the directory!", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ConnectionException("The download was interrupted!", e);
+        } finally {
+            if (channel != null) {
+                channel.disconnect();
+            }
+        }
+    }
+
+    private long writeTree(Path localDir, TarArchiveWriter writer) throws IOException {
+        byte[] buffer = getTransferBuffer();
+        long count = 0;
+        try (Stream<Path> paths = Files.walk(localDir)) {
+            for (Path path : (Iterable<Path>) paths::iterator) {
+                String name = relativeName(localDir, path);
+                if (name.isEmpty()) {
+                    continue;
+                }
+                BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+                long modifiedSeconds = attrs.lastModifiedTime().to(TimeUnit.SECONDS);
+                if (attrs.isDirectory()) {
+                    writer.putDirectory(name, modifiedSeconds);
+                } else if (attrs.isRegularFile()) {
+                    try (InputStream in = Files.newInputStream(path)) {
+                        writer.putFile(name, attrs.size(), Files.isExecutable(path), modifiedSeconds, in, buffer);
+                    }
+                    count++;
+                }
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        writer.finish();
+        return count;
+    }
+
+    private long readTree(TarArchiveReader reader, Path root) throws IOException {
+        byte[] buffer = getTransferBuffer();
+        long count = 0;
+        TarArchiveReader.Entry entry;
+        while ((entry = reader.next()) != null) {
+            Path target = root.resolve(entry.getName()).normalize();
+            if (!target.startsWith(root)) {
+                throw new IOException("The entry leaves the local directory: " + entry.getName());
+            }
+            if (entry.isDirectory()) {
+                Files.createDirectories(target);
+            } else if (entry.isFile()) {
+                Files.createDirectories(target.getParent());
+                try (OutputStream out = Files.newOutputStream(target)) {
+                    int read;
+                    while ((read = reader.read(buffer, 0, buffer.length)) != -1) {
+                        out.write(buffer, 0, read);
+                    }
+                }
+                Files.setLastModifiedTime(target, FileTime.from(entry.getModifiedSeconds(), TimeUnit.SECONDS));
+                count++;
+            } else {
+                LOG.info("Skip the entry which is neither a directory nor a regular file: {}", entry.getName());
+            }
+        }
+        return count;
+    }
+
+    private long uploadTreeFileByFile(Path localDir, String remoteDir) throws ConnectionException {
+        long count = 0;
+        try (Stream<Path> paths = Files.walk(localDir)) {
+            for (Path path : (Iterable<Path>) paths::iterator) {
+                String name = relativeName(localDir, path);
+                String remotePath = name.isEmpty() ? remoteDir : remoteDir + SEPARATOR + name;
+                if (Files.isDirectory(path)) {
+                    mkdirs(remotePath);
+                } else if (Files.isRegularFile(path)) {
+                    int slash = remotePath.lastIndexOf(SEPARATOR);
+                    upload(remotePath.substring(0, slash), remotePath.substring(slash + 1), path);
+                    count++;
+                }
+            }
+            return count;
+        } catch (IOException | UncheckedIOException e) {
+            LOG.error("Failed to upload the directory: {}", localDir);
+            throw new ConnectionException("Failed to upload the directory!", e);
+        }
+    }
+
+    private long downloadTreeFileByFile(String remoteDir, Path localDir) throws ConnectionException {
+        List<ChannelSftp.LsEntry> entries = new ArrayList<>();
+        list(remoteDir, name -> true, entries::add);
+        long count = 0;
+        try {
+            Files.createDirectories(localDir);
+            for (ChannelSftp.LsEntry entry : entries) {
+                String name = entry.getFilename();
+                if (entry.getAttrs().isDir()) {
+                    count += downloadTreeFileByFile(remoteDir + SEPARATOR + name, localDir.resolve(name));
+                } else if (entry.getAttrs().isReg()) {
+                    try (FileChannel fileChannel = FileChannel.open(localDir.resolve(name), StandardOpenOption.CREATE,
+                            StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                        download(remoteDir, name, fileChannel);
+                    }
+                    count++;
+                }
+            }
+            return count;
+        } catch (IOException e) {
+            LOG.error("Failed to download the directory: {}", remoteDir);
+            throw new ConnectionException("Failed to download the directory!", e);
+        }
+    }
+
+    private static String relativeName(Path root, Path path) {
+        StringBuilder name = new StringBuilder();
+        for (Path part : root.relativize(path)) {
+            if (name.length() > 0) {
+                name.append(SEPARATOR);
+            }
+            name.append(part.toString());
+        }
+        return name.toString();
+    }
+
+    /**
+     * Check once per connection whether the remote command can be run.
+     */
+    private boolean isCommandAvailable(String name) {
+        Boolean available = remoteCommands.get(name);
+        if (available == null) {
+            available = execStatus("command -v " + name, new CommandMessages(), timeoutMilliSecond) == 0;
+            if (!available) {
+                LOG.info("The remote command {} is not available, the data goes through the client.", name);
+            }
+            remoteCommands.put(name, available);
+        }
+        return available;
+    }
+
+    /**
+     * Mark the remote command as not available, so its data goes through the client.
+     *
+     * @param name the name of the command
+     */
+    void disableCommand(String name) {
+        remoteCommands.put(name, false);
+    }
+
+    /**
+     * Run the remote command and wait for its exit.
+     *
+     * @return the exit status, or -1 if the command could not be run
+     */
+    private int execStatus(String command, CommandMessages messages, long timeoutMillis) {
+        ChannelExec channel = null;
+        try {
+            channel = (ChannelExec) channelSftp.getSession().openChannel(EXEC_CHANNEL_TYPE);
+            channel.setCommand(command);
+            channel.setOutputStream(messages, true);
+            channel.setErrStream(messages, true);
+            channel.connect(timeoutMilliSecond);
+            return waitForExit(channel, timeoutMillis);
+        } catch (JSchException | ConnectionException e) {
+            LOG.info("Failed to run the remote command: {}", command);
+            return -1;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return -1;
+        } finally {
+            if (channel != null) {
+                channel.disconnect();
+            }
+        }
+    }
+
+    /**
+     * Wait for the exit of the remote command, a timeout of 0 or less means no timeout, like the one of JSch.
+     */
+    private int waitForExit(ChannelExec channel, long timeoutMillis) throws InterruptedException, ConnectionException {
+        long begin = System.currentTimeMillis();
+        while (!channel.isClosed()) {
+            if (timeoutMillis > 0 && System.currentTimeMillis() - begin > timeoutMillis) {
+                LOG.error("The remote command did not exit in {} ms.", timeoutMillis);
+                throw new ConnectionException("The remote command timed out!");
+            }
+            Thread.sleep(EXIT_STATUS_POLL_MS);
+        }
+        return channel.getExitStatus();
+    }
+
+    /**
+     * Upload the local file only if the remote file has different content.
+     *
+     * @param dir       the dir
+     * @param name      the name
+     * @param localFile the local file
+     * @param algorithm the checksum algorithm
+     * @return true if the file was uploaded, false if the remote file already matches
+     * @throws ConnectionException the connection exception
+     */
+    @Override
+    public boolean uploadIfChanged(@NonNull String dir, @NonNull String name, @NonNull Path localFile,
+                                   @NonNull ChecksumAlgorithm algorithm) throws ConnectionException {
+        String filePath = dir + SEPARATOR + name;
+        try {
+            SftpATTRS attrs = channelSftp.lstat(filePath);
+            if (!attrs.isDir() && attrs.getSize() == Files.size(localFile)
+                    && checksum(filePath, algorithm).equals(algorithm.checksum(localFile))) {
+                LOG.info("The file: {} is not changed, skip to upload.", filePath);
+                return false;
+            }
+        } catch (SftpException e) {
+            if (e.id != ChannelSftp.SSH_FX_NO_SUCH_FILE) {
+                LOG.error("Failed to get the attributes of the file: {}", filePath);
+                throw new ConnectionException("Failed to upload the file!", e);
+            }
+        } catch (IOException e) {
+            LOG.error("Failed to compute the checksum of the file: {}", localFile);
+            throw new ConnectionException("Failed to upload the file!", e);
+        }
+        upload(dir, name, localFile);
+        return true;
+    }
+
+    /**
+     * <p>Compute the checksum of the remote file.</p>
+     * The remote command runs over an exec channel of the session, so the content is not transferred.
+     * If the command is not available, the content is streamed and hashed locally,
+     * and the command is not tried again on this connection.<br>
+     *
+     * @param path      the path
+     * @param algorithm the checksum algorithm
+     * @return the lower case hex checksum
+     * @throws ConnectionException the connection exception
+     */
+    @Override
+    public String checksum(@NonNull String path, @NonNull ChecksumAlgorithm algorithm) throws ConnectionException {
+        if (!unsupportedChecksums.contains(algorithm)) {
+            String checksum = remoteChecksum(path, algorithm);
+            if (checksum != null) {
+                return checksum;
+            }
+        }
+        try (InputStream in = channelSftp.get(path, newProgressMonitor())) {
+            return algorithm.checksum(in, getTransferBuffer());
+        } catch (SftpException e) {
+            if (e.id == ChannelSftp.SSH_FX_NO_SUCH_FILE) {
+                LOG.error("The file: {} is not existed!", path);
+                throw new ConnectionException(String.format("The file: %s is not existed!", path), e);
+            }
+            LOG.error("Failed to compute the checksum of the file: {}", path);
+            throw new ConnectionException("Failed to compute the checksum!", e);
+        } catch (IOException e) {
+            LOG.error("Failed to compute the checksum of the file: {}", path);
+            throw new ConnectionException("Failed to compute the checksum!", e);
+        }
+    }
+
+    /**
+     * Run the checksum command remotely.
+     *
+     * @return the checksum, or null if the command failed
+     * @throws ConnectionException if the thread was interrupted
+     */
+    private String remoteChecksum(String path, ChecksumAlgorithm algorithm) throws ConnectionException {
+        ChannelExec channel = null;
+        try {
+            channel = (ChannelExec) channelSftp.getSession().openChannel(EXEC_CHANNEL_TYPE);
+            channel.setCommand(algorithm.getCommand() + " -- " + quote(path));
+            InputStream in = channel.getInputStream();
+            channel.connect(timeoutMilliSecond);
+            String output = readOutput(channel, in);
+            int exitStatus = channel.getExitStatus();
+            String[] tokens = output.trim().split("\\s+");
+            if (exitStatus == 0 && tokens[0].matches("[0-9a-fA-F]+")) {
+                return tokens[0].toLowerCase(Locale.ROOT);
+            }
+            if (exitStatus == COMMAND_NOT_EXECUTABLE || exitStatus == COMMAND_NOT_FOUND) {
+                LOG.info("The remote command {} is not available, exit status: {}", algorithm.getCommand(), exitStatus);
+                unsupportedChecksums.add(algorithm);
+            }
+            // The other failures, like an unreadable file, are left to the local checksum to report.
+        } catch (JSchException e) {
+            LOG.info("The remote command {} is not available.", algorithm.getCommand());
+            unsupportedChecksums.add(algorithm);
+        } catch (IOException e) {
+            LOG.info("Failed to read the output of the remote command {}", algorithm.getCommand());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ConnectionException("The checksum was interrupted!", e);
+        } finally {
+            if (channel != null) {
+                channel.disconnect();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Read the output until the command exits.
+     * The hash takes as long as the data, it is not bounded by the timeout of the connection.
+     */
+    private static String readOutput(ChannelExec channel, InputStream in) throws IOException, InterruptedException {
+        byte[] output = new byte[CHECKSUM_OUTPUT_LIMIT];
+        byte[] discard = new byte[CHECKSUM_OUTPUT_LIMIT];
+        int length = 0;
+        while (true) {
+            boolean closed = channel.isClosed();
+            int available;
+            while ((available = in.available()) > 0) {
+                // Only the first token is used, the rest of a long output is discarded.
+                int size = length < output.length
+                        ? in.read(output, length, Math.min(available, output.length - length))
+                        : in.read(discard, 0, Math.min(available, discard.length));
+                if (size < 0) {
+                    break;
+                }
+                length += length < output.length ? size : 0;
+            }
+            if (closed) {
+                return new String(output, 0, length, StandardCharsets.UTF_8);
+            }
+            Thread.sleep(EXIT_STATUS_POLL_MS);
+        }
+    }
+
+    private static String quote(String path) {
+        return "'" + path.replace("'", "'\\''") + "'";
+    }
+
+    private OutputStream openUploadStream(String dir, String name) throws ConnectionException {
+        String filePath = dir + SEPARATOR + name;
+        try {
+            return createParentIfAbsent(dir,
+                    () -> channelSftp.put(filePath, newProgressMonitor(), ChannelSftp.OVERWRITE));
+        } catch (SftpException e) {
+            LOG.error("Failed to upload the file");
+            throw new ConnectionException("Failed to upload the file!", e);
+        }
+    }
+
+    /**
+     * Open the file optimistically, the directory is only created if the server reports it is missing.
+     * No request was sent for the content before the open failed, so the action can be retried.
+     */
+    private <T> T createParentIfAbsent(String dir, SftpAction<T> action) throws SftpException, ConnectionException {
+        try {
+            return action.run();
+        } catch (SftpException e) {
+            if (e.id != ChannelSftp.SSH_FX_NO_SUCH_FILE) {
+                throw e;
+            }
+            LOG.info("Directory not exists, make new directory!");
+            directoryCache.invalidate(dir);
+            mkdirs(dir);
+            return action.run();
+        }
+    }
+
+    private SftpProgressMonitor newProgressMonitor() {
+        return newProgressMonitor(connectionBean);
+    }
+
+    /**
+     * Create the progress monitor of a transfer, which records the statistic and applies the bandwidth limits.
+     *
+     * @param connectionBean the connection bean
+     * @return the progress monitor
+     */
+    static SftpProgressMonitor newProgressMonitor(ConnectionBean connectionBean) {
+        return BandwidthThrottle.getInstance().throttle(connectionBean,
+                TransferMonitor.getInstance().newProgressMonitor(connectionBean));
+    }
+
+    private byte[] getTransferBuffer() {
+        // A connection is used by one borrower at a time, so the buffer is reused without locking.
+        if (transferBuffer == null) {
+            transferBuffer = new byte[TRANSFER_BUFFER_SIZE];
+        }
+        return transferBuffer;
+    }
+
     /**
      * Delete directory.
      *
@@ -163,13 +1103,15 @@ public class SftpImpl implements ISftpConnection {
      */
     @Override
     public void deleteDirectory(@NonNull String dir) throws ConnectionException {
-        if (!isDirectory(dir)) {
-            LOG.error(DIRECTORY_NOT_EXISTS);
-            return;
-        }
+        directoryCache.invalidate(dir);
         try {
             channelSftp.rmdir(dir);
         } catch (SftpException e) {
+            // Some servers do not report a missing directory as SSH_FX_NO_SUCH_FILE.
+            if (e.id == ChannelSftp.SSH_FX_NO_SUCH_FILE || !isExist(dir)) {
+                LOG.error(DIRECTORY_NOT_EXISTS);
+                return;
+            }
             LOG.error("Failed to delete the directory, please check the directory is empty!");
             throw new ConnectionException("Failed to delete the directory, please check the directory is empty!");
         }
@@ -184,51 +1126,73 @@ public class SftpImpl implements ISftpConnection {
      */
     @Override
     public void deleteFile(@NonNull String dir, @NonNull String name) throws ConnectionException {
-        if (!isDirectory(dir)) {
-            LOG.error(DIRECTORY_NOT_EXISTS);
-            return;
-        }
         String filePath = dir + SEPARATOR + name;
-        if (!isExist(filePath)) {
-            LOG.error("File not exists!");
-            return;
-        }
         try {
-            channelSftp.cd(dir);
-            channelSftp.rm(name);
+            channelSftp.rm(filePath);
         } catch (SftpException e) {
+            if (e.id == ChannelSftp.SSH_FX_NO_SUCH_FILE || !isExist(filePath)) {
+                LOG.error("File not exists!");
+                return;
+            }
             LOG.error("Failed to delete the file");
             throw new ConnectionException("Failed to delete the file");
         }
     }
 
     /**
-     * Mkdirs.
+     * <p>Mkdirs.</p>
+     * The deepest directory is created first, the parents are only created if the server
+     * reports they are missing. Known directories of the host are skipped without any request.<br>
      *
      * @param dir the dir
      * @throws ConnectionException the connection exception
      */
     @Override
     public void mkdirs(@NonNull String dir) throws ConnectionException {
-        try {
-            if (isDirectory(dir)) {
-                LOG.info("The directory is exists!");
-                return;
+        String current = dir.length() > 1 && dir.endsWith(SEPARATOR) ? dir.substring(0, dir.length() - 1) : dir;
+        Deque<String> missingDirs = new ArrayDeque<>();
+        while (current != null && !directoryCache.contains(current)) {
+            if (mkdir(current)) {
+                break;
             }
-            int separatorPos = dir.lastIndexOf(SEPARATOR);
-            if (separatorPos == 0) {
-                channelSftp.mkdir(dir);
-                channelSftp.cd(dir);
-                return;
+            missingDirs.push(current);
+            current = parentOf(current);
+        }
+        while (!missingDirs.isEmpty()) {
+            String missingDir = missingDirs.pop();
+            if (!mkdir(missingDir)) {
+                LOG.error("Failed to create directory！");
+                throw new ConnectionException("Failed to create directory");
             }
-            String preDir = dir.substring(0, dir.lastIndexOf(SEPARATOR));
-            mkdirs(preDir);
+        }
+    }
+
+    /**
+     * Create a single directory.
+     *
+     * @return true if the directory exists now, false if the parent may be missing
+     */
+    private boolean mkdir(String dir) {
+        try {
             channelSftp.mkdir(dir);
-            channelSftp.cd(dir);
+            directoryCache.add(dir);
+            return true;
         } catch (SftpException e) {
-            LOG.error("Failed to create directory！");
-            throw new ConnectionException("Failed to create directory");
+            // An existing directory is reported as a general failure by sftp v3.
+            if (e.id != ChannelSftp.SSH_FX_NO_SUCH_FILE && isDirectory(dir)) {
+                directoryCache.add(dir);
+                return true;
+            }
+            return false;
+        }
+    }
+
+    private static String parentOf(String path) {
+        int separatorPos = path.lastIndexOf(SEPARATOR);
+        if (separatorPos < 0 || SEPARATOR.equals(path)) {
+            return null;
         }
+        return separatorPos == 0 ? SEPARATOR : path.substring(0, separatorPos);
     }
 
     /**
@@ -301,7 +1265,11 @@ public class SftpImpl implements ISftpConnection {
             ChannelSftp channel = (ChannelSftp) sshSession.openChannel(CHANNEL_TYPE);
             channel.connect();
             this.channelSftp = channel;
-        } catch (JSchException e) {
+            this.currentDirectory = channel.pwd();
+            this.directoryCache = SftpDirectoryCache.of(connectionBean);
+            this.timeoutMilliSecond = timeoutMilliSecond;
+            this.connectionBean = connectionBean;
+        } catch (JSchException | SftpException e) {
             LOG.error("Failed to create connection");
             throw new ConnectionException("Failed to connect the ftp server", e);
         }
@@ -341,4 +1309,108 @@ public class SftpImpl implements ISftpConnection {
     public boolean isClosed() {
         return channelSftp != null && channelSftp.isClosed();
     }
-}
\ No newline at end of file
+
+    /**
+     * A single sftp request.
+     *
+     * @param <T> the type of result
+     */
+    @FunctionalInterface
+    private interface SftpAction<T> {
+        T run() throws SftpException;
+    }
+
+    /**
+     * The stream of an archive written to a remote command, the bytes are reported to the progress monitor,
+     * so the archives are throttled and counted like the sftp transfers.
+     */
+    private static final class MonitoredOutputStream extends FilterOutputStream {
+        private final SftpProgressMonitor monitor;
+
+        private MonitoredOutputStream(OutputStream out, SftpProgressMonitor monitor) {
+            super(out);
+            this.monitor = monitor;
+        }
+
+        @Override
+        public void write(int value) throws IOException {
+            out.write(value);
+            count(monitor, 1);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            out.write(bytes, offset, length);
+            count(monitor, length);
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                monitor.end();
+            }
+        }
+    }
+
+    /**
+     * The stream of an archive read from a remote command, the bytes are reported to the progress monitor.
+     */
+    private static final class MonitoredInputStream extends FilterInputStream {
+        private final SftpProgressMonitor monitor;
+
+        private MonitoredInputStream(InputStream in, SftpProgressMonitor monitor) {
+            super(in);
+            this.monitor = monitor;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int value = in.read();
+            if (value != -1) {
+                count(monitor, 1);
+            }
+            return value;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException {
+            int size = in.read(bytes, offset, length);
+            if (size > 0) {
+                count(monitor, size);
+            }
+            return size;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                monitor.end();
+            }
+        }
+    }
+
+    private static void count(SftpProgressMonitor monitor, long size) throws IOException {
+        if (!monitor.count(size)) {
+            throw new IOException("The transfer was cancelled.");
+        }
+    }
+
+    /**
+     * The messages of a remote command, the bytes over the limit are dropped.
+     */
+    private static final class CommandMessages extends ByteArrayOutputStream {
+        @Override
+        public synchronized void write(byte[] bytes, int offset, int length) {
+            super.write(bytes, offset, Math.max(0, Math.min(length, MESSAGE_LIMIT - count)));
+        }
+
+        @Override
+        public synchronized String toString() {
+            return new String(buf, 0, count, StandardCharsets.UTF_8).trim();
+        }
+    }
+}
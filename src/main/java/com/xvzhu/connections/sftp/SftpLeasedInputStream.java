@@ -0,0 +1,224 @@
+/*
+ * Copyright (c)  Xvzhu 2020.  All rights reserved.
+ */
+
+package com.xvzhu.connections.sftp;
+
+import com.xvzhu.connections.apis.ConnectionBean;
+import com.xvzhu.connections.apis.ConnectionException;
+import com.xvzhu.connections.apis.IConnectionManager;
+import com.xvzhu.connections.apis.protocol.IConnection;
+import com.xvzhu.connections.apis.protocol.ISftpConnection;
+import lombok.NonNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * <p>The download stream which holds the lease of its connection.</p>
+ * The connection is borrowed when the stream is opened, and released to the manager
+ * at the end of the file or when the stream is closed, whichever comes first.<br>
+ * With the {@link com.xvzhu.connections.PooledClientConnectionManager} no other borrower can use
+ * the channel while the stream is read. The {@link com.xvzhu.connections.BasicClientConnectionManager}
+ * hands the connection of a thread back to that thread even while it is borrowed, so the same thread
+ * must not use the connection of the host until the stream is released. A second stream on a connection
+ * still leased is refused.<br>
+ * The stream may be closed by any thread. The reads are buffered, so the small reads of
+ * the caller do not reach the channel one by one.<br>
+ *
+ * @author : xvzhu
+ * @version V1.0
+ * @since Date : 2020-04-03 19:40
+ */
+public class SftpLeasedInputStream extends InputStream {
+    private static final Logger LOG = LoggerFactory.getLogger(SftpLeasedInputStream.class);
+    private static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+    private static final Set<IConnection> LEASED = Collections.newSetFromMap(new ConcurrentHashMap<>());
+
+    private final IConnectionManager connectionManager;
+    private final ConnectionBean connectionBean;
+    private final ISftpConnection connection;
+    private final InputStream in;
+    private final AtomicBoolean released = new AtomicBoolean();
+    private final byte[] buffer;
+    private volatile boolean closed;
+    private boolean eof;
+    private int position;
+    private int count;
+
+    private SftpLeasedInputStream(IConnectionManager connectionManager, ConnectionBean connectionBean,
+                                  ISftpConnection connection, InputStream in, int bufferSize) {
+        this.connectionManager = connectionManager;
+        this.connectionBean = connectionBean;
+        this.connection = connection;
+        this.in = in;
+        this.buffer = new byte[bufferSize];
+    }
+
+    /**
+     * Open the remote file with a connection borrowed for the stream.
+     *
+     * @param connectionManager the connection manager
+     * @param connectionBean    the connection bean
+     * @param dir               the dir
+     * @param name              the name
+     * @return the stream
+     * @throws ConnectionException the connection exception
+     */
+    public static SftpLeasedInputStream open(@NonNull IConnectionManager connectionManager,
+                                             @NonNull ConnectionBean connectionBean,
+                                             @NonNull String dir,
+                                             @NonNull String name) throws ConnectionException {
+        return open(connectionManager, connectionBean, dir, name, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Open the remote file with a connection borrowed for the stream.
+     *
+     * @param connectionManager the connection manager
+     * @param connectionBean    the connection bean
+     * @param dir               the dir
+     * @param name              the name
+     * @param bufferSize        the read ahead buffer size
+     * @return the stream
+     * @throws ConnectionException the connection exception
+     */
+    public static SftpLeasedInputStream open(@NonNull IConnectionManager connectionManager,
+                                             @NonNull ConnectionBean connectionBean,
+                                             @NonNull String dir,
+                                             @NonNull String name,
+                                             int bufferSize) throws ConnectionException {
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException("The buffer size must be positive.");
+        }
+        ISftpConnection connection = connectionManager.borrowConnection(connectionBean, ISftpConnection.class);
+        if (!LEASED.add(connection)) {
+            // The lease belongs to the open stream, so the connection is not released here.
+            LOG.error("The connection of host {} is leased by another stream.", connectionBean.getHost());
+            throw new ConnectionException("The connection is leased by another stream!");
+        }
+        try {
+            InputStream in = connection.download(dir, name);
+            return new SftpLeasedInputStream(connectionManager, connectionBean, connection, in, bufferSize);
+        } catch (ConnectionException | RuntimeException e) {
+            LEASED.remove(connection);
+            connectionManager.releaseConnection(connectionBean, connection);
+            throw e;
+        }
+    }
+
+    /**
+     * Is the connection released.
+     *
+     * @return the boolean
+     */
+    public boolean isReleased() {
+        return released.get();
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (position >= count && !fill()) {
+            return -1;
+        }
+        return buffer[position++] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        if (position >= count) {
+            // A large read bypasses the buffer, no copy is needed.
+            if (length >= buffer.length) {
+                ensureOpen();
+                if (eof) {
+                    return -1;
+                }
+                int size = in.read(bytes, offset, length);
+                if (size < 0) {
+                    eof = true;
+                    release();
+                }
+                return size;
+            }
+            if (!fill()) {
+                return -1;
+            }
+        }
+        int size = Math.min(length, count - position);
+        System.arraycopy(buffer, position, bytes, offset, size);
+        position += size;
+        return size;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return released.get() ? count - position : count - position + in.available();
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        position = count;
+        release();
+    }
+
+    /**
+     * Read ahead into the buffer.
+     *
+     * @return false at the end of the file
+     */
+    private boolean fill() throws IOException {
+        ensureOpen();
+        if (eof) {
+            return false;
+        }
+        position = 0;
+        count = 0;
+        // Filled as much as the channel has, so the next small reads are served from memory.
+        while (count < buffer.length) {
+            int size = in.read(buffer, count, buffer.length - count);
+            if (size < 0) {
+                eof = true;
+                release();
+                break;
+            }
+            count += size;
+            if (in.available() <= 0) {
+                break;
+            }
+        }
+        return count > 0;
+    }
+
+    private void ensureOpen() throws IOException {
+        // The end of the file releases the connection too, but only a closed stream refuses the reads.
+        if (closed || (released.get() && !eof)) {
+            throw new IOException("The stream is closed.");
+        }
+    }
+
+    private void release() throws IOException {
+        if (!released.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            in.close();
+        } finally {
+            LEASED.remove(connection);
+            try {
+                connectionManager.releaseConnection(connectionBean, connection);
+            } catch (ConnectionException e) {
+                LOG.error("Failed to release the connection", e);
+            }
+        }
+    }
+}
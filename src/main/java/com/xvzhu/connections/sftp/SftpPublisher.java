@@ -0,0 +1,274 @@
+/*
+ * Copyright (c)  Xvzhu 2020.  All rights reserved.
+ */
+
+package com.xvzhu.connections.sftp;
+
+import com.jcraft.jsch.ChannelSftp;
+import com.xvzhu.connections.apis.ConnectionBean;
+import com.xvzhu.connections.apis.ConnectionException;
+import com.xvzhu.connections.apis.IConnectionManager;
+import com.xvzhu.connections.apis.IPublisher;
+import com.xvzhu.connections.apis.ISubscriber;
+import com.xvzhu.connections.apis.ISubscription;
+import com.xvzhu.connections.apis.protocol.ISftpConnection;
+import lombok.NonNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * <p>The publishers of the remote file content and the directory entries.</p>
+ * Each subscription runs on a thread of the executor, it borrows a connection on the first request,
+ * reads from the channel only when the subscriber has demand, and waits otherwise.<br>
+ * The connection is released when the items are completed, failed or cancelled,
+ * before the terminal signal is sent to the subscriber.<br>
+ *
+ * @param <T> the type of the items
+ * @author : xvzhu
+ * @version V1.0
+ * @since Date : 2020-04-05 15:10
+ */
+public class SftpPublisher<T> implements IPublisher<T> {
+    private static final Logger LOG = LoggerFactory.getLogger(SftpPublisher.class);
+
+    private final IConnectionManager connectionManager;
+    private final ConnectionBean connectionBean;
+    private final Executor executor;
+    private final Source<T> source;
+
+    private SftpPublisher(IConnectionManager connectionManager, ConnectionBean connectionBean,
+                          Executor executor, Source<T> source) {
+        this.connectionManager = connectionManager;
+        this.connectionBean = connectionBean;
+        this.executor = executor;
+        this.source = source;
+    }
+
+    /**
+     * Publish the content of the remote file in buffers of the chunk size, the last one may be smaller.
+     * Each buffer is newly allocated, so the subscriber may keep it.
+     *
+     * @param connectionManager the connection manager
+     * @param connectionBean    the connection bean
+     * @param path              the path
+     * @param chunkSize         the chunk size
+     * @param executor          the executor running the subscriptions
+     * @return the publisher
+     */
+    public static SftpPublisher<ByteBuffer> download(@NonNull IConnectionManager connectionManager,
+                                                     @NonNull ConnectionBean connectionBean,
+                                                     @NonNull String path,
+                                                     int chunkSize,
+                                                     @NonNull Executor executor) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("The chunk size must be positive.");
+        }
+        return new SftpPublisher<>(connectionManager, connectionBean, executor, (connection, subscription) -> {
+            try (SeekableByteChannel channel = connection.openChannel(path)) {
+                // One byte is read ahead of a full chunk, so the end of the file completes without more demand.
+                // The size is not asked instead, no other request is allowed while the file is read.
+                ByteBuffer lookahead = ByteBuffer.allocate(1);
+                boolean end = false;
+                // A chunk is only read when the subscriber has demand for it.
+                while (!end && subscription.awaitDemand()) {
+                    ByteBuffer buffer = ByteBuffer.allocate(chunkSize);
+                    lookahead.flip();
+                    buffer.put(lookahead);
+                    lookahead.clear();
+                    end = !fill(channel, buffer) || !fill(channel, lookahead);
+                    buffer.flip();
+                    if (buffer.hasRemaining() && !subscription.emit(buffer)) {
+                        return;
+                    }
+                }
+            } catch (IOException e) {
+                LOG.error("Failed to read the file: {}", path);
+                throw new ConnectionException("Failed to read the file from ftp server!", e);
+            }
+        });
+    }
+
+    /**
+     * Read until the buffer is full.
+     *
+     * @return false if the end of the file was reached before
+     */
+    private static boolean fill(SeekableByteChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Publish the entries of the remote directory as they are listed, "." and ".." are skipped.
+     *
+     * @param connectionManager the connection manager
+     * @param connectionBean    the connection bean
+     * @param path              the path
+     * @param executor          the executor running the subscriptions
+     * @return the publisher
+     */
+    public static SftpPublisher<ChannelSftp.LsEntry> list(@NonNull IConnectionManager connectionManager,
+                                                          @NonNull ConnectionBean connectionBean,
+                                                          @NonNull String path,
+                                                          @NonNull Executor executor) {
+        return new SftpPublisher<>(connectionManager, connectionBean, executor,
+                (connection, subscription) -> connection.list(path, name -> true, subscription::emit));
+    }
+
+    @Override
+    public void subscribe(@NonNull ISubscriber<? super T> subscriber) {
+        Subscription<T> subscription = new Subscription<>(this, subscriber);
+        subscriber.onSubscribe(subscription);
+        try {
+            executor.execute(subscription::run);
+        } catch (RejectedExecutionException e) {
+            LOG.error("Failed to start the subscription", e);
+            subscription.cancel();
+            subscriber.onError(e);
+        }
+    }
+
+    /**
+     * The producer of the items on a borrowed connection.
+     */
+    @FunctionalInterface
+    private interface Source<T> {
+        void produce(ISftpConnection connection, Subscription<T> subscription) throws ConnectionException;
+    }
+
+    /**
+     * A subscription, the items are sent by the executor thread, the demand may be changed by any thread.
+     */
+    private static class Subscription<T> implements ISubscription {
+        private final SftpPublisher<T> publisher;
+        private final ISubscriber<? super T> subscriber;
+        private long demand;
+        private boolean cancelled;
+        private Throwable error;
+
+        Subscription(SftpPublisher<T> publisher, ISubscriber<? super T> subscriber) {
+            this.publisher = publisher;
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public synchronized void request(long count) {
+            if (count <= 0) {
+                error = new IllegalArgumentException("The request count must be positive.");
+                cancelled = true;
+            } else {
+                // Saturated, a demand of Long.MAX_VALUE is unbounded.
+                demand = demand + count < 0 ? Long.MAX_VALUE : demand + count;
+            }
+            notifyAll();
+        }
+
+        @Override
+        public synchronized void cancel() {
+            cancelled = true;
+            notifyAll();
+        }
+
+        /**
+         * Send the item when the subscriber has demand.
+         *
+         * @param item the item
+         * @return false if the subscription was cancelled
+         */
+        boolean emit(T item) {
+            if (!consumeDemand()) {
+                return false;
+            }
+            subscriber.onNext(item);
+            return true;
+        }
+
+        private synchronized boolean consumeDemand() {
+            if (!awaitDemand()) {
+                return false;
+            }
+            if (demand != Long.MAX_VALUE) {
+                demand--;
+            }
+            return true;
+        }
+
+        /**
+         * Wait until the subscriber has demand, the demand is not consumed.
+         *
+         * @return false if the subscription was cancelled
+         */
+        synchronized boolean awaitDemand() {
+            try {
+                while (demand == 0 && !cancelled) {
+                    wait();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                cancelled = true;
+            }
+            return !cancelled;
+        }
+
+        private synchronized boolean isCancelled() {
+            return cancelled;
+        }
+
+        private synchronized Throwable getError() {
+            return error;
+        }
+
+        void run() {
+            // Nothing is borrowed until the subscriber wants an item.
+            if (!awaitDemand()) {
+                signalCancelled();
+                return;
+            }
+            ISftpConnection connection;
+            try {
+                connection = publisher.connectionManager.borrowConnection(publisher.connectionBean,
+                        ISftpConnection.class);
+            } catch (ConnectionException | RuntimeException e) {
+                subscriber.onError(e);
+                return;
+            }
+            Throwable failure = null;
+            try {
+                publisher.source.produce(connection, this);
+            } catch (ConnectionException | RuntimeException e) {
+                failure = e;
+            } finally {
+                try {
+                    publisher.connectionManager.releaseConnection(publisher.connectionBean, connection);
+                } catch (ConnectionException e) {
+                    LOG.error("Failed to release the connection", e);
+                }
+            }
+            if (isCancelled()) {
+                signalCancelled();
+            } else if (failure != null) {
+                subscriber.onError(failure);
+            } else {
+                subscriber.onComplete();
+            }
+        }
+
+        private void signalCancelled() {
+            // A cancel is silent, only a wrong request is reported.
+            Throwable requestError = getError();
+            if (requestError != null) {
+                subscriber.onError(requestError);
+            }
+        }
+    }
+}
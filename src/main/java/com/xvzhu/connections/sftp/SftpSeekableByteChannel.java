@@ -0,0 +1,136 @@
+/*
+ * Copyright (c)  Xvzhu 2020.  All rights reserved.
+ */
+
+package com.xvzhu.connections.sftp;
+
+import com.jcraft.jsch.SftpException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+
+/**
+ * <p>The read only channel over a remote file.</p>
+ * The remote stream is opened at the position of the first read, and kept while the reads are sequential.
+ * Moving the position drops the stream, the next read opens a new one at the new offset,
+ * so only the read ranges are transferred.<br>
+ *
+ * @author : xvzhu
+ * @version V1.0
+ * @since Date : 2020-04-04 10:15
+ */
+class SftpSeekableByteChannel implements SeekableByteChannel {
+    private final SftpImpl connection;
+    private final String path;
+    private InputStream in;
+    private long streamPosition;
+    private long position;
+    private boolean open = true;
+
+    /**
+     * Instantiates a new Sftp seekable byte channel.
+     *
+     * @param connection the connection
+     * @param path       the path
+     */
+    SftpSeekableByteChannel(SftpImpl connection, String path) {
+        this.connection = connection;
+        this.path = path;
+    }
+
+    @Override
+    public int read(ByteBuffer dst) throws IOException {
+        ensureOpen();
+        if (!dst.hasRemaining()) {
+            return 0;
+        }
+        if (in == null || streamPosition != position) {
+            closeStream();
+            try {
+                in = connection.open(path, position);
+            } catch (SftpException e) {
+                throw new IOException(String.format("Failed to read the file: %s", path), e);
+            }
+            streamPosition = position;
+        }
+        int size = connection.read(in, dst, dst.remaining());
+        if (size > 0) {
+            position += size;
+            streamPosition = position;
+        }
+        return size;
+    }
+
+    @Override
+    public int write(ByteBuffer src) throws IOException {
+        throw new NonWritableChannelException();
+    }
+
+    @Override
+    public long position() throws IOException {
+        ensureOpen();
+        return position;
+    }
+
+    @Override
+    public SeekableByteChannel position(long newPosition) throws IOException {
+        ensureOpen();
+        if (newPosition < 0) {
+            throw new IllegalArgumentException("The position must not be negative.");
+        }
+        position = newPosition;
+        return this;
+    }
+
+    /**
+     * The size is read on every call, a file still written remotely can grow.
+     *
+     * @return the size
+     * @throws IOException the io exception
+     */
+    @Override
+    public long size() throws IOException {
+        ensureOpen();
+        try {
+            return connection.getChannelSftp().stat(path).getSize();
+        } catch (SftpException e) {
+            throw new IOException(String.format("Failed to get the size of the file: %s", path), e);
+        }
+    }
+
+    @Override
+    public SeekableByteChannel truncate(long size) throws IOException {
+        throw new NonWritableChannelException();
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (open) {
+            open = false;
+            closeStream();
+        }
+    }
+
+    private void closeStream() throws IOException {
+        if (in != null) {
+            InputStream stream = in;
+            in = null;
+            stream.close();
+        }
+    }
+
+    private void ensureOpen() throws ClosedChannelException {
+        if (!open) {
+            throw new ClosedChannelException();
+        }
+    }
+}
@@ -0,0 +1,26 @@
+/*
+ * Copyright (c)  Xvzhu 2020.  All rights reserved.
+ */
+
+package com.xvzhu.connections.sftp;
+
+import lombok.Data;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The statistic of a directory synchronization.
+ *
+ * @author : xvzhu
+ * @version V1.0
+ * @since Date : 2020-03-23 21:02
+ */
+@Data
+public class SftpSyncResult {
+    private final AtomicInteger uploadedFiles = new AtomicInteger();
+    private final AtomicInteger skippedFiles = new AtomicInteger();
+    private final AtomicInteger deletedEntries = new AtomicInteger();
+    private final AtomicInteger listedDirectories = new AtomicInteger();
+    private final AtomicLong transferredBytes = new AtomicLong();
+}
@@ -0,0 +1,350 @@
+/*
+ * Copyright (c)  Xvzhu 2020.  All rights reserved.
+ */
+
+package com.xvzhu.connections.sftp;
+
+import com.jcraft.jsch.ChannelSftp;
+import com.jcraft.jsch.SftpATTRS;
+import com.jcraft.jsch.SftpException;
+import com.xvzhu.connections.apis.ConnectionBean;
+import com.xvzhu.connections.apis.ConnectionConst;
+import com.xvzhu.connections.apis.ConnectionException;
+import com.xvzhu.connections.apis.IConnectionManager;
+import com.xvzhu.connections.apis.protocol.ChecksumAlgorithm;
+import com.xvzhu.connections.apis.protocol.ISftpConnection;
+import com.xvzhu.connections.operation.NamedThreadFactory;
+import lombok.NonNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Mirror a local directory tree to a remote directory tree.</p>
+ * Each remote directory is listed once, a file is uploaded only if the size or the mtime
+ * of the listing differs from the local file.<br>
+ * The mtime of an uploaded file is set to the local one, so an unchanged tree transfers nothing.<br>
+ * With a checksum algorithm, a file of the same size but a different mtime is only uploaded
+ * if the remote checksum differs, otherwise just the mtime is updated.<br>
+ * Directories and uploads are processed in parallel over at most parallelism connections.<br>
+ *
+ * @author : xvzhu
+ * @version V1.0
+ * @since Date : 2020-03-23 21:02
+ */
+public class SftpSynchronizer {
+    private static final Logger LOG = LoggerFactory.getLogger(SftpSynchronizer.class);
+    private static final String SEPARATOR = "/";
+
+    private IConnectionManager connectionManager;
+    private ConnectionBean connectionBean;
+    private int parallelism;
+
+    /**
+     * Instantiates a new Sftp synchronizer.
+     *
+     * @param connectionManager the connection manager
+     * @param connectionBean    the connection bean
+     * @param parallelism       the max connections used by a synchronization
+     */
+    public SftpSynchronizer(@NonNull IConnectionManager connectionManager,
+                            @NonNull ConnectionBean connectionBean,
+                            int parallelism) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("The parallelism must be positive.");
+        }
+        this.connectionManager = connectionManager;
+        this.connectionBean = connectionBean;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * <p>Mirror the local directory to the remote directory.</p>
+     *
+     * @param localDir          the local dir
+     * @param remoteDir         the remote dir
+     * @param deleteExtraneous  delete the remote entries which do not exist locally
+     * @return the sync result
+     * @throws ConnectionException the connection exception
+     */
+    public SftpSyncResult mirror(@NonNull Path localDir, @NonNull String remoteDir, boolean deleteExtraneous)
+            throws ConnectionException {
+        return mirror(localDir, remoteDir, deleteExtraneous, null);
+    }
+
+    /**
+     * <p>Mirror the local directory to the remote directory.</p>
+     * The content of a file with the same size but a different mtime is compared by checksum.<br>
+     *
+     * @param localDir          the local dir
+     * @param remoteDir         the remote dir
+     * @param deleteExtraneous  delete the remote entries which do not exist locally
+     * @param algorithm         the checksum algorithm, null to upload without comparing the content
+     * @return the sync result
+     * @throws ConnectionException the connection exception
+     */
+    public SftpSyncResult mirror(@NonNull Path localDir, @NonNull String remoteDir, boolean deleteExtraneous,
+                                 ChecksumAlgorithm algorithm) throws ConnectionException {
+        if (!Files.isDirectory(localDir)) {
+            throw new ConnectionException("The local directory: %s is not existed!", localDir.toString());
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism,
+                new NamedThreadFactory(ConnectionConst.SFTP_SYNC_THREAD_NAME));
+        Sync sync = new Sync(executor, deleteExtraneous, algorithm);
+        try {
+            sync.submit(() -> sync.syncRoot(localDir, remoteDir));
+            sync.await();
+            for (String dir : sync.extraneousDirectories) {
+                new SftpTreeWalker(connectionManager, connectionBean, parallelism).deleteRecursively(dir);
+                sync.result.getDeletedEntries().incrementAndGet();
+            }
+            return sync.result;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * The action of a synchronization task.
+     */
+    @FunctionalInterface
+    private interface SyncAction {
+        void run() throws ConnectionException;
+    }
+
+    /**
+     * The state of a single synchronization.
+     */
+    private class Sync {
+        private final ExecutorService executor;
+        private final boolean deleteExtraneous;
+        private final ChecksumAlgorithm algorithm;
+        private final SftpSyncResult result = new SftpSyncResult();
+        private final Queue<Future<?>> futures = new ConcurrentLinkedQueue<>();
+        private final Queue<String> extraneousDirectories = new ConcurrentLinkedQueue<>();
+
+        Sync(ExecutorService executor, boolean deleteExtraneous, ChecksumAlgorithm algorithm) {
+            this.executor = executor;
+            this.deleteExtraneous = deleteExtraneous;
+            this.algorithm = algorithm;
+        }
+
+        void submit(SyncAction action) {
+            futures.add(executor.submit(() -> {
+                action.run();
+                return null;
+            }));
+        }
+
+        void await() throws ConnectionException {
+            // A task submits its sub tasks before it is done, so the queue is empty only when everything is done.
+            Future<?> future;
+            try {
+                while ((future = futures.poll()) != null) {
+                    future.get();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ConnectionException("The synchronization was interrupted!", e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof ConnectionException) {
+                    throw (ConnectionException) e.getCause();
+                }
+                throw new ConnectionException("Failed to synchronize the directory!", e);
+            }
+        }
+
+        void syncRoot(Path localDir, String remoteDir) throws ConnectionException {
+            ISftpConnection connection = borrow();
+            try {
+                if (!connection.isDirectory(remoteDir)) {
+                    connection.mkdirs(remoteDir);
+                    syncDirectory(connection, localDir, remoteDir, new HashMap<>());
+                } else {
+                    syncDirectory(connection, localDir, remoteDir, listRemote(connection, remoteDir));
+                }
+            } finally {
+                connectionManager.releaseConnection(connectionBean);
+            }
+        }
+
+        void syncListedDirectory(Path localDir, String remoteDir) throws ConnectionException {
+            ISftpConnection connection = borrow();
+            try {
+                syncDirectory(connection, localDir, remoteDir, listRemote(connection, remoteDir));
+            } finally {
+                connectionManager.releaseConnection(connectionBean);
+            }
+        }
+
+        private Map<String, SftpATTRS> listRemote(ISftpConnection connection, String remoteDir)
+                throws ConnectionException {
+            Map<String, SftpATTRS> remoteEntries = new HashMap<>();
+            connection.list(remoteDir, name -> true, entry -> {
+                remoteEntries.put(entry.getFilename(), entry.getAttrs());
+                return true;
+            });
+            result.getListedDirectories().incrementAndGet();
+            return remoteEntries;
+        }
+
+        private void syncDirectory(ISftpConnection connection, Path localDir, String remoteDir,
+                                   Map<String, SftpATTRS> remoteEntries) throws ConnectionException {
+            try (DirectoryStream<Path> children = Files.newDirectoryStream(localDir)) {
+                for (Path child : children) {
+                    String name = child.getFileName().toString();
+                    String remotePath = remoteDir + SEPARATOR + name;
+                    SftpATTRS remoteAttrs = remoteEntries.remove(name);
+                    BasicFileAttributes localAttrs = Files.readAttributes(child, BasicFileAttributes.class);
+                    if (localAttrs.isDirectory()) {
+                        syncChildDirectory(connection, child, remotePath, remoteAttrs);
+                    } else if (localAttrs.isRegularFile()) {
+                        syncFile(connection, child, localAttrs, remoteDir, name, remoteAttrs);
+                    }
+                }
+            } catch (IOException e) {
+                LOG.error("Failed to read the local directory {}", localDir);
+                throw new ConnectionException("Failed to read the local directory!", e);
+            }
+            if (deleteExtraneous) {
+                deleteExtraneous(connection, remoteDir, remoteEntries);
+            }
+        }
+
+        private void syncChildDirectory(ISftpConnection connection, Path localDir, String remoteDir,
+                                        SftpATTRS remoteAttrs) throws ConnectionException {
+            if (remoteAttrs != null && remoteAttrs.isDir()) {
+                submit(() -> syncListedDirectory(localDir, remoteDir));
+                return;
+            }
+            if (remoteAttrs != null) {
+                deleteConflict(connection, remoteDir);
+            }
+            connection.mkdirs(remoteDir);
+            // A new directory has nothing to compare with, no listing is needed.
+            submit(() -> {
+                ISftpConnection childConnection = borrow();
+                try {
+                    syncDirectory(childConnection, localDir, remoteDir, new HashMap<>());
+                } finally {
+                    connectionManager.releaseConnection(connectionBean);
+                }
+            });
+        }
+
+        private void syncFile(ISftpConnection connection, Path localFile, BasicFileAttributes localAttrs,
+                              String remoteDir, String name, SftpATTRS remoteAttrs) throws ConnectionException {
+            long localMtime = localAttrs.lastModifiedTime().to(TimeUnit.SECONDS);
+            if (remoteAttrs != null && !remoteAttrs.isDir()
+                    && remoteAttrs.getSize() == localAttrs.size()
+                    && remoteAttrs.getMTime() == localMtime) {
+                result.getSkippedFiles().incrementAndGet();
+                return;
+            }
+            if (remoteAttrs != null && remoteAttrs.isDir()) {
+                deleteConflict(connection, remoteDir + SEPARATOR + name);
+            }
+            boolean compareContent = algorithm != null && remoteAttrs != null && !remoteAttrs.isDir()
+                    && remoteAttrs.getSize() == localAttrs.size();
+            submit(() -> upload(localFile, remoteDir, name, (int) localMtime, compareContent));
+        }
+
+        private void upload(Path localFile, String remoteDir, String name, int mtime, boolean compareContent)
+                throws ConnectionException {
+            ISftpConnection connection = borrow();
+            try {
+                // The size is known equal from the listing, so only the checksums are compared.
+                if (compareContent && connection.checksum(remoteDir + SEPARATOR + name, algorithm)
+                        .equals(algorithm.checksum(localFile))) {
+                    result.getSkippedFiles().incrementAndGet();
+                } else {
+                    long size = connection.upload(remoteDir, name, localFile);
+                    result.getUploadedFiles().incrementAndGet();
+                    result.getTransferredBytes().addAndGet(size);
+                }
+                connection.getChannelSftp().setMtime(remoteDir + SEPARATOR + name, mtime);
+            } catch (IOException e) {
+                LOG.error("Failed to read the local file {}", localFile);
+                throw new ConnectionException("Failed to read the local file!", e);
+            } catch (SftpException e) {
+                LOG.error("Failed to set the mtime of {}", name);
+                throw new ConnectionException("Failed to set the mtime of the file!", e);
+            } finally {
+                connectionManager.releaseConnection(connectionBean);
+            }
+        }
+
+        private void deleteExtraneous(ISftpConnection connection, String remoteDir,
+                                      Map<String, SftpATTRS> extraneousEntries) throws ConnectionException {
+            for (Map.Entry<String, SftpATTRS> entry : extraneousEntries.entrySet()) {
+                String remotePath = remoteDir + SEPARATOR + entry.getKey();
+                if (entry.getValue().isDir()) {
+                    extraneousDirectories.add(remotePath);
+                    continue;
+                }
+                try {
+                    connection.getChannelSftp().rm(remotePath);
+                    result.getDeletedEntries().incrementAndGet();
+                } catch (SftpException e) {
+                    LOG.error("Failed to delete the file {}", remotePath);
+                    throw new ConnectionException("Failed to delete the file", e);
+                }
+            }
+        }
+
+        private void deleteConflict(ISftpConnection connection, String remotePath) throws ConnectionException {
+            if (!deleteExtraneous) {
+                throw new ConnectionException("The remote path: %s has a different type from the local one!",
+                        remotePath);
+            }
+            // A serial walk on the connection of this task, another borrow could wait for a pool held by the tasks.
+            deleteRecursively(connection, remotePath);
+            result.getDeletedEntries().incrementAndGet();
+        }
+
+        private void deleteRecursively(ISftpConnection connection, String remotePath) throws ConnectionException {
+            ChannelSftp channelSftp = connection.getChannelSftp();
+            try {
+                if (!channelSftp.lstat(remotePath).isDir()) {
+                    channelSftp.rm(remotePath);
+                    return;
+                }
+                Map<String, SftpATTRS> children = new HashMap<>();
+                connection.list(remotePath, name -> true, entry -> {
+                    children.put(entry.getFilename(), entry.getAttrs());
+                    return true;
+                });
+                for (Map.Entry<String, SftpATTRS> child : children.entrySet()) {
+                    String childPath = remotePath + SEPARATOR + child.getKey();
+                    if (child.getValue().isDir()) {
+                        deleteRecursively(connection, childPath);
+                    } else {
+                        channelSftp.rm(childPath);
+                    }
+                }
+                connection.deleteDirectory(remotePath);
+            } catch (SftpException e) {
+                LOG.error("Failed to delete the remote path {}", remotePath);
+                throw new ConnectionException("Failed to delete the remote path!", e);
+            }
+        }
+
+        private ISftpConnection borrow() throws ConnectionException {
+            return connectionManager.borrowConnection(connectionBean, ISftpConnection.class);
+        }
+    }
+}
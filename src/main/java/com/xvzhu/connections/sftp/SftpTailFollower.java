@@ -0,0 +1,348 @@
+/*
+ * Copyright (c)  Xvzhu 2020.  All rights reserved.
+ */
+
+package com.xvzhu.connections.sftp;
+
+import com.jcraft.jsch.ChannelSftp;
+import com.jcraft.jsch.SftpATTRS;
+import com.jcraft.jsch.SftpException;
+import com.xvzhu.connections.apis.ConnectionBean;
+import com.xvzhu.connections.apis.ConnectionConst;
+import com.xvzhu.connections.apis.ConnectionException;
+import com.xvzhu.connections.apis.IConnectionManager;
+import com.xvzhu.connections.apis.protocol.ISftpConnection;
+import com.xvzhu.connections.apis.protocol.ISftpTailListener;
+import com.xvzhu.connections.operation.NamedThreadFactory;
+import lombok.NonNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Follow the growing remote files of a host, like tail -F.</p>
+ * Each poll sends one lstat per file, only the bytes after the last offset are read when the file changed.
+ * The appended bytes are split into lines, a line without the separator is kept until the next poll.<br>
+ * A file is rotated when it is shorter than the offset, when its first bytes changed,
+ * or when it reappears after it was missing, then it is followed again from the beginning.<br>
+ * All files are polled by a single thread over a single connection of the host.<br>
+ *
+ * @author : xvzhu
+ * @version V1.0
+ * @since Date : 2020-04-04 14:20
+ */
+public class SftpTailFollower {
+    private static final Logger LOG = LoggerFactory.getLogger(SftpTailFollower.class);
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+    private static final int HEAD_SIZE = 64;
+    private static final int MAX_LINE_LENGTH = 64 * 1024;
+    private static final long CLOSE_TIMEOUT_MS = 10000L;
+
+    private final IConnectionManager connectionManager;
+    private final ConnectionBean connectionBean;
+    private final long intervalMillis;
+    private final Map<String, FollowedFile> files = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(
+            new NamedThreadFactory(ConnectionConst.SFTP_TAIL_THREAD_NAME));
+
+    /**
+     * The read buffer and the connection of the follower thread, only used by that thread.
+     */
+    private final ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+    private ISftpConnection connection;
+    private boolean started;
+
+    /**
+     * Instantiates a new Sftp tail follower.
+     *
+     * @param connectionManager the connection manager
+     * @param connectionBean    the connection bean
+     * @param intervalMillis    the poll interval
+     */
+    public SftpTailFollower(@NonNull IConnectionManager connectionManager,
+                            @NonNull ConnectionBean connectionBean,
+                            long intervalMillis) {
+        if (intervalMillis <= 0L) {
+            throw new IllegalArgumentException("The interval must be positive.");
+        }
+        this.connectionManager = connectionManager;
+        this.connectionBean = connectionBean;
+        this.intervalMillis = intervalMillis;
+    }
+
+    /**
+     * Follow the file, replace the listener if the file is followed.
+     *
+     * @param path     the path
+     * @param listener the listener
+     * @param fromEnd  true to skip the existing content, false to read the file from the beginning
+     */
+    public void follow(@NonNull String path, @NonNull ISftpTailListener listener, boolean fromEnd) {
+        FollowedFile followed = files.putIfAbsent(path, new FollowedFile(path, listener, fromEnd));
+        if (followed != null) {
+            followed.listener = listener;
+        }
+    }
+
+    /**
+     * Stop following the file.
+     *
+     * @param path the path
+     */
+    public void unfollow(@NonNull String path) {
+        files.remove(path);
+    }
+
+    /**
+     * Get the offset of the next read of the file.
+     *
+     * @param path the path
+     * @return the offset, or -1 if the file is not followed
+     */
+    public long getOffset(@NonNull String path) {
+        FollowedFile followed = files.get(path);
+        return followed == null ? -1L : followed.offset;
+    }
+
+    /**
+     * <p>Start polling.</p>
+     * The files are polled once before return,
+     * so the offsets of the files followed from the end are taken before the later writes.
+     * If the first poll fails, the follower is not started and start can be called again.<br>
+     *
+     * @throws ConnectionException the connection exception
+     */
+    public synchronized void start() throws ConnectionException {
+        if (started) {
+            return;
+        }
+        started = true;
+        try {
+            executor.submit(() -> {
+                pollFirst();
+                return null;
+            }).get();
+        } catch (InterruptedException e) {
+            started = false;
+            Thread.currentThread().interrupt();
+            throw new ConnectionException("The follower start was interrupted!", e);
+        } catch (ExecutionException e) {
+            started = false;
+            LOG.error("Failed to poll the followed files.");
+            throw new ConnectionException("Failed to poll the followed files!", e);
+        }
+        executor.scheduleWithFixedDelay(this::pollAll, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stop polling and release the connection.
+     */
+    public synchronized void close() {
+        if (executor.isShutdown()) {
+            return;
+        }
+        executor.execute(this::releaseConnection);
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(intervalMillis + CLOSE_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Poll the files once, unlike the scheduled polls the failure is thrown.
+     */
+    private void pollFirst() throws ConnectionException, IOException {
+        for (FollowedFile followed : files.values()) {
+            try {
+                poll(followed);
+            } catch (ConnectionException | IOException e) {
+                releaseConnection();
+                throw e;
+            }
+        }
+    }
+
+    private void pollAll() {
+        for (FollowedFile followed : files.values()) {
+            try {
+                poll(followed);
+            } catch (ConnectionException | IOException e) {
+                LOG.error("Failed to poll the file {}", followed.path, e);
+                // The connection may be broken, a new one is borrowed by the next poll.
+                releaseConnection();
+            }
+        }
+    }
+
+    private void poll(FollowedFile followed) throws ConnectionException, IOException {
+        if (connection == null) {
+            connection = connectionManager.borrowConnection(connectionBean, ISftpConnection.class);
+        }
+        SftpATTRS attrs;
+        try {
+            attrs = connection.getChannelSftp().lstat(followed.path);
+        } catch (SftpException e) {
+            if (e.id != ChannelSftp.SSH_FX_NO_SUCH_FILE) {
+                LOG.error("Failed to get the attributes of the file: {}", followed.path);
+                throw new ConnectionException("Failed to poll the file!", e);
+            }
+            // Moved away by the rotation, the new file is read from the beginning.
+            followed.missing = followed.polled;
+            followed.polled = true;
+            return;
+        }
+        long size = attrs.getSize();
+        if (followed.polled && !followed.missing && size == followed.size && attrs.getMTime() == followed.mtime) {
+            return;
+        }
+        try (SeekableByteChannel channel = connection.openChannel(followed.path)) {
+            if (!followed.polled) {
+                followed.offset = followed.fromEnd ? size : 0L;
+            } else if (followed.missing || size < followed.offset || isHeadChanged(followed, channel)) {
+                LOG.info("The file {} was rotated, follow it from the beginning.", followed.path);
+                followed.offset = 0L;
+                followed.head = new byte[0];
+                followed.lineLength = 0;
+                notifyRotated(followed);
+            }
+            followed.polled = true;
+            followed.missing = false;
+            followed.size = size;
+            followed.mtime = attrs.getMTime();
+            if (followed.head.length < HEAD_SIZE && followed.head.length < size) {
+                followed.head = readHead(channel, (int) Math.min(HEAD_SIZE, size));
+            }
+            channel.position(followed.offset);
+            readBuffer.clear();
+            int count;
+            while ((count = channel.read(readBuffer)) > 0) {
+                followed.offset += count;
+                readBuffer.flip();
+                splitLines(followed);
+                readBuffer.clear();
+            }
+        }
+    }
+
+    private boolean isHeadChanged(FollowedFile followed, SeekableByteChannel channel) throws IOException {
+        if (followed.head.length == 0) {
+            return false;
+        }
+        return !Arrays.equals(followed.head, readHead(channel, followed.head.length));
+    }
+
+    private byte[] readHead(SeekableByteChannel channel, int length) throws IOException {
+        ByteBuffer head = ByteBuffer.allocate(length);
+        channel.position(0L);
+        while (head.hasRemaining() && channel.read(head) >= 0) {
+            continue;
+        }
+        return Arrays.copyOf(head.array(), head.position());
+    }
+
+    private void splitLines(FollowedFile followed) {
+        byte[] bytes = readBuffer.array();
+        int start = 0;
+        for (int i = 0; i < readBuffer.limit(); i++) {
+            if (bytes[i] == '\n') {
+                appendLine(followed, bytes, start, i - start);
+                notifyLine(followed);
+                start = i + 1;
+            }
+        }
+        appendLine(followed, bytes, start, readBuffer.limit() - start);
+    }
+
+    private void appendLine(FollowedFile followed, byte[] bytes, int start, int length) {
+        int offset = start;
+        int remaining = length;
+        while (remaining > 0) {
+            // A line longer than the limit is delivered in pieces, so the memory of a file is bounded.
+            if (followed.lineLength == MAX_LINE_LENGTH) {
+                notifyLine(followed);
+            }
+            int size = Math.min(remaining, MAX_LINE_LENGTH - followed.lineLength);
+            if (followed.line.length < followed.lineLength + size) {
+                followed.line = Arrays.copyOf(followed.line,
+                        Math.min(MAX_LINE_LENGTH, Math.max(followed.line.length * 2, followed.lineLength + size)));
+            }
+            System.arraycopy(bytes, offset, followed.line, followed.lineLength, size);
+            followed.lineLength += size;
+            offset += size;
+            remaining -= size;
+        }
+    }
+
+    private void notifyLine(FollowedFile followed) {
+        int length = followed.lineLength;
+        if (length > 0 && followed.line[length - 1] == '\r') {
+            length--;
+        }
+        String line = new String(followed.line, 0, length, StandardCharsets.UTF_8);
+        followed.lineLength = 0;
+        try {
+            followed.listener.onLine(followed.path, line);
+        } catch (RuntimeException e) {
+            LOG.error("Failed to notify the line of the file {}", followed.path, e);
+        }
+    }
+
+    private void notifyRotated(FollowedFile followed) {
+        try {
+            followed.listener.onRotated(followed.path);
+        } catch (RuntimeException e) {
+            LOG.error("Failed to notify the rotation of the file {}", followed.path, e);
+        }
+    }
+
+    private void releaseConnection() {
+        if (connection == null) {
+            return;
+        }
+        connection = null;
+        try {
+            connectionManager.releaseConnection(connectionBean);
+        } catch (ConnectionException e) {
+            LOG.error("Failed to release the connection", e);
+        }
+    }
+
+    /**
+     * A followed file, only changed by the follower thread except the listener and the offset.
+     */
+    private static class FollowedFile {
+        private final String path;
+        private final boolean fromEnd;
+        private volatile ISftpTailListener listener;
+        private volatile long offset;
+        private boolean polled;
+        private boolean missing;
+        private long size;
+        private int mtime;
+        private byte[] head = new byte[0];
+        private byte[] line = new byte[256];
+        private int lineLength;
+
+        FollowedFile(String path, ISftpTailListener listener, boolean fromEnd) {
+            this.path = path;
+            this.listener = listener;
+            this.fromEnd = fromEnd;
+        }
+    }
+}
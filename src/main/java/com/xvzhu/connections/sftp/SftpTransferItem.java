@@ -0,0 +1,28 @@
+/*
+ * Copyright (c)  Xvzhu 2020.  All rights reserved.
+ */
+
+package com.xvzhu.connections.sftp;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NonNull;
+
+import java.nio.file.Path;
+
+/**
+ * The pair of local file and remote file of a transfer.
+ *
+ * @author : xvzhu
+ * @version V1.0
+ * @since Date : 2020-03-24 20:18
+ */
+@Data
+@AllArgsConstructor
+public class SftpTransferItem {
+    @NonNull
+    private Path localFile;
+
+    @NonNull
+    private String remoteFile;
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright (c)  Xvzhu 2020.  All rights reserved.
+ */
+
+package com.xvzhu.connections.sftp;
+
+import com.xvzhu.connections.apis.ConnectionException;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * The result of a single file transfer.
+ *
+ * @author : xvzhu
+ * @version V1.0
+ * @since Date : 2020-03-24 20:18
+ */
+@Data
+@AllArgsConstructor
+public class SftpTransferResult {
+    private SftpTransferItem item;
+
+    private long bytes;
+
+    private long elapsedMillis;
+
+    /**
+     * The failure of the transfer, null if succeeded.
+     */
+    private ConnectionException failure;
+
+    /**
+     * Is the transfer succeeded.
+     *
+     * @return the boolean
+     */
+    public boolean isSuccess() {
+        return failure == null;
+    }
+}
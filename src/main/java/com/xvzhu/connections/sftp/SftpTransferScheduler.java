@@ -0,0 +1,296 @@
+/*
+ * Copyright (c)  Xvzhu 2020.  All rights reserved.
+ */
+
+package com.xvzhu.connections.sftp;
+
+import com.xvzhu.connections.apis.ConnectionBean;
+import com.xvzhu.connections.apis.ConnectionConst;
+import com.xvzhu.connections.apis.ConnectionException;
+import com.xvzhu.connections.apis.IConnectionManager;
+import com.xvzhu.connections.apis.protocol.ISftpConnection;
+import com.xvzhu.connections.operation.NamedThreadFactory;
+import lombok.NonNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Schedule prioritized transfers over the connections of the hosts.</p>
+ * Each host has a queue per priority, and at most maxConnections transfers of a host run at the same time.<br>
+ * The reserved connections of a host are only used by the high priority transfers,
+ * so an urgent file never waits for a whole backfill.<br>
+ * The other connections are shared by smooth weighted round robin over the non-empty queues,
+ * so the low priority transfers still make progress under a steady high priority load.<br>
+ *
+ * @author : xvzhu
+ * @version V1.0
+ * @since Date : 2020-03-30 20:10
+ */
+public class SftpTransferScheduler {
+    private static final Logger LOG = LoggerFactory.getLogger(SftpTransferScheduler.class);
+    private static final String SEPARATOR = "/";
+    private static final String CURRENT_DIR = ".";
+
+    private final IConnectionManager connectionManager;
+    private final int maxConnections;
+    private final int reservedConnections;
+    private final Map<ConnectionBean, HostQueue> hostQueues = new HashMap<>();
+    private final ExecutorService executor = Executors.newCachedThreadPool(
+            new NamedThreadFactory(ConnectionConst.SFTP_SCHEDULER_THREAD_NAME));
+    private boolean shutdown;
+
+    /**
+     * Instantiates a new Sftp transfer scheduler.
+     *
+     * @param connectionManager   the connection manager
+     * @param maxConnections      the max connections used per host
+     * @param reservedConnections the connections of a host reserved for the high priority transfers
+     */
+    public SftpTransferScheduler(@NonNull IConnectionManager connectionManager,
+                                 int maxConnections,
+                                 int reservedConnections) {
+        if (maxConnections <= 0 || reservedConnections < 0 || reservedConnections >= maxConnections) {
+            throw new IllegalArgumentException("The reserved connections must be less than the max connections.");
+        }
+        this.connectionManager = connectionManager;
+        this.maxConnections = maxConnections;
+        this.reservedConnections = reservedConnections;
+    }
+
+    /**
+     * Schedule the upload of the local file to the remote file.
+     *
+     * @param connectionBean the connection bean
+     * @param item           the item
+     * @param priority       the priority
+     * @return the future of the transfer result
+     */
+    public CompletableFuture<SftpTransferResult> upload(@NonNull ConnectionBean connectionBean,
+                                                        @NonNull SftpTransferItem item,
+                                                        @NonNull TransferPriority priority) {
+        return schedule(new Job(connectionBean, item, priority, true));
+    }
+
+    /**
+     * Schedule the download of the remote file to the local file.
+     *
+     * @param connectionBean the connection bean
+     * @param item           the item
+     * @param priority       the priority
+     * @return the future of the transfer result
+     */
+    public CompletableFuture<SftpTransferResult> download(@NonNull ConnectionBean connectionBean,
+                                                          @NonNull SftpTransferItem item,
+                                                          @NonNull TransferPriority priority) {
+        return schedule(new Job(connectionBean, item, priority, false));
+    }
+
+    /**
+     * Gets the count of the queued transfers of the host.
+     *
+     * @param connectionBean the connection bean
+     * @param priority       the priority
+     * @return the count
+     */
+    public synchronized int getQueuedCount(@NonNull ConnectionBean connectionBean, @NonNull TransferPriority priority) {
+        HostQueue hostQueue = hostQueues.get(connectionBean);
+        return hostQueue == null ? 0 : hostQueue.queues.get(priority).size();
+    }
+
+    /**
+     * Shutdown the scheduler, the queued transfers are failed and the running ones are interrupted.
+     */
+    public void shutdown() {
+        synchronized (this) {
+            shutdown = true;
+            for (HostQueue hostQueue : hostQueues.values()) {
+                for (Deque<Job> queue : hostQueue.queues.values()) {
+                    Job job;
+                    while ((job = queue.poll()) != null) {
+                        job.future.complete(job.fail(new ConnectionException("The scheduler is shutdown.")));
+                    }
+                }
+            }
+        }
+        executor.shutdownNow();
+    }
+
+    private CompletableFuture<SftpTransferResult> schedule(Job job) {
+        synchronized (this) {
+            if (shutdown) {
+                job.future.complete(job.fail(new ConnectionException("The scheduler is shutdown.")));
+                return job.future;
+            }
+            HostQueue hostQueue = hostQueues.computeIfAbsent(job.connectionBean, bean -> new HostQueue());
+            hostQueue.queues.get(job.priority).add(job);
+            dispatch(hostQueue);
+        }
+        return job.future;
+    }
+
+    /**
+     * Start the queued transfers of the host while it has free connections, called with the lock held.
+     */
+    private void dispatch(HostQueue hostQueue) {
+        Job job;
+        while (hostQueue.running < maxConnections && (job = hostQueue.next()) != null) {
+            hostQueue.running++;
+            if (job.priority != TransferPriority.HIGH) {
+                hostQueue.sharedRunning++;
+            }
+            Job started = job;
+            executor.execute(() -> run(hostQueue, started));
+        }
+    }
+
+    private void run(HostQueue hostQueue, Job job) {
+        try {
+            job.future.complete(transfer(job));
+        } catch (RuntimeException e) {
+            LOG.error("Failed to transfer the file {}", job.item.getRemoteFile(), e);
+            job.future.complete(job.fail(new ConnectionException("Failed to transfer the file!", e)));
+        } finally {
+            synchronized (this) {
+                hostQueue.running--;
+                if (job.priority != TransferPriority.HIGH) {
+                    hostQueue.sharedRunning--;
+                }
+                if (!shutdown) {
+                    dispatch(hostQueue);
+                }
+            }
+        }
+    }
+
+    private SftpTransferResult transfer(Job job) {
+        long begin = System.nanoTime();
+        ISftpConnection connection;
+        try {
+            connection = connectionManager.borrowConnection(job.connectionBean, ISftpConnection.class);
+        } catch (ConnectionException e) {
+            return job.fail(e);
+        }
+        try {
+            String remoteFile = job.item.getRemoteFile();
+            String dir = parentOf(remoteFile);
+            String name = remoteFile.substring(remoteFile.lastIndexOf(SEPARATOR) + 1);
+            long bytes = job.upload ? connection.upload(dir, name, job.item.getLocalFile())
+                    : download(connection, dir, name, job.item.getLocalFile());
+            return new SftpTransferResult(job.item, bytes,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - begin), null);
+        } catch (ConnectionException e) {
+            return new SftpTransferResult(job.item, 0L,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - begin), e);
+        } finally {
+            try {
+                connectionManager.releaseConnection(job.connectionBean);
+            } catch (ConnectionException e) {
+                LOG.error("Failed to release the connection", e);
+            }
+        }
+    }
+
+    private static String parentOf(String remoteFile) {
+        int separatorPos = remoteFile.lastIndexOf(SEPARATOR);
+        if (separatorPos < 0) {
+            return CURRENT_DIR;
+        }
+        return separatorPos == 0 ? SEPARATOR : remoteFile.substring(0, separatorPos);
+    }
+
+    private static long download(ISftpConnection connection, String dir, String name, Path localFile)
+            throws ConnectionException {
+        try {
+            Path parent = localFile.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            try (FileChannel target = FileChannel.open(localFile, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                return connection.download(dir, name, target);
+            }
+        } catch (IOException e) {
+            LOG.error("Failed to write the local file {}", localFile);
+            throw new ConnectionException("Failed to write the local file!", e);
+        }
+    }
+
+    /**
+     * The queues of a host, guarded by the scheduler lock.
+     */
+    private class HostQueue {
+        private final Map<TransferPriority, Deque<Job>> queues = new EnumMap<>(TransferPriority.class);
+        private final Map<TransferPriority, Integer> currentWeights = new EnumMap<>(TransferPriority.class);
+        private int running;
+        private int sharedRunning;
+
+        HostQueue() {
+            for (TransferPriority priority : TransferPriority.values()) {
+                queues.put(priority, new ArrayDeque<>());
+                currentWeights.put(priority, 0);
+            }
+        }
+
+        /**
+         * Pick the next job by smooth weighted round robin over the queues allowed to start now.
+         */
+        Job next() {
+            boolean sharedAvailable = sharedRunning < maxConnections - reservedConnections;
+            TransferPriority selected = null;
+            int totalWeight = 0;
+            for (TransferPriority priority : TransferPriority.values()) {
+                if (queues.get(priority).isEmpty() || (priority != TransferPriority.HIGH && !sharedAvailable)) {
+                    continue;
+                }
+                int currentWeight = currentWeights.get(priority) + priority.getWeight();
+                currentWeights.put(priority, currentWeight);
+                totalWeight += priority.getWeight();
+                if (selected == null || currentWeight > currentWeights.get(selected)) {
+                    selected = priority;
+                }
+            }
+            if (selected == null) {
+                return null;
+            }
+            currentWeights.put(selected, currentWeights.get(selected) - totalWeight);
+            return queues.get(selected).poll();
+        }
+    }
+
+    /**
+     * A scheduled transfer.
+     */
+    private static class Job {
+        private final ConnectionBean connectionBean;
+        private final SftpTransferItem item;
+        private final TransferPriority priority;
+        private final boolean upload;
+        private final CompletableFuture<SftpTransferResult> future = new CompletableFuture<>();
+
+        Job(ConnectionBean connectionBean, SftpTransferItem item, TransferPriority priority, boolean upload) {
+            this.connectionBean = connectionBean;
+            this.item = item;
+            this.priority = priority;
+            this.upload = upload;
+        }
+
+        SftpTransferResult fail(ConnectionException failure) {
+            return new SftpTransferResult(item, 0L, 0L, failure);
+        }
+    }
+}
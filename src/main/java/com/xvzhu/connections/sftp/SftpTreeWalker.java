@@ -0,0 +1,318 @@
+/*
+ * Copyright (c)  Xvzhu 2020.  All rights reserved.
+ */
+
+package com.xvzhu.connections.sftp;
+
+import com.jcraft.jsch.ChannelSftp;
+import com.jcraft.jsch.SftpATTRS;
+import com.jcraft.jsch.SftpException;
+import com.xvzhu.connections.apis.ConnectionBean;
+import com.xvzhu.connections.apis.ConnectionConst;
+import com.xvzhu.connections.apis.ConnectionException;
+import com.xvzhu.connections.apis.IConnectionManager;
+import com.xvzhu.connections.apis.protocol.ISftpConnection;
+import com.xvzhu.connections.apis.protocol.ISftpTreeVisitor;
+import com.xvzhu.connections.operation.NamedThreadFactory;
+import lombok.NonNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Predicate;
+
+/**
+ * <p>Parallel walker of remote trees.</p>
+ * Each directory listing is a task, the tasks are spread over at most parallelism connections
+ * borrowed from the connection manager.<br>
+ * A directory is post visited after all of its children were visited, like a fork/join.<br>
+ * The attributes of the listing are handed to the visitor, no extra lstat is needed per entry.<br>
+ *
+ * @author : xvzhu
+ * @version V1.0
+ * @since Date : 2020-03-22 14:05
+ */
+public class SftpTreeWalker {
+    private static final Logger LOG = LoggerFactory.getLogger(SftpTreeWalker.class);
+    private static final String SEPARATOR = "/";
+
+    private IConnectionManager connectionManager;
+    private ConnectionBean connectionBean;
+    private int parallelism;
+
+    /**
+     * Instantiates a new Sftp tree walker.
+     *
+     * @param connectionManager the connection manager
+     * @param connectionBean    the connection bean
+     * @param parallelism       the max connections used by a walk
+     */
+    public SftpTreeWalker(@NonNull IConnectionManager connectionManager,
+                          @NonNull ConnectionBean connectionBean,
+                          int parallelism) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("The parallelism must be positive.");
+        }
+        this.connectionManager = connectionManager;
+        this.connectionBean = connectionBean;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * <p>Walk the tree of root.</p>
+     * If root is a file, only the file is visited.<br>
+     *
+     * @param root    the root
+     * @param visitor the visitor
+     * @throws ConnectionException the connection exception
+     */
+    public void walk(@NonNull String root, @NonNull ISftpTreeVisitor visitor) throws ConnectionException {
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism,
+                new NamedThreadFactory(ConnectionConst.SFTP_WALKER_THREAD_NAME));
+        Walk walk = new Walk(visitor, executor);
+        try {
+            executor.execute(() -> walk.visitRoot(root));
+            walk.finished.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ConnectionException("The walk was interrupted!", e);
+        } finally {
+            executor.shutdownNow();
+        }
+        if (walk.failure.get() != null) {
+            throw walk.failure.get();
+        }
+    }
+
+    /**
+     * Sum the size of all files under root.
+     *
+     * @param root the root
+     * @return the size in bytes
+     * @throws ConnectionException the connection exception
+     */
+    public long size(@NonNull String root) throws ConnectionException {
+        AtomicLong size = new AtomicLong();
+        walk(root, new ISftpTreeVisitor() {
+            @Override
+            public boolean preVisitDirectory(ISftpConnection connection, String dir, SftpATTRS attrs) {
+                return true;
+            }
+
+            @Override
+            public void visitFile(ISftpConnection connection, String path, SftpATTRS attrs) {
+                size.addAndGet(attrs.getSize());
+            }
+
+            @Override
+            public void postVisitDirectory(ISftpConnection connection, String dir) {
+                // nothing to do.
+            }
+        });
+        return size.get();
+    }
+
+    /**
+     * Search the paths of files and directories whose name match the filter.
+     *
+     * @param root       the root
+     * @param nameFilter the name filter
+     * @return the paths
+     * @throws ConnectionException the connection exception
+     */
+    public List<String> search(@NonNull String root, @NonNull Predicate<String> nameFilter) throws ConnectionException {
+        List<String> paths = Collections.synchronizedList(new ArrayList<>());
+        walk(root, new ISftpTreeVisitor() {
+            @Override
+            public boolean preVisitDirectory(ISftpConnection connection, String dir, SftpATTRS attrs) {
+                addIfMatched(dir);
+                return true;
+            }
+
+            @Override
+            public void visitFile(ISftpConnection connection, String path, SftpATTRS attrs) {
+                addIfMatched(path);
+            }
+
+            @Override
+            public void postVisitDirectory(ISftpConnection connection, String dir) {
+                // nothing to do.
+            }
+
+            private void addIfMatched(String path) {
+                if (nameFilter.test(path.substring(path.lastIndexOf(SEPARATOR) + 1))) {
+                    paths.add(path);
+                }
+            }
+        });
+        return paths;
+    }
+
+    /**
+     * Delete root and everything under it.
+     *
+     * @param root the root
+     * @throws ConnectionException the connection exception
+     */
+    public void deleteRecursively(@NonNull String root) throws ConnectionException {
+        walk(root, new ISftpTreeVisitor() {
+            @Override
+            public boolean preVisitDirectory(ISftpConnection connection, String dir, SftpATTRS attrs) {
+                return true;
+            }
+
+            @Override
+            public void visitFile(ISftpConnection connection, String path, SftpATTRS attrs) throws ConnectionException {
+                try {
+                    connection.getChannelSftp().rm(path);
+                } catch (SftpException e) {
+                    LOG.error("Failed to delete the file {}", path);
+                    throw new ConnectionException("Failed to delete the file", e);
+                }
+            }
+
+            @Override
+            public void postVisitDirectory(ISftpConnection connection, String dir) throws ConnectionException {
+                connection.deleteDirectory(dir);
+            }
+        });
+    }
+
+    /**
+     * The state of a single walk.
+     */
+    private class Walk {
+        private final ISftpTreeVisitor visitor;
+        private final ExecutorService executor;
+        private final CountDownLatch finished = new CountDownLatch(1);
+        private final AtomicReference<ConnectionException> failure = new AtomicReference<>();
+
+        Walk(ISftpTreeVisitor visitor, ExecutorService executor) {
+            this.visitor = visitor;
+            this.executor = executor;
+        }
+
+        void visitRoot(String root) {
+            DirectoryNode node = null;
+            try {
+                ISftpConnection connection = borrow();
+                try {
+                    SftpATTRS attrs = connection.getChannelSftp().lstat(root);
+                    if (!attrs.isDir()) {
+                        visitor.visitFile(connection, root, attrs);
+                    } else if (visitor.preVisitDirectory(connection, root, attrs)) {
+                        node = new DirectoryNode(root, null);
+                    }
+                } finally {
+                    connectionManager.releaseConnection(connectionBean);
+                }
+            } catch (SftpException e) {
+                fail(new ConnectionException(String.format("The path: %s is not existed!", root), e));
+            } catch (ConnectionException e) {
+                fail(e);
+            } catch (RuntimeException e) {
+                fail(new ConnectionException("Failed to walk the tree!", e));
+            }
+            if (node == null) {
+                finished.countDown();
+                return;
+            }
+            visitDirectory(node);
+        }
+
+        void visitDirectory(DirectoryNode node) {
+            if (failure.get() == null) {
+                try {
+                    ISftpConnection connection = borrow();
+                    try {
+                        visitChildren(connection, node);
+                    } finally {
+                        connectionManager.releaseConnection(connectionBean);
+                    }
+                } catch (ConnectionException e) {
+                    fail(e);
+                } catch (RuntimeException e) {
+                    fail(new ConnectionException("Failed to walk the tree!", e));
+                }
+            }
+            complete(node);
+        }
+
+        private void visitChildren(ISftpConnection connection, DirectoryNode node) throws ConnectionException {
+            // Requests can not be sent while the listing is read, so the entries of one directory are kept.
+            List<ChannelSftp.LsEntry> entries = new ArrayList<>();
+            connection.list(node.path, name -> true, entries::add);
+            for (ChannelSftp.LsEntry entry : entries) {
+                if (failure.get() != null) {
+                    return;
+                }
+                String path = node.path.endsWith(SEPARATOR) ? node.path + entry.getFilename()
+                        : node.path + SEPARATOR + entry.getFilename();
+                SftpATTRS attrs = entry.getAttrs();
+                if (!attrs.isDir()) {
+                    visitor.visitFile(connection, path, attrs);
+                } else if (visitor.preVisitDirectory(connection, path, attrs)) {
+                    DirectoryNode child = new DirectoryNode(path, node);
+                    node.pending.incrementAndGet();
+                    executor.execute(() -> visitDirectory(child));
+                }
+            }
+        }
+
+        private void complete(DirectoryNode node) {
+            if (node.pending.decrementAndGet() > 0) {
+                return;
+            }
+            if (failure.get() == null) {
+                try {
+                    ISftpConnection connection = borrow();
+                    try {
+                        visitor.postVisitDirectory(connection, node.path);
+                    } finally {
+                        connectionManager.releaseConnection(connectionBean);
+                    }
+                } catch (ConnectionException e) {
+                    fail(e);
+                } catch (RuntimeException e) {
+                    fail(new ConnectionException("Failed to walk the tree!", e));
+                }
+            }
+            if (node.parent == null) {
+                finished.countDown();
+            } else {
+                complete(node.parent);
+            }
+        }
+
+        private ISftpConnection borrow() throws ConnectionException {
+            return connectionManager.borrowConnection(connectionBean, ISftpConnection.class);
+        }
+
+        private void fail(ConnectionException e) {
+            LOG.error("Failed to walk the tree of host {}", connectionBean.getHost(), e);
+            failure.compareAndSet(null, e);
+        }
+    }
+
+    /**
+     * A directory waiting for its own listing and the walks of its sub directories.
+     */
+    private static class DirectoryNode {
+        private final String path;
+        private final DirectoryNode parent;
+        private final AtomicInteger pending = new AtomicInteger(1);
+
+        DirectoryNode(String path, DirectoryNode parent) {
+            this.path = path;
+            this.parent = parent;
+        }
+    }
+}
@@ -0,0 +1,382 @@
+/*
+ * Copyright (c)  Xvzhu 2020.  All rights reserved.
+ */
+
+package com.xvzhu.connections.sftp;
+
+import com.xvzhu.connections.apis.ConnectionBean;
+import com.xvzhu.connections.apis.ConnectionConst;
+import com.xvzhu.connections.apis.ConnectionException;
+import com.xvzhu.connections.apis.IConnectionManager;
+import com.xvzhu.connections.apis.protocol.ISftpConnection;
+import com.xvzhu.connections.operation.NamedThreadFactory;
+import lombok.NonNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>Write-behind uploads through a local spool directory.</p>
+ * A submitted file is written to the spool and synced to the disk before submit returns,
+ * so the producer does not wait for the server, and a crash does not lose the file.<br>
+ * An entry is a data file and a meta file with the remote path. The meta file is moved in last,
+ * so an entry without it is an unfinished submit and is removed at start.<br>
+ * The workers upload the entries over the pool in submit order. A failed upload is retried
+ * with exponential backoff, an entry failed maxAttempts times is moved to the failed directory.<br>
+ *
+ * @author : xvzhu
+ * @version V1.0
+ * @since Date : 2020-03-31 20:30
+ */
+public class SftpUploadSpool {
+    private static final Logger LOG = LoggerFactory.getLogger(SftpUploadSpool.class);
+    private static final String SEPARATOR = "/";
+    private static final String CURRENT_DIR = ".";
+    private static final String DATA_SUFFIX = ".data";
+    private static final String META_SUFFIX = ".meta";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final String FAILED_DIR = "failed";
+    private static final long DEFAULT_INITIAL_BACKOFF_MS = 1000L;
+    private static final long DEFAULT_MAX_BACKOFF_MS = 60000L;
+    private static final int DEFAULT_MAX_ATTEMPTS = 10;
+    private static final int MAX_BACKOFF_SHIFT = 30;
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+    private static final String ID_FORMAT = "%013d-%09d";
+
+    private final IConnectionManager connectionManager;
+    private final ConnectionBean connectionBean;
+    private final Path spoolDir;
+    private final int workers;
+    private final long initialBackoffMillis;
+    private final long maxBackoffMillis;
+    private final int maxAttempts;
+    private final long createdMillis = System.currentTimeMillis();
+    private final AtomicLong sequence = new AtomicLong();
+    private final DelayQueue<SpoolEntry> entries = new DelayQueue<>();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    private ExecutorService executor;
+    private boolean recovered;
+
+    /**
+     * Instantiates a new Sftp upload spool with the default retry policy.
+     *
+     * @param connectionManager the connection manager
+     * @param connectionBean    the connection bean
+     * @param spoolDir          the spool dir
+     * @param workers           the upload workers, each uses one connection
+     */
+    public SftpUploadSpool(@NonNull IConnectionManager connectionManager,
+                           @NonNull ConnectionBean connectionBean,
+                           @NonNull Path spoolDir,
+                           int workers) {
+        this(connectionManager, connectionBean, spoolDir, workers,
+                DEFAULT_INITIAL_BACKOFF_MS, DEFAULT_MAX_BACKOFF_MS, DEFAULT_MAX_ATTEMPTS);
+    }
+
+    /**
+     * Instantiates a new Sftp upload spool.
+     *
+     * @param connectionManager    the connection manager
+     * @param connectionBean       the connection bean
+     * @param spoolDir             the spool dir
+     * @param workers              the upload workers, each uses one connection
+     * @param initialBackoffMillis the backoff after the first failure, doubled after each failure
+     * @param maxBackoffMillis     the max backoff
+     * @param maxAttempts          the max attempts of an entry, zero or negative to retry forever
+     */
+    public SftpUploadSpool(@NonNull IConnectionManager connectionManager,
+                           @NonNull ConnectionBean connectionBean,
+                           @NonNull Path spoolDir,
+                           int workers,
+                           long initialBackoffMillis,
+                           long maxBackoffMillis,
+                           int maxAttempts) {
+        if (workers <= 0) {
+            throw new IllegalArgumentException("The workers must be positive.");
+        }
+        this.connectionManager = connectionManager;
+        this.connectionBean = connectionBean;
+        this.spoolDir = spoolDir;
+        this.workers = workers;
+        this.initialBackoffMillis = initialBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+        this.maxAttempts = maxAttempts;
+    }
+
+    /**
+     * <p>Start the workers.</p>
+     * The entries left by the last run are recovered and uploaded first.<br>
+     *
+     * @throws ConnectionException the connection exception
+     */
+    public synchronized void start() throws ConnectionException {
+        if (executor != null) {
+            return;
+        }
+        try {
+            Files.createDirectories(spoolDir.resolve(FAILED_DIR));
+            if (!recovered) {
+                recover();
+                recovered = true;
+            }
+        } catch (IOException e) {
+            LOG.error("Failed to recover the spool directory {}", spoolDir);
+            throw new ConnectionException("Failed to recover the spool directory!", e);
+        }
+        executor = Executors.newFixedThreadPool(workers,
+                new NamedThreadFactory(ConnectionConst.SFTP_SPOOL_THREAD_NAME));
+        for (int i = 0; i < workers; i++) {
+            executor.execute(this::work);
+        }
+    }
+
+    /**
+     * Stop the workers, the entries not uploaded stay in the spool for the next start.
+     */
+    public synchronized void close() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    /**
+     * Gets the count of the entries not uploaded yet, including the uploading ones.
+     *
+     * @return the count
+     */
+    public int getPendingCount() {
+        return pendingCount.get();
+    }
+
+    /**
+     * Spool the local file for the upload.
+     *
+     * @param localFile  the local file
+     * @param remoteFile the remote file
+     * @throws ConnectionException the connection exception
+     */
+    public void submit(@NonNull Path localFile, @NonNull String remoteFile) throws ConnectionException {
+        try (InputStream in = Files.newInputStream(localFile)) {
+            submit(in, remoteFile);
+        } catch (IOException e) {
+            LOG.error("Failed to read the local file {}", localFile);
+            throw new ConnectionException("Failed to read the local file!", e);
+        }
+    }
+
+    /**
+     * Spool the content of the stream for the upload, the stream is not closed.
+     *
+     * @param in         the in
+     * @param remoteFile the remote file
+     * @throws ConnectionException the connection exception
+     */
+    public void submit(@NonNull InputStream in, @NonNull String remoteFile) throws ConnectionException {
+        // The time keeps the submit order across restarts, the sequence within the same millisecond.
+        String id = String.format(ID_FORMAT, System.currentTimeMillis(), sequence.getAndIncrement());
+        Path dataFile = spoolDir.resolve(id + DATA_SUFFIX);
+        Path metaFile = spoolDir.resolve(id + META_SUFFIX);
+        try {
+            Files.createDirectories(spoolDir);
+            writeDurably(spoolDir.resolve(id + DATA_SUFFIX + TEMP_SUFFIX), dataFile, in);
+            writeDurably(spoolDir.resolve(id + META_SUFFIX + TEMP_SUFFIX), metaFile,
+                    new ByteArrayInputStream(remoteFile.getBytes(StandardCharsets.UTF_8)));
+            // The move of the meta file commits the entry, it is only durable once the directory is synced.
+            syncDirectory(spoolDir);
+        } catch (IOException e) {
+            LOG.error("Failed to spool the file {}", remoteFile);
+            deleteQuietly(dataFile);
+            throw new ConnectionException("Failed to spool the file!", e);
+        }
+        pendingCount.incrementAndGet();
+        entries.add(new SpoolEntry(id, remoteFile));
+    }
+
+    /**
+     * Queue the entries of the former runs, their ids are older than the creation of this spool,
+     * so the submits of this spool are never touched.
+     */
+    private void recover() throws IOException {
+        String createdId = String.format(ID_FORMAT, createdMillis, 0L);
+        List<String> ids = new ArrayList<>();
+        List<Path> unfinished = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(spoolDir)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if (!Files.isRegularFile(file) || name.compareTo(createdId) >= 0) {
+                    continue;
+                }
+                if (name.endsWith(META_SUFFIX)) {
+                    ids.add(name.substring(0, name.length() - META_SUFFIX.length()));
+                } else {
+                    unfinished.add(file);
+                }
+            }
+        }
+        Set<String> recovered = new HashSet<>(ids);
+        for (Path file : unfinished) {
+            String name = file.getFileName().toString();
+            boolean recoveredData = name.endsWith(DATA_SUFFIX)
+                    && recovered.contains(name.substring(0, name.length() - DATA_SUFFIX.length()));
+            if (!recoveredData) {
+                Files.delete(file);
+            }
+        }
+        Collections.sort(ids);
+        for (String id : ids) {
+            Path metaFile = spoolDir.resolve(id + META_SUFFIX);
+            if (!Files.exists(spoolDir.resolve(id + DATA_SUFFIX))) {
+                Files.delete(metaFile);
+                continue;
+            }
+            pendingCount.incrementAndGet();
+            entries.add(new SpoolEntry(id, new String(Files.readAllBytes(metaFile), StandardCharsets.UTF_8)));
+        }
+    }
+
+    private void work() {
+        while (!Thread.currentThread().isInterrupted()) {
+            SpoolEntry entry;
+            try {
+                entry = entries.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            try {
+                upload(entry);
+                deleteQuietly(spoolDir.resolve(entry.id + META_SUFFIX));
+                deleteQuietly(spoolDir.resolve(entry.id + DATA_SUFFIX));
+                pendingCount.decrementAndGet();
+            } catch (ConnectionException e) {
+                retry(entry, e);
+            } catch (RuntimeException e) {
+                // Retried like a connection failure, the worker must keep running.
+                LOG.error("Failed to upload the spooled file {}", entry.remoteFile, e);
+                retry(entry, new ConnectionException("Failed to upload the spooled file!", e));
+            }
+        }
+    }
+
+    private void upload(SpoolEntry entry) throws ConnectionException {
+        ISftpConnection connection = connectionManager.borrowConnection(connectionBean, ISftpConnection.class);
+        try {
+            int separatorPos = entry.remoteFile.lastIndexOf(SEPARATOR);
+            String dir = separatorPos < 0 ? CURRENT_DIR
+                    : separatorPos == 0 ? SEPARATOR : entry.remoteFile.substring(0, separatorPos);
+            String name = entry.remoteFile.substring(separatorPos + 1);
+            connection.upload(dir, name, spoolDir.resolve(entry.id + DATA_SUFFIX));
+        } finally {
+            connectionManager.releaseConnection(connectionBean);
+        }
+    }
+
+    private void retry(SpoolEntry entry, ConnectionException failure) {
+        entry.attempts++;
+        if (maxAttempts > 0 && entry.attempts >= maxAttempts) {
+            LOG.error("Failed to upload the spooled file {} after {} attempts",
+                    entry.remoteFile, entry.attempts, failure);
+            try {
+                Path failedDir = spoolDir.resolve(FAILED_DIR);
+                Files.move(spoolDir.resolve(entry.id + DATA_SUFFIX), failedDir.resolve(entry.id + DATA_SUFFIX),
+                        StandardCopyOption.REPLACE_EXISTING);
+                Files.move(spoolDir.resolve(entry.id + META_SUFFIX), failedDir.resolve(entry.id + META_SUFFIX),
+                        StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException e) {
+                LOG.error("Failed to move the spooled file {} to the failed directory", entry.id, e);
+            }
+            pendingCount.decrementAndGet();
+            return;
+        }
+        long backoff = Math.min(initialBackoffMillis << Math.min(entry.attempts - 1, MAX_BACKOFF_SHIFT),
+                maxBackoffMillis);
+        LOG.warn("Failed to upload the spooled file {}, retry after {} ms", entry.remoteFile, backoff);
+        entry.readyNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(backoff);
+        entries.add(entry);
+    }
+
+    private static void writeDurably(Path tempFile, Path file, InputStream in) throws IOException {
+        try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            byte[] buffer = new byte[COPY_BUFFER_SIZE];
+            int size;
+            while ((size = in.read(buffer)) != -1) {
+                ByteBuffer view = ByteBuffer.wrap(buffer, 0, size);
+                while (view.hasRemaining()) {
+                    channel.write(view);
+                }
+            }
+            channel.force(true);
+        }
+        Files.move(tempFile, file, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void syncDirectory(Path dir) {
+        try (FileChannel channel = FileChannel.open(dir, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Some platforms, like Windows, can not open or sync a directory.
+            LOG.debug("Failed to sync the spool directory {}", dir, e);
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            LOG.error("Failed to delete the spool file {}", file, e);
+        }
+    }
+
+    /**
+     * A spooled upload, ready when its backoff is over.
+     */
+    private static class SpoolEntry implements Delayed {
+        private final String id;
+        private final String remoteFile;
+        private int attempts;
+        private volatile long readyNanos = System.nanoTime();
+
+        SpoolEntry(String id, String remoteFile) {
+            this.id = id;
+            this.remoteFile = remoteFile;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(readyNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            SpoolEntry entry = (SpoolEntry) other;
+            int result = Long.compare(readyNanos, entry.readyNanos);
+            // The same ready time keeps the submit order.
+            return result != 0 ? result : id.compareTo(entry.id);
+        }
+    }
+}
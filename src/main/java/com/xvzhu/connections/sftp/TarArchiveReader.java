@@ -0,0 +1,251 @@
+/*
+ * Copyright (c)  Xvzhu 2020.  All rights reserved.
+ */
+
+package com.xvzhu.connections.sftp;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * <p>The reader of a tar archive from a stream, entry by entry.</p>
+ * The ustar prefix, the GNU long name and the pax path and size records are understood,
+ * so the archives of both the GNU and the BSD tar are read.
+ * The content of an entry is read by {@link #read(byte[], int, int)} before the next entry,
+ * the unread rest is skipped.<br>
+ *
+ * @author : xvzhu
+ * @version V1.0
+ * @since Date : 2020-04-09 10:15
+ */
+class TarArchiveReader {
+    private static final int BLOCK_SIZE = TarArchiveWriter.BLOCK_SIZE;
+    private static final int CHECKSUM_OFFSET = 148;
+    private static final int PREFIX_OFFSET = 345;
+    private static final int MAX_EXTENSION_SIZE = 1024 * 1024;
+
+    private final InputStream in;
+    private final byte[] header = new byte[BLOCK_SIZE];
+    private long remaining;
+    private int padding;
+
+    /**
+     * Instantiates a new Tar archive reader.
+     *
+     * @param in the in
+     */
+    TarArchiveReader(InputStream in) {
+        this.in = in;
+    }
+
+    /**
+     * Read the header of the next entry.
+     *
+     * @return the entry, or null at the end of the archive
+     * @throws IOException the io exception
+     */
+    Entry next() throws IOException {
+        skip(remaining + padding);
+        remaining = 0;
+        padding = 0;
+        String longName = null;
+        long paxSize = -1;
+        while (true) {
+            if (!readBlock()) {
+                return null;
+            }
+            if (isZeroBlock()) {
+                return null;
+            }
+            verifyChecksum();
+            char type = (char) header[156];
+            long size = number(124, 12);
+            if (type == 'L' || type == 'x' || type == 'g') {
+                String extension = new String(readExtension(size), StandardCharsets.UTF_8);
+                if (type == 'L') {
+                    longName = trimNul(extension);
+                } else if (type == 'x') {
+                    String path = paxRecord(extension, "path");
+                    longName = path == null ? longName : path;
+                    String paxSizeValue = paxRecord(extension, "size");
+                    paxSize = paxSizeValue == null ? paxSize : Long.parseLong(paxSizeValue);
+                }
+                continue;
+            }
+            String name = longName != null ? longName : headerName();
+            long entrySize = paxSize >= 0 ? paxSize : size;
+            boolean directory = type == '5';
+            boolean file = type == '0' || type == 0 || type == '7';
+            boolean link = type == '1' || type == '2';
+            // The data of the other types, like the devices, is skipped with the entry.
+            remaining = directory || link ? 0L : entrySize;
+            padding = (int) ((BLOCK_SIZE - remaining % BLOCK_SIZE) % BLOCK_SIZE);
+            return new Entry(name, directory, file, file ? entrySize : 0L, (int) number(100, 8),
+                    number(136, 12));
+        }
+    }
+
+    /**
+     * Read the content of the current entry.
+     *
+     * @param buffer the buffer
+     * @param offset the offset
+     * @param length the length
+     * @return the read bytes, or -1 at the end of the entry
+     * @throws IOException the io exception
+     */
+    int read(byte[] buffer, int offset, int length) throws IOException {
+        if (remaining == 0) {
+            return -1;
+        }
+        int read = in.read(buffer, offset, (int) Math.min(length, remaining));
+        if (read < 0) {
+            throw new EOFException("The archive ended in an entry.");
+        }
+        remaining -= read;
+        return read;
+    }
+
+    private boolean readBlock() throws IOException {
+        int length = 0;
+        while (length < BLOCK_SIZE) {
+            int read = in.read(header, length, BLOCK_SIZE - length);
+            if (read < 0) {
+                if (length == 0) {
+                    return false;
+                }
+                throw new EOFException("The archive ended in a header.");
+            }
+            length += read;
+        }
+        return true;
+    }
+
+    private byte[] readExtension(long size) throws IOException {
+        if (size > MAX_EXTENSION_SIZE) {
+            throw new IOException("The extended header is too large: " + size);
+        }
+        byte[] data = new byte[(int) size];
+        int length = 0;
+        while (length < data.length) {
+            int read = in.read(data, length, data.length - length);
+            if (read < 0) {
+                throw new EOFException("The archive ended in an extended header.");
+            }
+            length += read;
+        }
+        skip((BLOCK_SIZE - size % BLOCK_SIZE) % BLOCK_SIZE);
+        return data;
+    }
+
+    private void skip(long size) throws IOException {
+        byte[] discard = header;
+        long left = size;
+        while (left > 0) {
+            int read = in.read(discard, 0, (int) Math.min(discard.length, left));
+            if (read < 0) {
+                throw new EOFException("The archive ended in an entry.");
+            }
+            left -= read;
+        }
+    }
+
+    private boolean isZeroBlock() {
+        for (byte value : header) {
+            if (value != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void verifyChecksum() throws IOException {
+        long expected = number(CHECKSUM_OFFSET, 8);
+        long actual = 0;
+        for (int i = 0; i < BLOCK_SIZE; i++) {
+            boolean checksumField = i >= CHECKSUM_OFFSET && i < CHECKSUM_OFFSET + 8;
+            actual += checksumField ? ' ' : header[i] & 0xff;
+        }
+        if (actual != expected) {
+            throw new IOException("The tar header is corrupted.");
+        }
+    }
+
+    private String headerName() {
+        String name = field(0, 100);
+        boolean ustar = header[257] == 'u' && header[258] == 's' && header[259] == 't'
+                && header[260] == 'a' && header[261] == 'r';
+        String prefix = ustar ? field(PREFIX_OFFSET, 155) : "";
+        return prefix.isEmpty() ? name : prefix + "/" + name;
+    }
+
+    private String field(int offset, int length) {
+        int end = offset;
+        while (end < offset + length && header[end] != 0) {
+            end++;
+        }
+        return new String(header, offset, end - offset, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Parse an octal field, or a base-256 one if its first bit is set.
+     */
+    private long number(int offset, int length) {
+        if ((header[offset] & 0x80) != 0) {
+            long value = header[offset] & 0x7f;
+            for (int i = offset + 1; i < offset + length; i++) {
+                value = (value << 8) | (header[i] & 0xff);
+            }
+            return value;
+        }
+        long value = 0;
+        for (int i = offset; i < offset + length; i++) {
+            byte digit = header[i];
+            if (digit >= '0' && digit <= '7') {
+                value = (value << 3) + digit - '0';
+            } else if (digit == 0 || (digit == ' ' && value > 0)) {
+                break;
+            }
+        }
+        return value;
+    }
+
+    private static String trimNul(String value) {
+        int end = value.indexOf('\0');
+        return end < 0 ? value : value.substring(0, end);
+    }
+
+    /**
+     * Find the value of a pax record, the records are "length key=value\n".
+     */
+    private static String paxRecord(String records, String key) {
+        String value = null;
+        for (String record : records.split("\n")) {
+            int space = record.indexOf(' ');
+            int equals = record.indexOf('=');
+            if (space > 0 && equals > space && record.substring(space + 1, equals).equals(key)) {
+                value = record.substring(equals + 1);
+            }
+        }
+        return value;
+    }
+
+    /**
+     * The header of an entry.
+     */
+    @Getter
+    @AllArgsConstructor
+    static final class Entry {
+        private final String name;
+        private final boolean directory;
+        private final boolean file;
+        private final long size;
+        private final int mode;
+        private final long modifiedSeconds;
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright (c)  Xvzhu 2020.  All rights reserved.
+ */
+
+package com.xvzhu.connections.sftp;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * <p>The writer of a ustar archive, built on the fly into the stream.</p>
+ * Only directories and regular files are written. A name which fits neither the name nor the prefix field
+ * is written in a GNU long name entry, which is read by both the GNU and the BSD tar.<br>
+ * The writer is not buffered, wrap the stream into a buffered one.<br>
+ *
+ * @author : xvzhu
+ * @version V1.0
+ * @since Date : 2020-04-09 10:15
+ */
+class TarArchiveWriter {
+    /**
+     * The constant BLOCK_SIZE.
+     */
+    static final int BLOCK_SIZE = 512;
+    private static final int NAME_LENGTH = 100;
+    private static final int PREFIX_LENGTH = 155;
+    private static final int PREFIX_OFFSET = 345;
+    private static final int CHECKSUM_OFFSET = 148;
+    private static final int FILE_MODE = 0644;
+    private static final int EXECUTABLE_MODE = 0755;
+    private static final String LONG_NAME = "././@LongLink";
+    private static final long MAX_OCTAL_SIZE = 077777777777L;
+    private static final byte[] ZERO_BLOCK = new byte[BLOCK_SIZE];
+
+    private final OutputStream out;
+    private final byte[] header = new byte[BLOCK_SIZE];
+
+    /**
+     * Instantiates a new Tar archive writer.
+     *
+     * @param out the out
+     */
+    TarArchiveWriter(OutputStream out) {
+        this.out = out;
+    }
+
+    /**
+     * Put a directory.
+     *
+     * @param name            the relative name, separated by slashes
+     * @param modifiedSeconds the modified time in seconds
+     * @throws IOException the io exception
+     */
+    void putDirectory(String name, long modifiedSeconds) throws IOException {
+        writeHeader(name + "/", '5', 0L, EXECUTABLE_MODE, modifiedSeconds);
+    }
+
+    /**
+     * Put a regular file, exactly size bytes are written whatever the content has.
+     *
+     * @param name            the relative name, separated by slashes
+     * @param size            the size
+     * @param executable      the executable
+     * @param modifiedSeconds the modified time in seconds
+     * @param content         the content
+     * @param buffer          the copy buffer
+     * @throws IOException the io exception
+     */
+    void putFile(String name, long size, boolean executable, long modifiedSeconds, InputStream content,
+                 byte[] buffer) throws IOException {
+        writeHeader(name, '0', size, executable ? EXECUTABLE_MODE : FILE_MODE, modifiedSeconds);
+        long remaining = size;
+        int read;
+        while (remaining > 0 && (read = content.read(buffer, 0, (int) Math.min(buffer.length, remaining))) != -1) {
+            out.write(buffer, 0, read);
+            remaining -= read;
+        }
+        // The file shrank while it was read, the size in the header is kept by zeros.
+        while (remaining > 0) {
+            int zeros = (int) Math.min(BLOCK_SIZE, remaining);
+            out.write(ZERO_BLOCK, 0, zeros);
+            remaining -= zeros;
+        }
+        pad(size);
+    }
+
+    /**
+     * Write the two zero blocks which end the archive, and flush.
+     *
+     * @throws IOException the io exception
+     */
+    void finish() throws IOException {
+        out.write(ZERO_BLOCK);
+        out.write(ZERO_BLOCK);
+        out.flush();
+    }
+
+    private void writeHeader(String name, char type, long size, int mode, long modifiedSeconds) throws IOException {
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        int split = split(bytes);
+        if (split < 0) {
+            byte[] longName = Arrays.copyOf(bytes, bytes.length + 1);
+            writeHeaderBlock(LONG_NAME.getBytes(StandardCharsets.UTF_8), 0, 'L', longName.length, 0, 0L);
+            out.write(longName);
+            pad(longName.length);
+            writeHeaderBlock(Arrays.copyOf(bytes, NAME_LENGTH), 0, type, size, mode, modifiedSeconds);
+            return;
+        }
+        writeHeaderBlock(bytes, split, type, size, mode, modifiedSeconds);
+    }
+
+    /**
+     * Find where the name is split into the prefix and the name fields.
+     *
+     * @return 0 if the name fits the name field, the index of the slash between the fields, or -1 if it never fits
+     */
+    private static int split(byte[] name) {
+        if (name.length <= NAME_LENGTH) {
+            return 0;
+        }
+        // The trailing slash of a directory stays in the name field.
+        for (int i = Math.min(PREFIX_LENGTH, name.length - 2); i > 0; i--) {
+            if (name[i] == '/' && name.length - i - 1 <= NAME_LENGTH) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void writeHeaderBlock(byte[] name, int split, char type, long size, int mode, long modifiedSeconds)
+            throws IOException {
+        Arrays.fill(header, (byte) 0);
+        if (split > 0) {
+            System.arraycopy(name, split + 1, header, 0, name.length - split - 1);
+            System.arraycopy(name, 0, header, PREFIX_OFFSET, split);
+        } else {
+            System.arraycopy(name, 0, header, 0, Math.min(NAME_LENGTH, name.length));
+        }
+        octal(mode, 100, 8);
+        octal(0L, 108, 8);
+        octal(0L, 116, 8);
+        if (size > MAX_OCTAL_SIZE) {
+            // The base-256 form of GNU and POSIX 2001 for the files of 8GB or more.
+            header[124] = (byte) 0x80;
+            for (int i = 0; i < 8; i++) {
+                header[135 - i] = (byte) (size >>> (8 * i));
+            }
+        } else {
+            octal(size, 124, 12);
+        }
+        octal(modifiedSeconds, 136, 12);
+        header[156] = (byte) type;
+        System.arraycopy("ustar\u000000".getBytes(StandardCharsets.US_ASCII), 0, header, 257, 8);
+        Arrays.fill(header, CHECKSUM_OFFSET, CHECKSUM_OFFSET + 8, (byte) ' ');
+        long checksum = 0;
+        for (byte value : header) {
+            checksum += value & 0xff;
+        }
+        octal(checksum, CHECKSUM_OFFSET, 7);
+        out.write(header);
+    }
+
+    /**
+     * Write the value as zero padded octal digits followed by a NUL.
+     */
+    private void octal(long value, int offset, int length) {
+        String digits = Long.toOctalString(value);
+        int zeros = length - 1 - digits.length();
+        for (int i = 0; i < length - 1; i++) {
+            header[offset + i] = (byte) (i < zeros ? '0' : digits.charAt(i - zeros));
+        }
+        header[offset + length - 1] = 0;
+    }
+
+    private void pad(long size) throws IOException {
+        int remainder = (int) (size % BLOCK_SIZE);
+        if (remainder > 0) {
+            out.write(ZERO_BLOCK, 0, BLOCK_SIZE - remainder);
+        }
+    }
+}
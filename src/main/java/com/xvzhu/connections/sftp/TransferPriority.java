@@ -0,0 +1,42 @@
+/*
+ * Copyright (c)  Xvzhu 2020.  All rights reserved.
+ */
+
+package com.xvzhu.connections.sftp;
+
+/**
+ * The priority of a scheduled transfer, the weight is the share of the connections when all queues are busy.
+ *
+ * @author : xvzhu
+ * @version V1.0
+ * @since Date : 2020-03-30 20:10
+ */
+public enum TransferPriority {
+    /**
+     * High priority, it may use the reserved connections.
+     */
+    HIGH(8),
+    /**
+     * Normal priority.
+     */
+    NORMAL(3),
+    /**
+     * Low priority.
+     */
+    LOW(1);
+
+    private int weight;
+
+    TransferPriority(int weight) {
+        this.weight = weight;
+    }
+
+    /**
+     * Gets weight.
+     *
+     * @return the weight
+     */
+    public int getWeight() {
+        return weight;
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright (c)  Xvzhu 2020.  All rights reserved.
+ */
+
+package com.xvzhu.connections.shell;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * The output of a remote command, the bytes after the limit are counted and dropped.
+ *
+ * @author : xvzhu
+ * @version V1.0
+ * @since Date : 2020-04-06 09:40
+ */
+class BoundedOutput {
+    private final int limit;
+    private byte[] bytes = new byte[0];
+    private int length;
+    private long dropped;
+
+    /**
+     * Instantiates a new Bounded output.
+     *
+     * @param limit the max kept bytes
+     */
+    BoundedOutput(int limit) {
+        this.limit = limit;
+    }
+
+    /**
+     * Read the available bytes of the stream without blocking.
+     *
+     * @param in     the stream
+     * @param buffer the read buffer
+     * @return the read bytes
+     * @throws IOException the io exception
+     */
+    int drain(InputStream in, byte[] buffer) throws IOException {
+        int total = 0;
+        int available;
+        while ((available = in.available()) > 0) {
+            int size = in.read(buffer, 0, Math.min(available, buffer.length));
+            if (size < 0) {
+                break;
+            }
+            write(buffer, 0, size);
+            total += size;
+        }
+        return total;
+    }
+
+    /**
+     * Write the bytes, the part over the limit is dropped.
+     *
+     * @param source the source
+     * @param offset the offset
+     * @param size   the size
+     */
+    void write(byte[] source, int offset, int size) {
+        int kept = Math.min(size, limit - length);
+        if (kept > 0) {
+            if (bytes.length < length + kept) {
+                bytes = Arrays.copyOf(bytes, Math.min(limit, Math.max(bytes.length * 2, length + kept)));
+            }
+            System.arraycopy(source, offset, bytes, length, kept);
+            length += kept;
+        }
+        dropped += size - kept;
+    }
+
+    /**
+     * Is any byte dropped.
+     *
+     * @return the boolean
+     */
+    boolean isTruncated() {
+        return dropped > 0;
+    }
+
+    @Override
+    public String toString() {
+        return new String(bytes, 0, length, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright (c)  Xvzhu 2020.  All rights reserved.
+ */
+
+package com.xvzhu.connections.shell;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.Arrays;
+
+/**
+ * The summary of a fan out, the latencies are the elapsed millis of the hosts.
+ *
+ * @author : xvzhu
+ * @version V1.0
+ * @since Date : 2020-04-07 10:20
+ */
+@Data
+@AllArgsConstructor
+public class FanOutSummary {
+    private static final int PERCENT = 100;
+
+    private int total;
+    private int succeeded;
+    private int failed;
+    private long p50Millis;
+    private long p90Millis;
+    private long p99Millis;
+    private long maxMillis;
+    private long elapsedMillis;
+
+    /**
+     * Summarize the results.
+     *
+     * @param results       the results
+     * @param elapsedMillis the elapsed millis of the whole fan out
+     * @return the fan out summary
+     */
+    static FanOutSummary of(HostExecResult[] results, long elapsedMillis) {
+        long[] latencies = new long[results.length];
+        int succeeded = 0;
+        int failed = 0;
+        for (int i = 0; i < results.length; i++) {
+            latencies[i] = results[i].getElapsedMillis();
+            if (results[i].isSuccess()) {
+                succeeded++;
+            } else {
+                failed++;
+            }
+        }
+        Arrays.sort(latencies);
+        return new FanOutSummary(results.length, succeeded, failed, percentile(latencies, 50),
+                percentile(latencies, 90), percentile(latencies, 99),
+                latencies.length == 0 ? 0L : latencies[latencies.length - 1], elapsedMillis);
+    }
+
+    /**
+     * The nearest rank percentile of the sorted latencies.
+     */
+    private static long percentile(long[] sorted, int percent) {
+        if (sorted.length == 0) {
+            return 0L;
+        }
+        int rank = (int) Math.ceil(percent * sorted.length / (double) PERCENT);
+        return sorted[Math.max(rank, 1) - 1];
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright (c)  Xvzhu 2020.  All rights reserved.
+ */
+
+package com.xvzhu.connections.shell;
+
+import com.xvzhu.connections.apis.ConnectionBean;
+import com.xvzhu.connections.apis.ConnectionException;
+import com.xvzhu.connections.apis.protocol.ExecResult;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * The result of a command on a single host of a fan out.
+ *
+ * @author : xvzhu
+ * @version V1.0
+ * @since Date : 2020-04-07 10:20
+ */
+@Data
+@AllArgsConstructor
+public class HostExecResult {
+    private ConnectionBean connectionBean;
+
+    /**
+     * The result of the command, null if failed.
+     */
+    private ExecResult result;
+
+    /**
+     * The time from the start of the host to its result, the borrow is included.
+     */
+    private long elapsedMillis;
+
+    /**
+     * The failure of the host, null if the command exited, whatever the exit status.
+     */
+    private ConnectionException failure;
+
+    /**
+     * Is the command exited with status 0.
+     *
+     * @return the boolean
+     */
+    public boolean isSuccess() {
+        return failure == null && result.isSuccess();
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright (c)  Xvzhu 2020.  All rights reserved.
+ */
+
+package com.xvzhu.connections.shell;
+
+import com.xvzhu.connections.apis.protocol.IShellLineConsumer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * <p>The incremental decoder of the output lines of a remote command.</p>
+ * The bytes of a line are kept until its separator arrives, then the whole line is decoded at once,
+ * so a character split across two reads is never broken.
+ * The line and the char buffers are reused, the memory is bounded by the max line length.<br>
+ * A line longer than the max line length is delivered in pieces.<br>
+ *
+ * @author : xvzhu
+ * @version V1.0
+ * @since Date : 2020-04-08 09:30
+ */
+class LineDecoder {
+    private final int maxLineLength;
+    private final boolean stderr;
+    private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private byte[] line = new byte[256];
+    private int lineLength;
+    private CharBuffer chars = CharBuffer.allocate(256);
+
+    /**
+     * Instantiates a new Line decoder.
+     *
+     * @param maxLineLength the max bytes of a line
+     * @param stderr        true if the lines come from the stderr
+     */
+    LineDecoder(int maxLineLength, boolean stderr) {
+        this.maxLineLength = maxLineLength;
+        this.stderr = stderr;
+    }
+
+    /**
+     * Read the available bytes of the stream without blocking, the complete lines are delivered.
+     *
+     * @param in       the stream
+     * @param buffer   the read buffer
+     * @param consumer the consumer
+     * @return the read bytes, or -1 if the consumer stopped
+     * @throws IOException the io exception
+     */
+    int drain(InputStream in, byte[] buffer, IShellLineConsumer consumer) throws IOException {
+        int total = 0;
+        int available;
+        while ((available = in.available()) > 0) {
+            int size = in.read(buffer, 0, Math.min(available, buffer.length));
+            if (size < 0) {
+                break;
+            }
+            if (!write(buffer, 0, size, consumer)) {
+                return -1;
+            }
+            total += size;
+        }
+        return total;
+    }
+
+    /**
+     * Write the bytes, every complete line is delivered to the consumer.
+     *
+     * @param source   the source
+     * @param offset   the offset
+     * @param size     the size
+     * @param consumer the consumer
+     * @return false if the consumer stopped
+     */
+    boolean write(byte[] source, int offset, int size, IShellLineConsumer consumer) {
+        for (int i = offset; i < offset + size; i++) {
+            byte value = source[i];
+            if (value == '\n') {
+                if (!deliver(consumer)) {
+                    return false;
+                }
+                continue;
+            }
+            if (lineLength == maxLineLength && !deliver(consumer)) {
+                return false;
+            }
+            if (lineLength == line.length) {
+                line = Arrays.copyOf(line, Math.min(maxLineLength, line.length * 2));
+            }
+            line[lineLength++] = value;
+        }
+        return true;
+    }
+
+    /**
+     * Deliver the last line which has no separator.
+     *
+     * @param consumer the consumer
+     * @return false if the consumer stopped
+     */
+    boolean flush(IShellLineConsumer consumer) {
+        return lineLength == 0 || deliver(consumer);
+    }
+
+    /**
+     * Decode the bytes of a line into the reused char buffer.
+     *
+     * @param bytes  the bytes
+     * @param length the length
+     * @return the line, valid until the next call
+     */
+    CharSequence decode(byte[] bytes, int length) {
+        int size = length > 0 && bytes[length - 1] == '\r' ? length - 1 : length;
+        // A byte of UTF-8 never decodes to more than one char.
+        if (chars.capacity() < size) {
+            chars = CharBuffer.allocate(Math.max(size, chars.capacity() * 2));
+        }
+        chars.clear();
+        decoder.reset();
+        decoder.decode(ByteBuffer.wrap(bytes, 0, size), chars, true);
+        decoder.flush(chars);
+        chars.flip();
+        return chars;
+    }
+
+    private boolean deliver(IShellLineConsumer consumer) {
+        int length = lineLength;
+        lineLength = 0;
+        return consumer.accept(decode(line, length), stderr);
+    }
+}
@@ -0,0 +1,380 @@
+/*
+ * Copyright (c)  Xvzhu 2020.  All rights reserved.
+ */
+
+package com.xvzhu.connections.shell;
+
+import com.jcraft.jsch.ChannelShell;
+import com.jcraft.jsch.JSchException;
+import com.jcraft.jsch.Session;
+import com.xvzhu.connections.apis.ConnectionException;
+import com.xvzhu.connections.apis.protocol.ExecResult;
+import com.xvzhu.connections.apis.protocol.IShellLineConsumer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>The interactive shell which runs the commands in sequence.</p>
+ * Each command is wrapped by a begin and an end marker line, the end marker carries the exit status.
+ * The markers are split by quotes in the sent script, so the echo of a terminal never matches them.<br>
+ * The scripts of a batch are written at once, the shell runs them one by one,
+ * so a batch costs one round trip instead of a channel open per command.<br>
+ * The stderr is merged into the stdout, the stdin of a command is /dev/null,
+ * so a command never reads the scripts queued after it.<br>
+ * A line longer than the output limit is read in pieces, like the output of an exec channel.<br>
+ *
+ * @author : xvzhu
+ * @version V1.0
+ * @since Date : 2020-04-06 14:10
+ */
+class ShellCommandSession {
+    private static final Logger LOG = LoggerFactory.getLogger(ShellCommandSession.class);
+    private static final String CHANNEL_TYPE = "shell";
+    private static final String BEGIN_MARKER = "__SH_BEGIN_";
+    private static final String END_MARKER = "__SH_END_";
+    private static final int READ_SIZE = 8 * 1024;
+    private static final long POLL_MS = 10L;
+
+    /**
+     * The exit status returned when the consumer stopped the command.
+     */
+    static final int STOPPED = -1;
+
+    private final ChannelShell channel;
+    private final InputStream in;
+    private final OutputStream out;
+    private final int outputLimit;
+    private final String nonce = UUID.randomUUID().toString().replace("-", "");
+    private final byte[] readBuffer = new byte[READ_SIZE];
+    private int readPosition;
+    private int readLength;
+    private byte[] line = new byte[256];
+    private int lineLength;
+    private boolean lineCut;
+    private long sequence;
+
+    private ShellCommandSession(ChannelShell channel, InputStream in, OutputStream out, int outputLimit) {
+        this.channel = channel;
+        this.in = in;
+        this.out = out;
+        this.outputLimit = outputLimit;
+    }
+
+    /**
+     * Open the shell on the session, without a terminal, so there is no prompt and no echo.
+     *
+     * @param session            the session
+     * @param timeoutMilliSecond the timeout milli second
+     * @param outputLimit        the max kept output of a command
+     * @return the shell command session
+     * @throws JSchException the j sch exception
+     * @throws IOException   the io exception
+     */
+    static ShellCommandSession open(Session session, int timeoutMilliSecond, int outputLimit)
+            throws JSchException, IOException {
+        ChannelShell channel = (ChannelShell) session.openChannel(CHANNEL_TYPE);
+        channel.setPty(false);
+        InputStream in = channel.getInputStream();
+        OutputStream out = channel.getOutputStream();
+        channel.connect(timeoutMilliSecond);
+        return new ShellCommandSession(channel, in, out, outputLimit);
+    }
+
+    /**
+     * Is the shell still usable.
+     *
+     * @return the boolean
+     */
+    boolean isOpen() {
+        return channel.isConnected() && !channel.isClosed();
+    }
+
+    /**
+     * Close the shell.
+     */
+    void close() {
+        channel.disconnect();
+    }
+
+    /**
+     * Run the commands in sequence.
+     *
+     * @param commands           the commands
+     * @param timeoutMilliSecond the timeout of the whole batch
+     * @return the results in the order of the commands
+     * @throws ConnectionException the connection exception, the shell must be closed after it
+     */
+    List<ExecResult> execute(List<String> commands, int timeoutMilliSecond) throws ConnectionException {
+        long begin = System.nanoTime();
+        long deadline = begin + TimeUnit.MILLISECONDS.toNanos(timeoutMilliSecond);
+        List<ExecResult> results = new ArrayList<>(commands.size());
+        try {
+            long started = begin;
+            for (String id : send(commands)) {
+                BoundedOutput output = new BoundedOutput(outputLimit);
+                int exitStatus = read(id, new BoundedSink(output), deadline);
+                long now = System.nanoTime();
+                results.add(new ExecResult(exitStatus, output.toString(), "", output.isTruncated(),
+                        TimeUnit.NANOSECONDS.toMillis(now - started)));
+                started = now;
+            }
+            return results;
+        } catch (IOException e) {
+            LOG.error("Failed to run the commands in the shell");
+            throw new ConnectionException("Failed to run the commands in the shell!", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ConnectionException("The commands were interrupted!", e);
+        }
+    }
+
+    /**
+     * Run the command, its output lines are delivered to the consumer as soon as they arrive.
+     *
+     * @param command            the command
+     * @param timeoutMilliSecond the timeout milli second
+     * @param consumer           the consumer
+     * @return the exit status, or {@link #STOPPED} if the consumer stopped, the shell must be closed after it
+     * @throws ConnectionException the connection exception, the shell must be closed after it
+     */
+    int execute(String command, int timeoutMilliSecond, IShellLineConsumer consumer) throws ConnectionException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMilliSecond);
+        try {
+            String id = send(Collections.singletonList(command)).get(0);
+            return read(id, new StreamingSink(new LineDecoder(outputLimit, false), consumer), deadline);
+        } catch (IOException e) {
+            LOG.error("Failed to run the command in the shell");
+            throw new ConnectionException("Failed to run the command in the shell!", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ConnectionException("The command was interrupted!", e);
+        }
+    }
+
+    /**
+     * Send the scripts of the commands at once.
+     *
+     * @return the ids of the commands
+     */
+    private List<String> send(List<String> commands) throws IOException {
+        List<String> ids = new ArrayList<>(commands.size());
+        StringBuilder script = new StringBuilder();
+        for (String command : commands) {
+            String id = nonce + "_" + (++sequence);
+            ids.add(id);
+            // The printf of the end marker starts with a new line, so an output without one is still split.
+            script.append("echo '").append(splitByQuotes(BEGIN_MARKER)).append(id).append("'\n")
+                    .append("{ ").append(command).append("\n} < /dev/null 2>&1\n")
+                    .append("printf '\\n").append(splitByQuotes(END_MARKER)).append(id).append("_%d\\n' \"$?\"\n");
+        }
+        out.write(script.toString().getBytes(StandardCharsets.UTF_8));
+        out.flush();
+        return ids;
+    }
+
+    /**
+     * Read the output of a command until its end marker.
+     *
+     * @return the exit status, or {@link #STOPPED} if the sink stopped
+     */
+    private int read(String id, LineSink sink, long deadline)
+            throws IOException, InterruptedException, ConnectionException {
+        byte[] beginLine = (BEGIN_MARKER + id).getBytes(StandardCharsets.UTF_8);
+        byte[] endPrefix = (END_MARKER + id + "_").getBytes(StandardCharsets.UTF_8);
+        boolean begun = false;
+        boolean lineStart = true;
+        while (true) {
+            if (!nextLine(deadline)) {
+                LOG.error("The shell was closed before the command {} finished.", id);
+                throw new ConnectionException("The shell was closed!");
+            }
+            // A marker is a whole line, never the piece of a long line.
+            boolean wholeLine = lineStart && !lineCut;
+            lineStart = !lineCut;
+            if (!begun) {
+                // The lines before the begin marker are a banner, a prompt or an echo, they are skipped.
+                begun = wholeLine && matches(beginLine);
+                continue;
+            }
+            if (wholeLine && startsWith(endPrefix)) {
+                String status = new String(line, endPrefix.length, lineLength - endPrefix.length,
+                        StandardCharsets.UTF_8);
+                return sink.end() ? Integer.parseInt(status.trim()) : STOPPED;
+            }
+            if (!sink.accept(line, lineLength, lineCut)) {
+                return STOPPED;
+            }
+        }
+    }
+
+    /**
+     * Read the next line into the line buffer, without the separator.
+     * A line over the output limit is cut, the rest is read by the next calls.
+     *
+     * @return false if the shell was closed
+     */
+    private boolean nextLine(long deadline) throws IOException, InterruptedException, ConnectionException {
+        lineLength = 0;
+        lineCut = false;
+        while (true) {
+            if (readPosition < readLength) {
+                byte value = readBuffer[readPosition];
+                if (value == '\n') {
+                    readPosition++;
+                    if (lineLength > 0 && line[lineLength - 1] == '\r') {
+                        lineLength--;
+                    }
+                    return true;
+                }
+                if (lineLength == outputLimit) {
+                    lineCut = true;
+                    return true;
+                }
+                readPosition++;
+                appendToLine(value);
+                continue;
+            }
+            int available = in.available();
+            if (available > 0) {
+                readLength = in.read(readBuffer, 0, Math.min(available, readBuffer.length));
+                readPosition = 0;
+                if (readLength < 0) {
+                    return false;
+                }
+                continue;
+            }
+            if (channel.isClosed()) {
+                return false;
+            }
+            if (System.nanoTime() - deadline > 0) {
+                LOG.error("The commands timed out in the shell.");
+                throw new ConnectionException("The command timed out!");
+            }
+            Thread.sleep(POLL_MS);
+        }
+    }
+
+    private void appendToLine(byte value) {
+        if (lineLength == line.length) {
+            line = Arrays.copyOf(line, Math.min(outputLimit, line.length * 2));
+        }
+        line[lineLength++] = value;
+    }
+
+    private boolean matches(byte[] expected) {
+        return lineLength == expected.length && startsWith(expected);
+    }
+
+    private static String splitByQuotes(String marker) {
+        int middle = marker.length() / 2;
+        return marker.substring(0, middle) + "''" + marker.substring(middle);
+    }
+
+    private boolean startsWith(byte[] prefix) {
+        if (lineLength < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (line[i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The receiver of the output lines of a command, the last line is followed by the new line of the end marker.
+     */
+    private interface LineSink {
+        /**
+         * Accept a line, or a piece of a line over the output limit.
+         *
+         * @param bytes  the bytes of the line
+         * @param length the length
+         * @param cut    true if the line goes on in the next piece
+         * @return false to stop
+         */
+        boolean accept(byte[] bytes, int length, boolean cut);
+
+        /**
+         * The end marker arrived.
+         *
+         * @return false to stop
+         */
+        boolean end();
+    }
+
+    private static final class BoundedSink implements LineSink {
+        private final BoundedOutput output;
+        private boolean pendingNewLine;
+
+        private BoundedSink(BoundedOutput output) {
+            this.output = output;
+        }
+
+        @Override
+        public boolean accept(byte[] bytes, int length, boolean cut) {
+            // The new line before the end marker is added by the marker, only the ones before it are output.
+            if (pendingNewLine) {
+                output.write(new byte[]{'\n'}, 0, 1);
+            }
+            output.write(bytes, 0, length);
+            pendingNewLine = !cut;
+            return true;
+        }
+
+        @Override
+        public boolean end() {
+            return true;
+        }
+    }
+
+    private static final class StreamingSink implements LineSink {
+        private final LineDecoder decoder;
+        private final IShellLineConsumer consumer;
+        private long emptyLines;
+
+        private StreamingSink(LineDecoder decoder, IShellLineConsumer consumer) {
+            this.decoder = decoder;
+            this.consumer = consumer;
+        }
+
+        @Override
+        public boolean accept(byte[] bytes, int length, boolean cut) {
+            // An empty line is held, the last one before the end marker is made by the marker itself.
+            if (length == 0) {
+                emptyLines++;
+                return true;
+            }
+            return deliverEmptyLines() && consumer.accept(decoder.decode(bytes, length), false);
+        }
+
+        @Override
+        public boolean end() {
+            if (emptyLines > 0) {
+                emptyLines--;
+            }
+            return deliverEmptyLines();
+        }
+
+        private boolean deliverEmptyLines() {
+            for (; emptyLines > 0; emptyLines--) {
+                if (!consumer.accept("", false)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
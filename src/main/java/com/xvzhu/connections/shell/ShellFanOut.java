@@ -0,0 +1,303 @@
+/*
+ * Copyright (c)  Xvzhu 2020.  All rights reserved.
+ */
+
+package com.xvzhu.connections.shell;
+
+import com.xvzhu.connections.PooledClientConnectionManager;
+import com.xvzhu.connections.apis.ConnectionBean;
+import com.xvzhu.connections.apis.ConnectionConst;
+import com.xvzhu.connections.apis.ConnectionException;
+import com.xvzhu.connections.apis.IConnectionManager;
+import com.xvzhu.connections.apis.protocol.ExecResult;
+import com.xvzhu.connections.apis.protocol.IShellConnection;
+import com.xvzhu.connections.operation.NamedThreadFactory;
+import lombok.NonNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+
+/**
+ * <p>Run a command on many hosts in parallel.</p>
+ * At most maxConcurrency commands run at the same time, and at most maxPerHost on the same host,
+ * the hosts with queued commands take the free threads in turn.<br>
+ * The connections are borrowed from the connection manager and released after each command,
+ * so the sessions are reused by the next fan out and no handshake is repeated.<br>
+ * The connection manager must connect to the host of the given connection bean,
+ * like the {@link com.xvzhu.connections.BasicClientConnectionManager}.
+ * A {@link PooledClientConnectionManager} is bound to the host it was built for,
+ * so it is only accepted when all the commands run on the same host.<br>
+ * The borrow runs on a new thread, so the handshake with an unreachable host is bounded by the timeout
+ * of the host instead of the connect timeout of the manager. A connection borrowed after the timeout
+ * is released as soon as it arrives. The borrow thread is never reused, so a manager keeping a connection
+ * per thread does not hand out a connection still in use by another host execution.<br>
+ * The results are handed to the consumer on the calling thread as soon as they complete.<br>
+ *
+ * @author : xvzhu
+ * @version V1.0
+ * @since Date : 2020-04-07 10:20
+ */
+public class ShellFanOut {
+    private static final Logger LOG = LoggerFactory.getLogger(ShellFanOut.class);
+
+    private final IConnectionManager connectionManager;
+    private final int maxConcurrency;
+    private final int maxPerHost;
+    private final ExecutorService executor;
+    private final ThreadFactory borrowThreadFactory;
+    private final Map<ConnectionBean, HostQueue> hostQueues = new HashMap<>();
+    private final Deque<HostQueue> readyHosts = new ArrayDeque<>();
+    private int running;
+    private boolean shutdown;
+
+    /**
+     * Instantiates a new Shell fan out.
+     *
+     * @param connectionManager the connection manager
+     * @param maxConcurrency    the max commands running at the same time
+     * @param maxPerHost        the max commands running on the same host
+     */
+    public ShellFanOut(@NonNull IConnectionManager connectionManager, int maxConcurrency, int maxPerHost) {
+        if (maxConcurrency <= 0 || maxPerHost <= 0) {
+            throw new IllegalArgumentException("The concurrency must be positive.");
+        }
+        this.connectionManager = connectionManager;
+        this.maxConcurrency = maxConcurrency;
+        this.maxPerHost = maxPerHost;
+        this.executor = Executors.newFixedThreadPool(maxConcurrency,
+                new NamedThreadFactory(ConnectionConst.SHELL_FAN_OUT_THREAD_NAME));
+        this.borrowThreadFactory = new NamedThreadFactory(ConnectionConst.SHELL_FAN_OUT_BORROW_THREAD_NAME);
+    }
+
+    /**
+     * <p>Run the command on the hosts and wait for all results.</p>
+     * A failed or timed out host is reported by its result, it does not stop the others.
+     * The timeout of a host includes the borrow of its connection.
+     * If the consumer throws or the thread is interrupted, the hosts not started yet are skipped.<br>
+     *
+     * @param hosts              the hosts
+     * @param command            the command
+     * @param timeoutMilliSecond the timeout of the command on a host
+     * @param consumer           the consumer of the results
+     * @return the summary
+     * @throws ConnectionException the connection exception, or a pooled connection manager with many hosts
+     */
+    public FanOutSummary execute(@NonNull Collection<ConnectionBean> hosts, @NonNull String command,
+                                 int timeoutMilliSecond, @NonNull Consumer<HostExecResult> consumer)
+            throws ConnectionException {
+        if (connectionManager instanceof PooledClientConnectionManager && new HashSet<>(hosts).size() > 1) {
+            LOG.error("The pooled connection manager connects to one host only, the hosts are {}", hosts.size());
+            throw new ConnectionException("The pooled connection manager can not fan out to many hosts.");
+        }
+        long begin = System.nanoTime();
+        Execution execution = new Execution(command, timeoutMilliSecond);
+        synchronized (this) {
+            if (shutdown) {
+                throw new ConnectionException("The fan out is shutdown.");
+            }
+            for (ConnectionBean host : hosts) {
+                HostQueue hostQueue = hostQueues.computeIfAbsent(host, HostQueue::new);
+                hostQueue.queue.add(execution);
+                markReady(hostQueue);
+            }
+            dispatch();
+        }
+        HostExecResult[] results = new HostExecResult[hosts.size()];
+        boolean completed = false;
+        try {
+            for (int i = 0; i < results.length; i++) {
+                results[i] = execution.results.take();
+                consumer.accept(results[i]);
+            }
+            completed = true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ConnectionException("The fan out was interrupted!", e);
+        } finally {
+            if (!completed) {
+                execution.cancelled = true;
+            }
+        }
+        return FanOutSummary.of(results, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - begin));
+    }
+
+    /**
+     * Shutdown the fan out, the queued hosts are failed and the running ones are completed.
+     */
+    public void shutdown() {
+        synchronized (this) {
+            shutdown = true;
+            for (HostQueue hostQueue : hostQueues.values()) {
+                Execution execution;
+                while ((execution = hostQueue.queue.poll()) != null) {
+                    execution.results.add(new HostExecResult(hostQueue.connectionBean, null, 0L,
+                            new ConnectionException("The fan out is shutdown.")));
+                }
+            }
+            readyHosts.clear();
+        }
+        executor.shutdown();
+    }
+
+    /**
+     * Start the queued commands while there are free threads, called with the lock held.
+     */
+    private void dispatch() {
+        HostQueue hostQueue;
+        while (running < maxConcurrency && (hostQueue = readyHosts.poll()) != null) {
+            hostQueue.ready = false;
+            Execution execution = hostQueue.queue.poll();
+            hostQueue.running++;
+            running++;
+            // Back to the end of the ready hosts, so the hosts with many commands do not starve the others.
+            markReady(hostQueue);
+            HostQueue started = hostQueue;
+            executor.execute(() -> run(started, execution));
+        }
+    }
+
+    private void markReady(HostQueue hostQueue) {
+        if (!hostQueue.ready && !hostQueue.queue.isEmpty() && hostQueue.running < maxPerHost) {
+            hostQueue.ready = true;
+            readyHosts.add(hostQueue);
+        }
+    }
+
+    private void run(HostQueue hostQueue, Execution execution) {
+        try {
+            execution.results.add(execution.cancelled
+                    ? new HostExecResult(hostQueue.connectionBean, null, 0L,
+                    new ConnectionException("The fan out was cancelled."))
+                    : exec(hostQueue.connectionBean, execution));
+        } finally {
+            synchronized (this) {
+                hostQueue.running--;
+                running--;
+                if (!shutdown) {
+                    markReady(hostQueue);
+                    dispatch();
+                }
+            }
+        }
+    }
+
+    private HostExecResult exec(ConnectionBean connectionBean, Execution execution) {
+        long begin = System.nanoTime();
+        IShellConnection connection;
+        try {
+            connection = borrow(connectionBean, execution.timeoutMilliSecond);
+        } catch (ConnectionException e) {
+            return new HostExecResult(connectionBean, null, elapsedMillis(begin), e);
+        }
+        try {
+            // The handshake of a new connection is part of the timeout of the host.
+            long remaining = execution.timeoutMilliSecond - elapsedMillis(begin);
+            if (remaining <= 0) {
+                LOG.error("The connection of the host {} was borrowed after the timeout.", connectionBean.getHost());
+                return new HostExecResult(connectionBean, null, elapsedMillis(begin),
+                        new ConnectionException("The command timed out!"));
+            }
+            ExecResult result = connection.exec(execution.command, (int) remaining);
+            return new HostExecResult(connectionBean, result, elapsedMillis(begin), null);
+        } catch (ConnectionException e) {
+            return new HostExecResult(connectionBean, null, elapsedMillis(begin), e);
+        } catch (RuntimeException e) {
+            LOG.error("Failed to run the command on the host {}", connectionBean.getHost(), e);
+            return new HostExecResult(connectionBean, null, elapsedMillis(begin),
+                    new ConnectionException("Failed to run the command!", e));
+        } finally {
+            release(connectionBean, connection);
+        }
+    }
+
+    /**
+     * Borrow the connection on a new thread and wait for it at most the timeout.
+     * The connection is released by the connection aware release, which does not depend on the borrowing thread.
+     */
+    private IShellConnection borrow(ConnectionBean connectionBean, int timeoutMilliSecond)
+            throws ConnectionException {
+        CompletableFuture<IShellConnection> borrowing = new CompletableFuture<>();
+        borrowThreadFactory.newThread(() -> {
+            try {
+                borrowing.complete(connectionManager.borrowConnection(connectionBean, IShellConnection.class));
+            } catch (ConnectionException | RuntimeException e) {
+                borrowing.completeExceptionally(e);
+            }
+        }).start();
+        try {
+            return borrowing.get(timeoutMilliSecond, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            LOG.error("Failed to borrow the connection of the host {} in {} ms.", connectionBean.getHost(),
+                    timeoutMilliSecond);
+            borrowing.thenAccept(connection -> release(connectionBean, connection));
+            throw new ConnectionException("Timed out to borrow the connection!", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            borrowing.thenAccept(connection -> release(connectionBean, connection));
+            throw new ConnectionException("The borrow was interrupted!", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof ConnectionException) {
+                throw (ConnectionException) e.getCause();
+            }
+            LOG.error("Failed to borrow the connection of the host {}", connectionBean.getHost(), e.getCause());
+            throw new ConnectionException("Failed to borrow the connection!", e);
+        }
+    }
+
+    private void release(ConnectionBean connectionBean, IShellConnection connection) {
+        try {
+            connectionManager.releaseConnection(connectionBean, connection);
+        } catch (ConnectionException e) {
+            LOG.error("Failed to release the connection", e);
+        }
+    }
+
+    private static long elapsedMillis(long begin) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - begin);
+    }
+
+    /**
+     * The queued commands of a host, guarded by the fan out lock.
+     */
+    private static class HostQueue {
+        private final ConnectionBean connectionBean;
+        private final Deque<Execution> queue = new ArrayDeque<>();
+        private int running;
+        private boolean ready;
+
+        HostQueue(ConnectionBean connectionBean) {
+            this.connectionBean = connectionBean;
+        }
+    }
+
+    /**
+     * A fan out of a command.
+     */
+    private static class Execution {
+        private final String command;
+        private final int timeoutMilliSecond;
+        private final BlockingQueue<HostExecResult> results = new LinkedBlockingQueue<>();
+        private volatile boolean cancelled;
+
+        Execution(String command, int timeoutMilliSecond) {
+            this.command = command;
+            this.timeoutMilliSecond = timeoutMilliSecond;
+        }
+    }
+}
@@ -4,17 +4,27 @@
 
 package com.xvzhu.connections.shell;
 
+import com.jcraft.jsch.ChannelExec;
 import com.jcraft.jsch.ChannelShell;
 import com.jcraft.jsch.JSch;
 import com.jcraft.jsch.JSchException;
 import com.jcraft.jsch.Session;
 import com.xvzhu.connections.apis.ConnectionBean;
 import com.xvzhu.connections.apis.ConnectionException;
+import com.xvzhu.connections.apis.protocol.ExecResult;
 import com.xvzhu.connections.apis.protocol.IShellConnection;
+import com.xvzhu.connections.apis.protocol.IShellLineConsumer;
 import lombok.Builder;
+import lombok.NonNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.TimeUnit;
 
 /**
  * The sftp client implements.
@@ -30,7 +40,13 @@ public class ShellImpl implements IShellConnection {
      */
     private static Properties sshConfig = new Properties();
     private static final String CHANNEL_TYPE = "shell";
+    private static final String EXEC_CHANNEL_TYPE = "exec";
+    private static final int EXEC_OUTPUT_LIMIT = 64 * 1024;
+    private static final int EXEC_READ_SIZE = 8 * 1024;
+    private static final long EXEC_POLL_MS = 10L;
     private ChannelShell channelShell;
+    private byte[] readBuffer;
+    private ShellCommandSession commandSession;
     @Builder.Default
     private JSch jsch = new JSch();
 
@@ -48,6 +64,202 @@ public class ShellImpl implements IShellConnection {
         return channelShell;
     }
 
+    /**
+     * Run the command over an exec channel of the session.
+     *
+     * @param command            the command
+     * @param timeoutMilliSecond the timeout milli second
+     * @return the exec result
+     * @throws ConnectionException the connection exception
+     */
+    @Override
+    public ExecResult exec(@NonNull String command, int timeoutMilliSecond) throws ConnectionException {
+        long begin = System.nanoTime();
+        long deadline = begin + TimeUnit.MILLISECONDS.toNanos(timeoutMilliSecond);
+        ChannelExec channel = null;
+        try {
+            channel = (ChannelExec) channelShell.getSession().openChannel(EXEC_CHANNEL_TYPE);
+            channel.setCommand(command);
+            InputStream stdout = channel.getInputStream();
+            InputStream stderr = channel.getErrStream();
+            channel.connect(timeoutMilliSecond);
+            BoundedOutput out = new BoundedOutput(EXEC_OUTPUT_LIMIT);
+            BoundedOutput err = new BoundedOutput(EXEC_OUTPUT_LIMIT);
+            // Both streams are drained by this thread, a command filling one pipe never blocks on the other.
+            while (true) {
+                boolean closed = channel.isClosed();
+                int size = out.drain(stdout, getReadBuffer()) + err.drain(stderr, getReadBuffer());
+                if (closed && size == 0) {
+                    break;
+                }
+                if (System.nanoTime() - deadline > 0) {
+                    LOG.error("The command timed out after {} ms: {}", timeoutMilliSecond, command);
+                    throw new ConnectionException("The command timed out!");
+                }
+                if (size == 0) {
+                    Thread.sleep(EXEC_POLL_MS);
+                }
+            }
+            return new ExecResult(channel.getExitStatus(), out.toString(), err.toString(),
+                    out.isTruncated() || err.isTruncated(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - begin));
+        } catch (JSchException | IOException e) {
+            LOG.error("Failed to run the command: {}", command);
+            throw new ConnectionException("Failed to run the command!", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ConnectionException("The command was interrupted!", e);
+        } finally {
+            if (channel != null) {
+                channel.disconnect();
+            }
+        }
+    }
+
+    /**
+     * Run the command over an exec channel of the session, the output lines are streamed to the consumer.
+     *
+     * @param command            the command
+     * @param timeoutMilliSecond the timeout milli second
+     * @param consumer           the consumer
+     * @return the exit status, or -1 if the consumer stopped the command
+     * @throws ConnectionException the connection exception
+     */
+    @Override
+    public int exec(@NonNull String command, int timeoutMilliSecond, @NonNull IShellLineConsumer consumer)
+            throws ConnectionException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMilliSecond);
+        ChannelExec channel = null;
+        try {
+            channel = (ChannelExec) channelShell.getSession().openChannel(EXEC_CHANNEL_TYPE);
+            channel.setCommand(command);
+            InputStream stdout = channel.getInputStream();
+            InputStream stderr = channel.getErrStream();
+            channel.connect(timeoutMilliSecond);
+            LineDecoder out = new LineDecoder(EXEC_OUTPUT_LIMIT, false);
+            LineDecoder err = new LineDecoder(EXEC_OUTPUT_LIMIT, true);
+            while (true) {
+                boolean closed = channel.isClosed();
+                int outSize = out.drain(stdout, getReadBuffer(), consumer);
+                int errSize = outSize < 0 ? -1 : err.drain(stderr, getReadBuffer(), consumer);
+                if (errSize < 0) {
+                    // The channel is closed by the finally block, the command gets a broken pipe.
+                    return ShellCommandSession.STOPPED;
+                }
+                if (closed && outSize + errSize == 0) {
+                    break;
+                }
+                if (System.nanoTime() - deadline > 0) {
+                    LOG.error("The command timed out after {} ms: {}", timeoutMilliSecond, command);
+                    throw new ConnectionException("The command timed out!");
+                }
+                if (outSize + errSize == 0) {
+                    Thread.sleep(EXEC_POLL_MS);
+                }
+            }
+            if (!out.flush(consumer) || !err.flush(consumer)) {
+                return ShellCommandSession.STOPPED;
+            }
+            return channel.getExitStatus();
+        } catch (JSchException | IOException e) {
+            LOG.error("Failed to run the command: {}", command);
+            throw new ConnectionException("Failed to run the command!", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ConnectionException("The command was interrupted!", e);
+        } finally {
+            if (channel != null) {
+                channel.disconnect();
+            }
+        }
+    }
+
+    /**
+     * Run the command in the persistent shell.
+     *
+     * @param command            the command
+     * @param timeoutMilliSecond the timeout milli second
+     * @return the exec result
+     * @throws ConnectionException the connection exception
+     */
+    @Override
+    public ExecResult execInShell(@NonNull String command, int timeoutMilliSecond) throws ConnectionException {
+        return execInShell(Collections.singletonList(command), timeoutMilliSecond).get(0);
+    }
+
+    /**
+     * Run the commands in sequence in the persistent shell.
+     *
+     * @param commands           the commands
+     * @param timeoutMilliSecond the timeout milli second
+     * @return the exec results
+     * @throws ConnectionException the connection exception
+     */
+    @Override
+    public List<ExecResult> execInShell(@NonNull List<String> commands, int timeoutMilliSecond)
+            throws ConnectionException {
+        openCommandSession(timeoutMilliSecond);
+        try {
+            return commandSession.execute(commands, timeoutMilliSecond);
+        } catch (ConnectionException e) {
+            // The state of the shell is unknown, the queued output must not leak into the next command.
+            closeCommandSession();
+            throw e;
+        }
+    }
+
+    /**
+     * Run the command in the persistent shell, the output lines are streamed to the consumer.
+     *
+     * @param command            the command
+     * @param timeoutMilliSecond the timeout milli second
+     * @param consumer           the consumer
+     * @return the exit status, or -1 if the consumer stopped the command
+     * @throws ConnectionException the connection exception
+     */
+    @Override
+    public int execInShell(@NonNull String command, int timeoutMilliSecond, @NonNull IShellLineConsumer consumer)
+            throws ConnectionException {
+        openCommandSession(timeoutMilliSecond);
+        try {
+            int exitStatus = commandSession.execute(command, timeoutMilliSecond, consumer);
+            if (exitStatus == ShellCommandSession.STOPPED) {
+                // The rest of the output is still queued in the shell.
+                closeCommandSession();
+            }
+            return exitStatus;
+        } catch (ConnectionException e) {
+            closeCommandSession();
+            throw e;
+        }
+    }
+
+    private void openCommandSession(int timeoutMilliSecond) throws ConnectionException {
+        if (commandSession == null || !commandSession.isOpen()) {
+            try {
+                commandSession = ShellCommandSession.open(channelShell.getSession(), timeoutMilliSecond,
+                        EXEC_OUTPUT_LIMIT);
+            } catch (JSchException | IOException e) {
+                LOG.error("Failed to open the command shell");
+                throw new ConnectionException("Failed to open the command shell!", e);
+            }
+        }
+    }
+
+    private void closeCommandSession() {
+        if (commandSession != null) {
+            commandSession.close();
+            commandSession = null;
+        }
+    }
+
+    private byte[] getReadBuffer() {
+        // A connection is used by one borrower at a time, so the buffer is reused without locking.
+        if (readBuffer == null) {
+            readBuffer = new byte[EXEC_READ_SIZE];
+        }
+        return readBuffer;
+    }
+
     /**
      * Connect sftp connection.
      *
@@ -79,6 +291,7 @@ public class ShellImpl implements IShellConnection {
      */
     @Override
     public void disconnect() {
+        closeCommandSession();
         if (channelShell != null) {
             channelShell.disconnect();
             try {
@@ -108,4 +321,4 @@ public class ShellImpl implements IShellConnection {
     public boolean isClosed() {
         return channelShell != null && channelShell.isClosed();
     }
-}
\ No newline at end of file
+}
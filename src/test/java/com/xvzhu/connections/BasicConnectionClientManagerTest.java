@@ -176,6 +176,43 @@ public class BasicConnectionClientManagerTest {
         }
     }
 
+    @Test
+    public void should_keep_connection_of_other_thread_when_borrow_new_connection() throws Exception {
+        IConnectionManager manager = BasicClientConnectionManager.builder()
+                .setAutoInspect(false)
+                .build();
+        ConnectionBean connectionBean = ConnectionBeanBuilder.builder().port(port).build().getConnectionBean();
+        CountDownLatch countDownLatch = new CountDownLatch(1);
+        final ISftpConnection[] sftpConnection = new ISftpConnection[1];
+        Thread thread = new Thread(() -> {
+            try {
+                // Keep the connection borrowed, so the next borrow needs a new connection.
+                sftpConnection[0] = manager.borrowConnection(connectionBean, ISftpConnection.class);
+            } catch (ConnectionException e) {
+                LOG.error("Failed to borrow the first connection.");
+            } finally {
+                countDownLatch.countDown();
+            }
+        });
+        try {
+            thread.start();
+            countDownLatch.await();
+            ISftpConnection sftpConnection1 = manager.borrowConnection(connectionBean, ISftpConnection.class);
+            assertNotSame(sftpConnection[0], sftpConnection1);
+
+            Map<Thread, ConnectionManagerBean> threadManagerBeanMap = (Map<Thread, ConnectionManagerBean>)
+                    fieldIn(BasicClientConnectionManager.class).ofType(Map.class).andWithName("connections").call()
+                            .get(connectionBean);
+            assertSame(sftpConnection[0], threadManagerBeanMap.get(thread).getConnectionClient());
+            assertSame(sftpConnection1, threadManagerBeanMap.get(Thread.currentThread()).getConnectionClient());
+            assertTrue(sftpConnection[0].currentDirectory().length() > 0);
+        } finally {
+            manager.releaseConnection(connectionBean, sftpConnection[0]);
+            manager.releaseConnection(connectionBean);
+            manager.closeConnection(connectionBean);
+        }
+    }
+
     @Test
     public void should_borrow_same_connection_when_the_connection_was_idle() throws ConnectionException {
         IConnectionManager manager = BasicClientConnectionManager.builder()
@@ -339,13 +376,11 @@ public class BasicConnectionClientManagerTest {
             countDownLatch.await();
             IShellConnection shellConnection = manager.borrowConnection(connectionBean, IShellConnection.class);
 
-            await()
-                    .atMost(1, TimeUnit.SECONDS)
-                    .with()
-                    .pollDelay(10, TimeUnit.MILLISECONDS)
-                    .pollInterval(10, TimeUnit.MILLISECONDS)
-                    .until(isShutdown(fieldIn(BasicClientConnectionManager.class).ofType(Map.class).andWithName("connections").call(), connectionBean, thread));
-
+            // The idle connection of the other thread is kept for the next sftp borrower.
+            Map<Thread, ConnectionManagerBean> threadManagerBeanMap = (Map<Thread, ConnectionManagerBean>)
+                    fieldIn(BasicClientConnectionManager.class).ofType(Map.class).andWithName("connections").call()
+                            .get(connectionBean);
+            assertSame(sftpConnection[0], threadManagerBeanMap.get(thread).getConnectionClient());
             assertNotSame(sftpConnection[0], shellConnection);
         } finally {
             manager.releaseConnection(connectionBean);
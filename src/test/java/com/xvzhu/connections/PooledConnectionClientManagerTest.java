@@ -7,6 +7,7 @@ package com.xvzhu.connections;
 import com.xvzhu.connections.apis.ConnectionBean;
 import com.xvzhu.connections.apis.ConnectionException;
 import com.xvzhu.connections.apis.IConnectionManager;
+import com.xvzhu.connections.apis.protocol.IConnection;
 import com.xvzhu.connections.apis.protocol.ISftpConnection;
 import com.xvzhu.connections.data.ConnectionBeanBuilder;
 import com.xvzhu.connections.mockserver.SftpServer;
@@ -24,6 +25,8 @@ import org.slf4j.LoggerFactory;
 
 import java.util.concurrent.CountDownLatch;
 
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -94,4 +97,73 @@ public class PooledConnectionClientManagerTest {
             manager.closeConnection(connectionBean);
         }
     }
+
+    @Test
+    public void should_return_connection_to_pool_when_release_after_borrow() throws ConnectionException {
+        ConnectionBean connectionBean = ConnectionBeanBuilder.builder().port(port).build().getConnectionBean();
+        IConnectionManager manager = buildManager(connectionBean, 1);
+        try {
+            ISftpConnection first = manager.borrowConnection(connectionBean, ISftpConnection.class);
+            manager.releaseConnection(connectionBean);
+            // The pool holds one connection, each borrow only succeeds if the previous one was returned.
+            for (int i = 0; i < 3; i++) {
+                assertSame(first, manager.borrowConnection(connectionBean, ISftpConnection.class));
+                manager.releaseConnection(connectionBean);
+            }
+        } finally {
+            manager.closeConnection(connectionBean);
+        }
+    }
+
+    @Test
+    public void should_release_latest_connection_first_when_borrow_nested_on_same_thread()
+            throws ConnectionException {
+        ConnectionBean connectionBean = ConnectionBeanBuilder.builder().port(port).build().getConnectionBean();
+        IConnectionManager manager = buildManager(connectionBean, 2);
+        try {
+            ISftpConnection outer = manager.borrowConnection(connectionBean, ISftpConnection.class);
+            ISftpConnection inner = manager.borrowConnection(connectionBean, ISftpConnection.class);
+            assertNotSame(outer, inner);
+            manager.releaseConnection(connectionBean);
+            // Only the inner connection is idle, the outer one is still held by the thread.
+            assertSame(inner, manager.borrowConnection(connectionBean, ISftpConnection.class));
+            manager.releaseConnection(connectionBean);
+            manager.releaseConnection(connectionBean);
+            ISftpConnection first = manager.borrowConnection(connectionBean, ISftpConnection.class);
+            ISftpConnection second = manager.borrowConnection(connectionBean, ISftpConnection.class);
+            assertNotSame(first, second);
+            manager.releaseConnection(connectionBean);
+            manager.releaseConnection(connectionBean);
+        } finally {
+            manager.closeConnection(connectionBean);
+        }
+    }
+
+    @Test
+    public void should_ignore_release_when_thread_has_no_borrowed_connection() throws ConnectionException {
+        ConnectionBean connectionBean = ConnectionBeanBuilder.builder().port(port).build().getConnectionBean();
+        IConnectionManager manager = buildManager(connectionBean, 1);
+        try {
+            manager.releaseConnection(connectionBean);
+            IConnection connection = manager.borrowConnection(connectionBean, ISftpConnection.class);
+            manager.releaseConnection(connectionBean, connection);
+            // Neither release returns the connection to the pool a second time.
+            manager.releaseConnection(connectionBean, connection);
+            manager.releaseConnection(connectionBean);
+            assertSame(connection, manager.borrowConnection(connectionBean, ISftpConnection.class));
+            manager.releaseConnection(connectionBean);
+        } finally {
+            manager.closeConnection(connectionBean);
+        }
+    }
+
+    private static IConnectionManager buildManager(ConnectionBean connectionBean, int maxTotal)
+            throws ConnectionException {
+        GenericObjectPoolConfig<IConnection> config = new GenericObjectPoolConfig<>();
+        config.setMaxTotal(maxTotal);
+        return PooledClientConnectionManager.builder()
+                .setConnectionConfig(config)
+                .setBorrowMaxWaitTimeMS(8000)
+                .build(connectionBean, ISftpConnection.class);
+    }
 }
@@ -22,6 +22,7 @@ import org.apache.sshd.server.Command;
 import org.apache.sshd.server.SshServer;
 import org.apache.sshd.server.keyprovider.SimpleGeneratorHostKeyProvider;
 import org.apache.sshd.server.scp.ScpCommandFactory;
+import org.apache.sshd.server.shell.ProcessShellFactory;
 import org.apache.sshd.server.session.SessionFactory;
 import org.apache.sshd.server.subsystem.sftp.SftpSubsystemFactory;
 import org.slf4j.Logger;
@@ -88,7 +89,10 @@ public class SftpServer {
         sshd.setPort(port);
         sshd.setHost(ConnectionBeanBuilder.HOST);
         sshd.setKeyPairProvider(new SimpleGeneratorHostKeyProvider());
-        sshd.setCommandFactory(new ScpCommandFactory());
+        sshd.setCommandFactory(new ScpCommandFactory.Builder()
+                .withDelegate(command -> new ProcessShellFactory(new String[]{"/bin/sh", "-c", command}).create())
+                .build());
+        sshd.setShellFactory(new ProcessShellFactory(new String[]{"/bin/sh"}));
         List<NamedFactory<Command>> namedFactoryList = new ArrayList<>();
         namedFactoryList.add(new SftpSubsystemFactory());
         sshd.setSubsystemFactories(namedFactoryList);
@@ -0,0 +1,107 @@
+/*
+ * Copyright (c)  Xvzhu 2020.  All rights reserved.
+ */
+
+package com.xvzhu.connections.monitor;
+
+import com.jcraft.jsch.SftpProgressMonitor;
+import com.xvzhu.connections.apis.ConnectionBean;
+import com.xvzhu.connections.apis.ITransferListener;
+import com.xvzhu.connections.apis.TransferStatistic;
+import com.xvzhu.connections.apis.TransferSummary;
+import com.xvzhu.connections.data.ConnectionBeanBuilder;
+import com.xvzhu.connections.operation.BandwidthThrottle;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Transfer monitor test.
+ *
+ * @author : xvzhu
+ * @version V1.0
+ * @since Date : 2020-03-29 10:05
+ */
+public class TransferMonitorTest {
+    private TransferMonitor transferMonitor = TransferMonitor.getInstance();
+    private ConnectionBean connectionBean = ConnectionBeanBuilder.builder().port(1).build().getConnectionBean();
+
+    @After
+    public void reset() {
+        transferMonitor.reset(connectionBean);
+        transferMonitor.setStallThresholdMillis(1000L);
+    }
+
+    @Test
+    public void should_aggregate_transfers_when_transfers_are_ended() {
+        List<TransferStatistic> statistics = new ArrayList<>();
+        ITransferListener listener = statistics::add;
+        transferMonitor.attach(listener);
+        try {
+            for (int i = 0; i < 2; i++) {
+                SftpProgressMonitor monitor = transferMonitor.newProgressMonitor(connectionBean);
+                monitor.init(SftpProgressMonitor.PUT, "-", "/a.txt", SftpProgressMonitor.UNKNOWN_SIZE);
+                monitor.count(10L);
+                monitor.count(20L);
+                monitor.end();
+                monitor.end();
+            }
+        } finally {
+            transferMonitor.detach(listener);
+        }
+        TransferSummary summary = transferMonitor.getSummary(connectionBean);
+        assertThat(summary.getTransfers().get(), is(2L));
+        assertThat(summary.getBytes().get(), is(60L));
+        assertThat(statistics.size(), is(2));
+        assertThat(statistics.get(0).isUpload(), is(true));
+        assertThat(statistics.get(0).getDestination(), is("/a.txt"));
+    }
+
+    @Test
+    public void should_not_count_stall_when_transfer_waits_for_bandwidth_throttle() {
+        transferMonitor.setStallThresholdMillis(50L);
+        BandwidthThrottle.getInstance().setHostLimit(connectionBean, 2000L);
+        try {
+            SftpProgressMonitor monitor = BandwidthThrottle.getInstance().throttle(connectionBean,
+                    transferMonitor.newProgressMonitor(connectionBean));
+            monitor.init(SftpProgressMonitor.PUT, "-", "/a.txt", SftpProgressMonitor.UNKNOWN_SIZE);
+            // The first count takes the burst, each next one waits 100 ms for the tokens.
+            monitor.count(2000L);
+            monitor.count(200L);
+            monitor.count(200L);
+            monitor.end();
+        } finally {
+            BandwidthThrottle.getInstance().setHostLimit(connectionBean, 0L);
+        }
+        TransferSummary summary = transferMonitor.getSummary(connectionBean);
+        assertThat(summary.getBytes().get(), is(2400L));
+        assertThat(summary.getStallCount().get(), is(0L));
+    }
+
+    @Test
+    public void should_count_stall_when_progress_gap_exceeds_threshold() throws InterruptedException {
+        transferMonitor.setStallThresholdMillis(20L);
+        SftpProgressMonitor monitor = transferMonitor.newProgressMonitor(connectionBean);
+        monitor.init(SftpProgressMonitor.GET, "/a.txt", "??", 10L);
+        monitor.count(5L);
+        Thread.sleep(50L);
+        monitor.count(5L);
+        monitor.end();
+
+        TransferSummary summary = transferMonitor.getSummary(connectionBean);
+        assertThat(summary.getStallCount().get(), is(1L));
+        assertTrue(summary.getStallMillis().get() >= 40L);
+    }
+
+    @Test
+    public void should_return_empty_summary_when_nothing_transferred() {
+        assertThat(transferMonitor.getSummary(connectionBean).getTransfers().get(), is(0L));
+        assertThat(transferMonitor.getSummary(connectionBean).getBytesPerSecond(), is(0L));
+    }
+}
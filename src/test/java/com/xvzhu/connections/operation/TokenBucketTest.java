@@ -0,0 +1,47 @@
+/*
+ * Copyright (c)  Xvzhu 2020.  All rights reserved.
+ */
+
+package com.xvzhu.connections.operation;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Token bucket test.
+ *
+ * @author : xvzhu
+ * @version V1.0
+ * @since Date : 2020-03-29 16:02
+ */
+public class TokenBucketTest {
+    @Test
+    public void should_not_wait_when_bucket_is_unlimited() {
+        TokenBucket bucket = new TokenBucket(0L);
+        assertThat(bucket.reserve(Long.MAX_VALUE / 2), is(0L));
+    }
+
+    @Test
+    public void should_wait_for_debt_when_reserve_more_than_tokens() {
+        TokenBucket bucket = new TokenBucket(1000L);
+        assertThat(bucket.reserve(1000L), is(0L));
+        long waitNanos = bucket.reserve(500L);
+        assertTrue(waitNanos > TimeUnit.MILLISECONDS.toNanos(400L));
+        assertTrue(waitNanos <= TimeUnit.MILLISECONDS.toNanos(500L));
+    }
+
+    @Test
+    public void should_use_new_rate_when_rate_changed_at_runtime() {
+        TokenBucket bucket = new TokenBucket(1000L);
+        bucket.reserve(1000L);
+        bucket.setBytesPerSecond(0L);
+        assertThat(bucket.reserve(1000L), is(0L));
+        bucket.setBytesPerSecond(100L);
+        assertTrue(bucket.reserve(100L) > TimeUnit.MILLISECONDS.toNanos(900L));
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright (c)  Xvzhu 2020.  All rights reserved.
+ */
+
+package com.xvzhu.connections.sftp;
+
+import com.xvzhu.connections.PooledClientConnectionManager;
+import com.xvzhu.connections.apis.ConnectionBean;
+import com.xvzhu.connections.apis.ConnectionException;
+import com.xvzhu.connections.apis.IConnectionManager;
+import com.xvzhu.connections.apis.protocol.ISftpConnection;
+import com.xvzhu.connections.data.ConnectionBeanBuilder;
+import com.xvzhu.connections.mockserver.SftpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author : xvzhu
+ * @version V1.0
+ * @since Date : 2020-04-05 11:20
+ */
+public class SftpAsyncClientTest {
+    private static final Logger LOG = LoggerFactory.getLogger(SftpAsyncClientTest.class);
+    private SftpServer sftpServer;
+    private ConnectionBean connectionBean;
+    private IConnectionManager manager;
+    private ISftpConnection sftpConnection;
+    private Path localDir;
+    private String remoteDir;
+    private SftpAsyncClient client;
+
+    @Before
+    public void setup() throws InterruptedException, ConnectionException, IOException {
+        LOG.error("Begin to start server.");
+        sftpServer = new SftpServer();
+        String uuid = sftpServer.getUuid();
+        CountDownLatch countDownLatch = new CountDownLatch(1);
+        sftpServer.setupSftpServer(uuid, countDownLatch);
+        countDownLatch.await();
+        connectionBean = ConnectionBeanBuilder.builder().port(sftpServer.getPort(uuid)).build().getConnectionBean();
+        manager = PooledClientConnectionManager.builder()
+                .setBorrowMaxWaitTimeMS(8000)
+                .build(connectionBean, ISftpConnection.class);
+        sftpConnection = new SftpImpl();
+        sftpConnection.connect(connectionBean, 10000);
+        remoteDir = sftpConnection.currentDirectory() + "/async";
+        localDir = Files.createTempDirectory("async");
+        client = new SftpAsyncClient(manager, 4, 1);
+    }
+
+    @After
+    public void shutdown() throws ConnectionException, IOException {
+        LOG.error("Begin to shutdown server.");
+        client.shutdown();
+        if (sftpConnection.isExist(remoteDir)) {
+            new SftpTreeWalker(manager, connectionBean, 1).deleteRecursively(remoteDir);
+        }
+        Files.walk(localDir).sorted((a, b) -> b.compareTo(a)).forEach(path -> path.toFile().delete());
+        manager.closeConnection(connectionBean);
+        sftpConnection.disconnect();
+        sftpServer.shutdown();
+    }
+
+    @Test
+    public void should_complete_futures_when_run_operations_async()
+            throws IOException, ExecutionException, InterruptedException, ConnectionException {
+        sftpConnection.mkdirs(remoteDir);
+        Path localFile = localDir.resolve("up.txt");
+        Files.write(localFile, "async".getBytes());
+        assertThat(client.upload(connectionBean, remoteDir, "up.txt", localFile).get(), is(5L));
+        assertThat(client.stat(connectionBean, remoteDir + "/up.txt").get().getSize(), is(5L));
+        client.rename(connectionBean, remoteDir + "/up.txt", remoteDir + "/renamed.txt").get();
+        assertThat(client.list(connectionBean, remoteDir).get().size(), is(3));
+        assertTrue(sftpConnection.isExist(remoteDir + "/renamed.txt"));
+
+        Path downloadFile = localDir.resolve("down/renamed.txt");
+        assertThat(client.download(connectionBean, remoteDir, "renamed.txt", downloadFile).get(), is(5L));
+        assertThat(new String(Files.readAllBytes(downloadFile)), is("async"));
+        client.delete(connectionBean, remoteDir, "renamed.txt").get();
+        assertFalse(sftpConnection.isExist(remoteDir + "/renamed.txt"));
+    }
+
+    @Test
+    public void should_queue_operations_when_host_connections_are_busy()
+            throws ExecutionException, InterruptedException, ConnectionException {
+        sftpConnection.mkdirs(remoteDir);
+        List<CompletableFuture<List<String>>> futures = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            futures.add(client.list(connectionBean, remoteDir));
+        }
+        assertTrue(client.getQueuedCount(connectionBean) >= 1);
+        for (CompletableFuture<List<String>> future : futures) {
+            assertThat(future.get().size(), is(2));
+        }
+        assertThat(client.getQueuedCount(connectionBean), is(0));
+    }
+
+    @Test
+    public void should_complete_exceptionally_when_operation_failed() throws InterruptedException {
+        try {
+            client.stat(connectionBean, remoteDir + "/missing.txt").get();
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof ConnectionException);
+        }
+    }
+}
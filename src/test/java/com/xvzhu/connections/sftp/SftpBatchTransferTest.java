@@ -0,0 +1,187 @@
+/*
+ * Copyright (c)  Xvzhu 2020.  All rights reserved.
+ */
+
+package com.xvzhu.connections.sftp;
+
+import com.xvzhu.connections.PooledClientConnectionManager;
+import com.xvzhu.connections.apis.ConnectionBean;
+import com.xvzhu.connections.apis.ConnectionException;
+import com.xvzhu.connections.apis.IConnectionManager;
+import com.xvzhu.connections.apis.IObserver;
+import com.xvzhu.connections.apis.protocol.IConnection;
+import com.xvzhu.connections.apis.protocol.ISftpConnection;
+import com.xvzhu.connections.data.ConnectionBeanBuilder;
+import com.xvzhu.connections.mockserver.SftpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * @author : xvzhu
+ * @version V1.0
+ * @since Date : 2020-03-24 21:30
+ */
+public class SftpBatchTransferTest {
+    private static final Logger LOG = LoggerFactory.getLogger(SftpBatchTransferTest.class);
+    private static final int FILE_COUNT = 12;
+    private SftpServer sftpServer;
+    private ConnectionBean connectionBean;
+    private IConnectionManager manager;
+    private ISftpConnection sftpConnection;
+    private Path localDir;
+    private String remoteDir;
+
+    @Before
+    public void setup() throws InterruptedException, ConnectionException, IOException {
+        LOG.error("Begin to start server.");
+        sftpServer = new SftpServer();
+        String uuid = sftpServer.getUuid();
+        CountDownLatch countDownLatch = new CountDownLatch(1);
+        sftpServer.setupSftpServer(uuid, countDownLatch);
+        countDownLatch.await();
+        connectionBean = ConnectionBeanBuilder.builder().port(sftpServer.getPort(uuid)).build().getConnectionBean();
+        manager = PooledClientConnectionManager.builder()
+                .setBorrowMaxWaitTimeMS(8000)
+                .build(connectionBean, ISftpConnection.class);
+        sftpConnection = new SftpImpl();
+        sftpConnection.connect(connectionBean, 10000);
+        remoteDir = sftpConnection.currentDirectory() + "/batch";
+        localDir = Files.createTempDirectory("batch");
+    }
+
+    @After
+    public void shutdown() throws ConnectionException, IOException {
+        LOG.error("Begin to shutdown server.");
+        if (sftpConnection.isExist(remoteDir)) {
+            new SftpTreeWalker(manager, connectionBean, 1).deleteRecursively(remoteDir);
+        }
+        Files.walk(localDir).sorted((a, b) -> b.compareTo(a)).forEach(path -> path.toFile().delete());
+        manager.closeConnection(connectionBean);
+        sftpConnection.disconnect();
+        sftpServer.shutdown();
+    }
+
+    @Test
+    public void should_upload_and_download_all_files_when_transfer_batch() throws ConnectionException, IOException {
+        List<SftpTransferItem> uploads = new ArrayList<>();
+        List<SftpTransferItem> downloads = new ArrayList<>();
+        for (int i = 0; i < FILE_COUNT; i++) {
+            Path localFile = localDir.resolve("file" + i + ".txt");
+            Files.write(localFile, ("content" + i).getBytes());
+            String remoteFile = remoteDir + "/dir" + (i % 3) + "/sub/file" + i + ".txt";
+            uploads.add(new SftpTransferItem(localFile, remoteFile));
+            downloads.add(new SftpTransferItem(localDir.resolve("back/dir" + (i % 3) + "/file" + i + ".txt"), remoteFile));
+        }
+        SftpBatchTransfer batchTransfer = new SftpBatchTransfer(manager, connectionBean, 4);
+
+        SftpBatchResult uploadResult = batchTransfer.upload(uploads);
+        assertThat(uploadResult.getFailedCount(), is(0L));
+        assertThat(uploadResult.getResults().get(3).getItem(), is(uploads.get(3)));
+        assertThat(sftpConnection.isFile(remoteDir + "/dir2/sub/file5.txt"), is(true));
+
+        SftpBatchResult downloadResult = batchTransfer.download(downloads);
+        assertThat(downloadResult.getFailedCount(), is(0L));
+        assertThat(downloadResult.getTotalBytes(), is(uploadResult.getTotalBytes()));
+        assertThat(new String(Files.readAllBytes(localDir.resolve("back/dir1/file7.txt"))), is("content7"));
+    }
+
+    @Test
+    public void should_report_failed_file_and_continue_when_part_of_batch_failed() throws ConnectionException {
+        List<SftpTransferItem> downloads = new ArrayList<>();
+        downloads.add(new SftpTransferItem(localDir.resolve("none.txt"), remoteDir + "/none.txt"));
+        SftpBatchResult result = new SftpBatchTransfer(manager, connectionBean, 2).download(downloads);
+        assertThat(result.getFailedCount(), is(1L));
+        assertThat(result.getResults().get(0).isSuccess(), is(false));
+    }
+
+    @Test
+    public void should_report_failed_file_when_transfer_throws_runtime_exception()
+            throws ConnectionException, IOException {
+        List<SftpTransferItem> uploads = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Path localFile = localDir.resolve("file" + i + ".txt");
+            Files.write(localFile, ("content" + i).getBytes());
+            uploads.add(new SftpTransferItem(localFile, remoteDir + "/file" + i + ".txt"));
+        }
+        SftpBatchResult result = new SftpBatchTransfer(new BrokenChannelManager(manager), connectionBean, 2)
+                .upload(uploads);
+        assertThat(result.getFailedCount(), is(3L));
+        assertThat(result.getTotalBytes(), is(0L));
+        assertThat(result.getResults().get(1).getFailure().getCause() instanceof IllegalStateException, is(true));
+    }
+
+    @Test
+    public void should_return_without_connection_when_batch_is_empty() throws ConnectionException {
+        IConnectionManager noConnectionManager = (IConnectionManager) Proxy.newProxyInstance(
+                IConnectionManager.class.getClassLoader(), new Class<?>[]{IConnectionManager.class},
+                (proxy, method, args) -> {
+                    throw new IllegalStateException("No connection is expected.");
+                });
+        SftpBatchTransfer batchTransfer = new SftpBatchTransfer(noConnectionManager, connectionBean, 2);
+        assertThat(batchTransfer.upload(new ArrayList<>()).getResults().size(), is(0));
+        assertThat(batchTransfer.download(new ArrayList<>()).getResults().size(), is(0));
+    }
+
+    /**
+     * The manager whose connections fail with a runtime exception when their channel is used.
+     */
+    private static class BrokenChannelManager implements IConnectionManager {
+        private final IConnectionManager delegate;
+
+        private BrokenChannelManager(IConnectionManager delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public <T extends IConnection> T borrowConnection(ConnectionBean connectionBean, Class<T> clazz)
+                throws ConnectionException {
+            T connection = delegate.borrowConnection(connectionBean, clazz);
+            return clazz.cast(Proxy.newProxyInstance(clazz.getClassLoader(), new Class<?>[]{clazz},
+                    (proxy, method, args) -> {
+                        if ("getChannelSftp".equals(method.getName())) {
+                            throw new IllegalStateException("The channel is broken.");
+                        }
+                        try {
+                            return method.invoke(connection, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getCause();
+                        }
+                    }));
+        }
+
+        @Override
+        public void releaseConnection(ConnectionBean connectionBean) throws ConnectionException {
+            delegate.releaseConnection(connectionBean);
+        }
+
+        @Override
+        public void closeConnection(ConnectionBean connectionBean) throws ConnectionException {
+            delegate.closeConnection(connectionBean);
+        }
+
+        @Override
+        public void accept(IObserver observer, ConnectionBean connectionBean) {
+            delegate.accept(observer, connectionBean);
+        }
+
+        @Override
+        public void attach(IObserver observer) {
+            delegate.attach(observer);
+        }
+    }
+}
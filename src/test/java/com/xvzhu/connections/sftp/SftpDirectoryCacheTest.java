@@ -0,0 +1,74 @@
+/*
+ * Copyright (c)  Xvzhu 2020.  All rights reserved.
+ */
+
+package com.xvzhu.connections.sftp;
+
+import com.xvzhu.connections.apis.ConnectionBean;
+import com.xvzhu.connections.data.ConnectionBeanBuilder;
+import org.junit.Test;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThat;
+
+/**
+ * @author : xvzhu
+ * @version V1.0
+ * @since Date : 2020-03-26 20:30
+ */
+public class SftpDirectoryCacheTest {
+    @Test
+    public void should_share_cache_when_get_cache_of_same_host() {
+        ConnectionBean connectionBean = ConnectionBeanBuilder.builder().port(1).build().getConnectionBean();
+        ConnectionBean sameBean = ConnectionBeanBuilder.builder().port(1).build().getConnectionBean();
+        assertSame(SftpDirectoryCache.of(connectionBean), SftpDirectoryCache.of(sameBean));
+    }
+
+    @Test
+    public void should_only_cache_absolute_path_when_add_directory() {
+        SftpDirectoryCache cache = new SftpDirectoryCache();
+        cache.add("/a/b");
+        cache.add("a/b");
+        assertThat(cache.contains("/a/b"), is(true));
+        assertThat(cache.contains("a/b"), is(false));
+    }
+
+    @Test
+    public void should_forget_sub_directories_when_invalidate_directory() {
+        SftpDirectoryCache cache = new SftpDirectoryCache();
+        cache.add("/a");
+        cache.add("/a/b");
+        cache.add("/a/b/c");
+        cache.add("/a/bc");
+        cache.invalidate("/a/b");
+        assertThat(cache.contains("/a"), is(true));
+        assertThat(cache.contains("/a/b"), is(false));
+        assertThat(cache.contains("/a/b/c"), is(false));
+        assertThat(cache.contains("/a/bc"), is(true));
+    }
+
+    @Test
+    public void should_forget_sub_directories_when_invalidate_directory_which_is_not_cached() {
+        SftpDirectoryCache cache = new SftpDirectoryCache();
+        cache.add("/x/y/z");
+        cache.add("/x/y/w/");
+        cache.add("/xy");
+        cache.invalidate("/x/");
+        assertThat(cache.contains("/x/y/z"), is(false));
+        assertThat(cache.contains("/x/y/w/"), is(false));
+        assertThat(cache.contains("/xy"), is(true));
+        cache.add("/x/y/z");
+        assertThat(cache.contains("/x/y/z"), is(true));
+        cache.invalidate("/x/y/z/");
+        assertThat(cache.contains("/x/y/z"), is(false));
+    }
+
+    @Test
+    public void should_forget_all_when_clear() {
+        SftpDirectoryCache cache = new SftpDirectoryCache();
+        cache.add("/a");
+        cache.clear();
+        assertThat(cache.contains("/a"), is(false));
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright (c)  Xvzhu 2020.  All rights reserved.
+ */
+
+package com.xvzhu.connections.sftp;
+
+import com.xvzhu.connections.PooledClientConnectionManager;
+import com.xvzhu.connections.apis.ConnectionBean;
+import com.xvzhu.connections.apis.ConnectionException;
+import com.xvzhu.connections.apis.IConnectionManager;
+import com.xvzhu.connections.apis.protocol.ISftpConnection;
+import com.xvzhu.connections.apis.protocol.SftpWatchEvent;
+import com.xvzhu.connections.data.ConnectionBeanBuilder;
+import com.xvzhu.connections.mockserver.SftpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author : xvzhu
+ * @version V1.0
+ * @since Date : 2020-04-02 21:30
+ */
+public class SftpDirectoryWatcherTest {
+    private static final Logger LOG = LoggerFactory.getLogger(SftpDirectoryWatcherTest.class);
+    private static final long EVENT_TIMEOUT_MS = 5000L;
+    private SftpServer sftpServer;
+    private ConnectionBean connectionBean;
+    private IConnectionManager manager;
+    private ISftpConnection sftpConnection;
+    private SftpDirectoryWatcher watcher;
+    private String remoteDir;
+
+    @Before
+    public void setup() throws InterruptedException, ConnectionException, IOException {
+        LOG.error("Begin to start server.");
+        sftpServer = new SftpServer();
+        String uuid = sftpServer.getUuid();
+        CountDownLatch countDownLatch = new CountDownLatch(1);
+        sftpServer.setupSftpServer(uuid, countDownLatch);
+        countDownLatch.await();
+        connectionBean = ConnectionBeanBuilder.builder().port(sftpServer.getPort(uuid)).build().getConnectionBean();
+        manager = PooledClientConnectionManager.builder()
+                .setBorrowMaxWaitTimeMS(8000)
+                .build(connectionBean, ISftpConnection.class);
+        sftpConnection = new SftpImpl();
+        sftpConnection.connect(connectionBean, 10000);
+        remoteDir = sftpConnection.currentDirectory() + "/watch";
+        sftpConnection.mkdirs(remoteDir);
+        watcher = new SftpDirectoryWatcher(manager, connectionBean, 50L, 400L);
+    }
+
+    @After
+    public void shutdown() throws ConnectionException, IOException {
+        LOG.error("Begin to shutdown server.");
+        watcher.close();
+        if (sftpConnection.isExist(remoteDir)) {
+            new SftpTreeWalker(manager, connectionBean, 1).deleteRecursively(remoteDir);
+        }
+        manager.closeConnection(connectionBean);
+        sftpConnection.disconnect();
+        sftpServer.shutdown();
+    }
+
+    @Test
+    public void should_send_events_when_entries_changed() throws ConnectionException, InterruptedException {
+        sftpConnection.upload(remoteDir, "existing.txt", new ByteArrayInputStream("e".getBytes()));
+        BlockingQueue<SftpWatchEvent> events = new LinkedBlockingQueue<>();
+        watcher.watch(remoteDir, events::add);
+        watcher.start();
+
+        sftpConnection.upload(remoteDir, "a.txt", new ByteArrayInputStream("a".getBytes()));
+        SftpWatchEvent event = events.poll(EVENT_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        assertThat(event.getKind(), is(SftpWatchEvent.Kind.CREATED));
+        assertThat(event.getName(), is("a.txt"));
+
+        sftpConnection.upload(remoteDir, "a.txt", new ByteArrayInputStream("aaa".getBytes()));
+        event = events.poll(EVENT_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        assertThat(event.getKind(), is(SftpWatchEvent.Kind.MODIFIED));
+        assertThat(event.getSize(), is(3L));
+
+        sftpConnection.deleteFile(remoteDir, "a.txt");
+        event = events.poll(EVENT_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        assertThat(event.getKind(), is(SftpWatchEvent.Kind.DELETED));
+        assertThat(event.getName(), is("a.txt"));
+        assertNull(events.poll(200L, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void should_watch_many_directories_when_share_one_watcher() throws ConnectionException, InterruptedException {
+        sftpConnection.mkdirs(remoteDir + "/b");
+        BlockingQueue<SftpWatchEvent> parentEvents = new LinkedBlockingQueue<>();
+        BlockingQueue<SftpWatchEvent> events = new LinkedBlockingQueue<>();
+        watcher.watch(remoteDir, parentEvents::add);
+        watcher.watch(remoteDir + "/b", events::add);
+        watcher.start();
+
+        sftpConnection.upload(remoteDir + "/b", "b.txt", new ByteArrayInputStream("b".getBytes()));
+        SftpWatchEvent event = events.poll(EVENT_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        assertThat(event.getDir(), is(remoteDir + "/b"));
+        assertThat(event.getKind(), is(SftpWatchEvent.Kind.CREATED));
+
+        watcher.unwatch(remoteDir + "/b");
+        sftpConnection.deleteFile(remoteDir + "/b", "b.txt");
+        assertNull(events.poll(600L, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void should_throw_connection_exception_when_baseline_failed() throws ConnectionException {
+        watcher.watch(remoteDir + "/later", event -> {
+        });
+        boolean failed = false;
+        try {
+            watcher.start();
+        } catch (ConnectionException e) {
+            failed = true;
+        }
+        assertTrue(failed);
+        // The watcher is not started by the failure, it starts once the directory exists.
+        sftpConnection.mkdirs(remoteDir + "/later");
+        watcher.start();
+    }
+
+    @Test
+    public void should_send_other_events_when_listener_throws() throws ConnectionException, InterruptedException {
+        BlockingQueue<String> names = new LinkedBlockingQueue<>();
+        watcher.watch(remoteDir, event -> {
+            names.add(event.getName());
+            if (event.getName().equals("trigger.txt")) {
+                // Both files are listed by the next poll, the failure of the first one must not drop the second.
+                uploadQuietly("a.txt");
+                uploadQuietly("b.txt");
+            }
+            throw new IllegalStateException("Broken listener.");
+        });
+        watcher.start();
+
+        sftpConnection.upload(remoteDir, "trigger.txt", new ByteArrayInputStream("t".getBytes()));
+        assertThat(names.poll(EVENT_TIMEOUT_MS, TimeUnit.MILLISECONDS), is("trigger.txt"));
+        List<String> created = new ArrayList<>();
+        created.add(names.poll(EVENT_TIMEOUT_MS, TimeUnit.MILLISECONDS));
+        created.add(names.poll(EVENT_TIMEOUT_MS, TimeUnit.MILLISECONDS));
+        assertTrue(created.containsAll(Arrays.asList("a.txt", "b.txt")));
+    }
+
+    private void uploadQuietly(String name) {
+        try {
+            sftpConnection.upload(remoteDir, name, new ByteArrayInputStream(name.getBytes()));
+        } catch (ConnectionException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
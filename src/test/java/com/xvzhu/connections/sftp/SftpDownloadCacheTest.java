@@ -0,0 +1,237 @@
+/*
+ * Copyright (c)  Xvzhu 2020.  All rights reserved.
+ */
+
+package com.xvzhu.connections.sftp;
+
+import com.xvzhu.connections.PooledClientConnectionManager;
+import com.xvzhu.connections.apis.ConnectionBean;
+import com.xvzhu.connections.apis.ConnectionException;
+import com.xvzhu.connections.apis.IConnectionManager;
+import com.xvzhu.connections.apis.protocol.ISftpConnection;
+import com.xvzhu.connections.data.ConnectionBeanBuilder;
+import com.xvzhu.connections.mockserver.SftpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * @author : xvzhu
+ * @version V1.0
+ * @since Date : 2020-04-01 21:20
+ */
+public class SftpDownloadCacheTest {
+    private static final Logger LOG = LoggerFactory.getLogger(SftpDownloadCacheTest.class);
+    private static final int THREAD_COUNT = 4;
+    private static final long WAIT_TIMEOUT_MS = 10000L;
+    private SftpServer sftpServer;
+    private ConnectionBean connectionBean;
+    private IConnectionManager manager;
+    private ISftpConnection sftpConnection;
+    private Path localDir;
+    private String remoteDir;
+
+    @Before
+    public void setup() throws InterruptedException, ConnectionException, IOException {
+        LOG.error("Begin to start server.");
+        sftpServer = new SftpServer();
+        String uuid = sftpServer.getUuid();
+        CountDownLatch countDownLatch = new CountDownLatch(1);
+        sftpServer.setupSftpServer(uuid, countDownLatch);
+        countDownLatch.await();
+        connectionBean = ConnectionBeanBuilder.builder().port(sftpServer.getPort(uuid)).build().getConnectionBean();
+        manager = PooledClientConnectionManager.builder()
+                .setBorrowMaxWaitTimeMS(8000)
+                .build(connectionBean, ISftpConnection.class);
+        sftpConnection = new SftpImpl();
+        sftpConnection.connect(connectionBean, 10000);
+        remoteDir = sftpConnection.currentDirectory() + "/cache";
+        localDir = Files.createTempDirectory("cache");
+    }
+
+    @After
+    public void shutdown() throws ConnectionException, IOException {
+        LOG.error("Begin to shutdown server.");
+        if (sftpConnection.isExist(remoteDir)) {
+            new SftpTreeWalker(manager, connectionBean, 1).deleteRecursively(remoteDir);
+        }
+        Files.walk(localDir).sorted((a, b) -> b.compareTo(a)).forEach(path -> path.toFile().delete());
+        manager.closeConnection(connectionBean);
+        sftpConnection.disconnect();
+        sftpServer.shutdown();
+    }
+
+    @Test
+    public void should_serve_from_disk_when_remote_file_not_changed() throws ConnectionException, IOException {
+        sftpConnection.upload(remoteDir, "a.txt", new ByteArrayInputStream("aaaaaa".getBytes()));
+        SftpDownloadCache cache = new SftpDownloadCache(manager, connectionBean, localDir, 1024L);
+        assertThat(read(cache.open(remoteDir + "/a.txt")), is("aaaaaa"));
+        assertThat(read(cache.open(remoteDir + "/a.txt")), is("aaaaaa"));
+        assertThat(cache.getMissCount(), is(1L));
+        assertThat(cache.getHitCount(), is(1L));
+    }
+
+    @Test
+    public void should_download_again_when_remote_file_changed() throws ConnectionException, IOException {
+        sftpConnection.upload(remoteDir, "a.txt", new ByteArrayInputStream("aaaaaa".getBytes()));
+        SftpDownloadCache cache = new SftpDownloadCache(manager, connectionBean, localDir, 1024L);
+        read(cache.open(remoteDir + "/a.txt"));
+        sftpConnection.upload(remoteDir, "a.txt", new ByteArrayInputStream("changed".getBytes()));
+        assertThat(read(cache.open(remoteDir + "/a.txt")), is("changed"));
+        assertThat(cache.getMissCount(), is(2L));
+        assertThat(cache.getCachedBytes(), is(7L));
+    }
+
+    @Test
+    public void should_evict_least_recently_used_when_over_budget() throws ConnectionException, IOException {
+        sftpConnection.upload(remoteDir, "a.txt", new ByteArrayInputStream("aaaaaa".getBytes()));
+        sftpConnection.upload(remoteDir, "b.txt", new ByteArrayInputStream("bbbbbb".getBytes()));
+        SftpDownloadCache cache = new SftpDownloadCache(manager, connectionBean, localDir, 10L);
+        read(cache.open(remoteDir + "/a.txt"));
+        read(cache.open(remoteDir + "/b.txt"));
+        assertThat(cache.getCachedBytes(), is(6L));
+        read(cache.open(remoteDir + "/b.txt"));
+        read(cache.open(remoteDir + "/a.txt"));
+        assertThat(cache.getHitCount(), is(1L));
+        assertThat(cache.getMissCount(), is(3L));
+    }
+
+    @Test
+    public void should_not_cache_file_when_file_is_larger_than_budget() throws ConnectionException, IOException {
+        sftpConnection.upload(remoteDir, "a.txt", new ByteArrayInputStream("aaaaaa".getBytes()));
+        SftpDownloadCache cache = new SftpDownloadCache(manager, connectionBean, localDir, 4L);
+        assertThat(read(cache.open(remoteDir + "/a.txt")), is("aaaaaa"));
+        assertThat(cache.getCachedBytes(), is(0L));
+        assertThat(Files.list(localDir).count(), is(0L));
+    }
+
+    @Test
+    public void should_download_once_when_open_same_file_concurrently()
+            throws ConnectionException, InterruptedException, ExecutionException {
+        sftpConnection.upload(remoteDir, "a.txt", new ByteArrayInputStream(new byte[512 * 1024]));
+        SftpDownloadCache cache = new SftpDownloadCache(manager, connectionBean, localDir, 1024 * 1024L);
+        ExecutorService executor = Executors.newFixedThreadPool(THREAD_COUNT);
+        try {
+            List<Future<String>> futures = new ArrayList<>();
+            for (int i = 0; i < THREAD_COUNT; i++) {
+                futures.add(executor.submit(() -> read(cache.open(remoteDir + "/a.txt"))));
+            }
+            for (Future<String> future : futures) {
+                assertThat(future.get().length(), is(512 * 1024));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertThat(cache.getMissCount(), is(1L));
+    }
+
+    @Test
+    public void should_download_each_copy_when_open_file_larger_than_budget_concurrently()
+            throws ConnectionException, InterruptedException, ExecutionException {
+        sftpConnection.upload(remoteDir, "a.txt", new ByteArrayInputStream(new byte[512 * 1024]));
+        SftpDownloadCache cache = new SftpDownloadCache(manager, connectionBean, localDir, 1024L);
+        ExecutorService executor = Executors.newFixedThreadPool(THREAD_COUNT);
+        try {
+            List<Future<String>> futures = new ArrayList<>();
+            for (int i = 0; i < THREAD_COUNT; i++) {
+                futures.add(executor.submit(() -> read(cache.open(remoteDir + "/a.txt"))));
+            }
+            for (Future<String> future : futures) {
+                assertThat(future.get().length(), is(512 * 1024));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertThat(cache.getMissCount(), is((long) THREAD_COUNT));
+        assertThat(cache.getCachedBytes(), is(0L));
+    }
+
+    @Test
+    public void should_fail_waiting_opens_when_download_throws_runtime_exception()
+            throws ConnectionException, InterruptedException, TimeoutException {
+        sftpConnection.upload(remoteDir, "a.txt", new ByteArrayInputStream("a".getBytes()));
+        IConnectionManager brokenManager = (IConnectionManager) Proxy.newProxyInstance(
+                IConnectionManager.class.getClassLoader(), new Class<?>[]{IConnectionManager.class},
+                (proxy, method, args) -> {
+                    Object result = invoke(method, manager, args);
+                    return "borrowConnection".equals(method.getName()) ? brokenDownload((ISftpConnection) result)
+                            : result;
+                });
+        SftpDownloadCache cache = new SftpDownloadCache(brokenManager, connectionBean, localDir, 1024L);
+        ExecutorService executor = Executors.newFixedThreadPool(THREAD_COUNT);
+        try {
+            List<Future<String>> futures = new ArrayList<>();
+            for (int i = 0; i < THREAD_COUNT; i++) {
+                futures.add(executor.submit(() -> read(cache.open(remoteDir + "/a.txt"))));
+            }
+            int failed = 0;
+            for (Future<String> future : futures) {
+                try {
+                    future.get(WAIT_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+                } catch (ExecutionException e) {
+                    failed++;
+                }
+            }
+            assertThat(failed, is(THREAD_COUNT));
+        } finally {
+            executor.shutdownNow();
+        }
+        assertThat(cache.getCachedBytes(), is(0L));
+    }
+
+    private static ISftpConnection brokenDownload(ISftpConnection connection) {
+        return (ISftpConnection) Proxy.newProxyInstance(ISftpConnection.class.getClassLoader(),
+                new Class<?>[]{ISftpConnection.class}, (proxy, method, args) -> {
+                    if ("download".equals(method.getName())) {
+                        // Slow enough for the other opens to wait for this download.
+                        Thread.sleep(200L);
+                        throw new IllegalStateException("The download is broken.");
+                    }
+                    return invoke(method, connection, args);
+                });
+    }
+
+    private static Object invoke(Method method, Object target, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static String read(InputStream in) throws IOException {
+        try (InputStream input = in) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int size;
+            while ((size = input.read(buffer)) != -1) {
+                out.write(buffer, 0, size);
+            }
+            return out.toString();
+        }
+    }
+}
@@ -6,9 +6,12 @@ package com.xvzhu.connections.sftp;
 
 import com.xvzhu.connections.apis.ConnectionBean;
 import com.xvzhu.connections.apis.ConnectionException;
+import com.xvzhu.connections.apis.protocol.ChecksumAlgorithm;
 import com.xvzhu.connections.apis.protocol.ISftpConnection;
 import com.xvzhu.connections.data.ConnectionBeanBuilder;
 import com.xvzhu.connections.mockserver.SftpServer;
+import com.xvzhu.connections.monitor.TransferMonitor;
+import com.xvzhu.connections.operation.BandwidthThrottle;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Rule;
@@ -23,14 +26,25 @@ import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Random;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import static org.hamcrest.core.Is.is;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 /**
  * @author : xvzhu
@@ -44,6 +58,7 @@ public class SftpImplTest {
     public ExpectedException expectedException = ExpectedException.none();
     private SftpServer sftpServer;
     private ISftpConnection sftpConnection;
+    private ConnectionBean connectionBean;
 
     @Before
     public void sftpImplTest() throws InterruptedException, ConnectionException {
@@ -54,7 +69,7 @@ public class SftpImplTest {
         sftpServer.setupSftpServer(uuid, countDownLatch);
         countDownLatch.await();
         int port = sftpServer.getPort(uuid);
-        ConnectionBean connectionBean = ConnectionBeanBuilder.builder().port(port).build().getConnectionBean();
+        connectionBean = ConnectionBeanBuilder.builder().port(port).build().getConnectionBean();
         sftpConnection = new SftpImpl();
         sftpConnection.connect(connectionBean, 10000);
     }
@@ -119,6 +134,32 @@ public class SftpImplTest {
         assertThat(sftpConnection.isDirectory(parentPath), is(false));
     }
 
+    @Test
+    public void should_make_deep_dir_when_parent_exists() throws ConnectionException {
+        String parentPath = sftpConnection.currentDirectory() + "/com";
+        String deepPath = parentPath + "/a/b";
+        sftpConnection.mkdirs(parentPath);
+        sftpConnection.mkdirs(deepPath + "/");
+        assertThat(sftpConnection.isDirectory(deepPath), is(true));
+        assertThat(SftpDirectoryCache.of(connectionBean).contains(deepPath), is(true));
+
+        sftpConnection.deleteDirectory(deepPath);
+        assertThat(SftpDirectoryCache.of(connectionBean).contains(deepPath), is(false));
+        sftpConnection.deleteDirectory(parentPath + "/a");
+        sftpConnection.deleteDirectory(parentPath);
+        assertThat(sftpConnection.isDirectory(parentPath), is(false));
+    }
+
+    @Test
+    public void should_not_throw_exception_when_mkdirs_existing_dir() throws ConnectionException {
+        String path = sftpConnection.currentDirectory() + "/test";
+        sftpConnection.mkdirs(path);
+        SftpDirectoryCache.of(connectionBean).clear();
+        sftpConnection.mkdirs(path);
+        assertThat(sftpConnection.isDirectory(path), is(true));
+        sftpConnection.deleteDirectory(path);
+    }
+
     @Test
     public void should_successfully_when_upload_file() throws ConnectionException, IOException {
         byte[] input = "Go go go, fire in the hole".getBytes();
@@ -242,9 +283,9 @@ public class SftpImplTest {
         String path = sftpConnection.currentDirectory() + "/test";
 
         sftpConnection.upload(path, "test.txt", inputStream);
-        assertThat(sftpConnection.isFile(sftpConnection.currentDirectory() + "/test.txt"), is(true));
+        assertThat(sftpConnection.isFile(path + "/test.txt"), is(true));
 
-        List<String> files = sftpConnection.list(sftpConnection.currentDirectory());
+        List<String> files = sftpConnection.list(path);
         // conaint . and .. path.
         assertThat(files.size(), is(3));
 
@@ -262,6 +303,259 @@ public class SftpImplTest {
         assertThat(files.size(), is(0));
     }
 
+    @Test
+    public void should_transfer_through_channels_when_upload_and_download_by_channel() throws ConnectionException {
+        byte[] input = "Go go go, fire in the hole".getBytes();
+        String dir = sftpConnection.currentDirectory();
+        long uploaded = sftpConnection.upload(dir, "test.txt", Channels.newChannel(new ByteArrayInputStream(input)));
+        assertThat(uploaded, is((long) input.length));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long downloaded = sftpConnection.download(dir, "test.txt", Channels.newChannel(out));
+        assertThat(downloaded, is((long) input.length));
+        assertThat(new String(out.toByteArray()), is(new String(input)));
+
+        sftpConnection.deleteFile(dir, "test.txt");
+        assertThat(sftpConnection.isExist(dir + "/test.txt"), is(false));
+    }
+
+    @Test
+    public void should_upload_mapped_file_when_upload_local_file() throws ConnectionException, IOException {
+        byte[] input = "Go go go, fire in the hole".getBytes();
+        Path localFile = Files.createTempFile("sftp", ".txt");
+        Files.write(localFile, input);
+        String dir = sftpConnection.currentDirectory();
+        try {
+            assertThat(sftpConnection.upload(dir, "test.txt", localFile), is((long) input.length));
+            byte[] download = inputStreamToByteArray(sftpConnection.download(dir, "test.txt"));
+            assertThat(new String(download), is(new String(input)));
+        } finally {
+            Files.deleteIfExists(localFile);
+            sftpConnection.deleteFile(dir, "test.txt");
+        }
+    }
+
+    @Test
+    public void should_return_same_checksum_when_compute_remote_and_local_file() throws ConnectionException, IOException {
+        Path localFile = Files.createTempFile("sftp", ".txt");
+        Files.write(localFile, "Go go go, fire in the hole".getBytes());
+        String dir = sftpConnection.currentDirectory();
+        try {
+            sftpConnection.upload(dir, "test.txt", localFile);
+            for (ChecksumAlgorithm algorithm : ChecksumAlgorithm.values()) {
+                assertThat(sftpConnection.checksum(dir + "/test.txt", algorithm), is(algorithm.checksum(localFile)));
+            }
+        } finally {
+            Files.deleteIfExists(localFile);
+            sftpConnection.deleteFile(dir, "test.txt");
+        }
+    }
+
+    @Test
+    public void should_throw_connection_exception_when_compute_checksum_of_non_exists_file() throws ConnectionException {
+        expectedException.expect(ConnectionException.class);
+        sftpConnection.checksum(sftpConnection.currentDirectory() + "/test.txt", ChecksumAlgorithm.SHA256);
+    }
+
+    @Test
+    public void should_upload_only_changed_content_when_upload_if_changed() throws ConnectionException, IOException {
+        Path localFile = Files.createTempFile("sftp", ".txt");
+        Files.write(localFile, "aaaa".getBytes());
+        String dir = sftpConnection.currentDirectory();
+        try {
+            assertTrue(sftpConnection.uploadIfChanged(dir, "test.txt", localFile, ChecksumAlgorithm.SHA256));
+            assertFalse(sftpConnection.uploadIfChanged(dir, "test.txt", localFile, ChecksumAlgorithm.SHA256));
+            Files.write(localFile, "bbbb".getBytes());
+            assertTrue(sftpConnection.uploadIfChanged(dir, "test.txt", localFile, ChecksumAlgorithm.SHA256));
+            byte[] download = inputStreamToByteArray(sftpConnection.download(dir, "test.txt"));
+            assertThat(new String(download), is("bbbb"));
+        } finally {
+            Files.deleteIfExists(localFile);
+            sftpConnection.deleteFile(dir, "test.txt");
+        }
+    }
+
+    @Test
+    public void should_read_only_the_range_when_read_with_offset() throws ConnectionException {
+        String dir = sftpConnection.currentDirectory();
+        try {
+            sftpConnection.upload(dir, "test.txt", new ByteArrayInputStream("0123456789".getBytes()));
+            ByteBuffer heap = ByteBuffer.allocate(4);
+            assertThat(sftpConnection.read(dir + "/test.txt", 3, 10, heap), is(4));
+            assertThat(new String(heap.array()), is("3456"));
+            ByteBuffer direct = ByteBuffer.allocateDirect(8);
+            assertThat(sftpConnection.read(dir + "/test.txt", 7, 8, direct), is(3));
+            direct.flip();
+            byte[] tail = new byte[direct.remaining()];
+            direct.get(tail);
+            assertThat(new String(tail), is("789"));
+            assertThat(sftpConnection.read(dir + "/test.txt", 10, 8, ByteBuffer.allocate(8)), is(-1));
+        } finally {
+            sftpConnection.deleteFile(dir, "test.txt");
+        }
+    }
+
+    @Test
+    public void should_read_from_position_when_read_by_seekable_channel() throws ConnectionException, IOException {
+        String dir = sftpConnection.currentDirectory();
+        try {
+            sftpConnection.upload(dir, "test.txt", new ByteArrayInputStream("0123456789".getBytes()));
+            try (SeekableByteChannel channel = sftpConnection.openChannel(dir + "/test.txt")) {
+                assertThat(channel.size(), is(10L));
+                ByteBuffer buffer = ByteBuffer.allocate(2);
+                channel.read(buffer);
+                assertThat(new String(buffer.array()), is("01"));
+                buffer.clear();
+                channel.read(buffer);
+                assertThat(new String(buffer.array()), is("23"));
+                buffer.clear();
+                channel.position(8).read(buffer);
+                assertThat(new String(buffer.array()), is("89"));
+                assertThat(channel.position(), is(10L));
+                buffer.clear();
+                assertThat(channel.read(buffer), is(-1));
+            }
+        } finally {
+            sftpConnection.deleteFile(dir, "test.txt");
+        }
+    }
+
+    @Test
+    public void should_record_transfer_statistic_when_upload_and_download() throws ConnectionException, IOException {
+        byte[] input = "Go go go, fire in the hole".getBytes();
+        String dir = sftpConnection.currentDirectory();
+        TransferMonitor.getInstance().reset(connectionBean);
+        try {
+            sftpConnection.upload(dir, "test.txt", new ByteArrayInputStream(input));
+            try (InputStream in = sftpConnection.download(dir, "test.txt")) {
+                inputStreamToByteArray(in);
+            }
+            assertThat(TransferMonitor.getInstance().getSummary(connectionBean).getTransfers().get(), is(2L));
+            assertThat(TransferMonitor.getInstance().getSummary(connectionBean).getBytes().get(),
+                    is(2L * input.length));
+        } finally {
+            TransferMonitor.getInstance().reset(connectionBean);
+            sftpConnection.deleteFile(dir, "test.txt");
+        }
+    }
+
+    @Test
+    public void should_record_transfer_statistic_when_upload_and_download_tree()
+            throws ConnectionException, IOException {
+        Path localDir = Files.createTempDirectory("tree");
+        Path downloadDir = Files.createTempDirectory("tree");
+        String remoteDir = sftpConnection.currentDirectory() + "/target/tree_" + System.nanoTime();
+        TransferMonitor.getInstance().reset(connectionBean);
+        try {
+            Files.write(localDir.resolve("a.bin"), new byte[10000]);
+            sftpConnection.uploadTree(localDir, remoteDir);
+            sftpConnection.downloadTree(remoteDir, downloadDir);
+            // The archives are counted with their headers and padding.
+            assertThat(TransferMonitor.getInstance().getSummary(connectionBean).getTransfers().get(), is(2L));
+            assertTrue(TransferMonitor.getInstance().getSummary(connectionBean).getBytes().get() >= 20000L);
+        } finally {
+            TransferMonitor.getInstance().reset(connectionBean);
+            deleteLocalTree(localDir);
+            deleteLocalTree(downloadDir);
+            deleteLocalTree(new File(remoteDir).toPath());
+        }
+    }
+
+    @Test
+    public void should_limit_upload_rate_when_host_limit_is_set() throws ConnectionException {
+        byte[] input = new byte[64 * 1024];
+        String dir = sftpConnection.currentDirectory();
+        BandwidthThrottle.getInstance().setHostLimit(connectionBean, 32 * 1024L);
+        try {
+            long begin = System.currentTimeMillis();
+            sftpConnection.upload(dir, "test.txt", new ByteArrayInputStream(input));
+            // One second of burst, the rest is limited to 32KB/s.
+            assertTrue(System.currentTimeMillis() - begin >= 900L);
+        } finally {
+            BandwidthThrottle.getInstance().setHostLimit(connectionBean, 0L);
+            sftpConnection.deleteFile(dir, "test.txt");
+        }
+    }
+
+    @Test
+    public void should_throw_connection_exception_when_download_non_exists_file_by_channel() throws ConnectionException {
+        expectedException.expect(ConnectionException.class);
+        sftpConnection.download(sftpConnection.currentDirectory(), "test.txt",
+                Channels.newChannel(new ByteArrayOutputStream()));
+    }
+
+    @Test
+    public void should_stream_filtered_entries_with_attributes_when_list_by_consumer() throws ConnectionException {
+        String path = sftpConnection.currentDirectory() + "/test";
+        sftpConnection.upload(path, "a.txt", new ByteArrayInputStream("a".getBytes()));
+        sftpConnection.upload(path, "b.log", new ByteArrayInputStream("bb".getBytes()));
+        List<String> names = new ArrayList<>();
+        sftpConnection.list(path, name -> name.endsWith(".log"), entry -> {
+            names.add(entry.getFilename());
+            assertThat(entry.getAttrs().getSize(), is(2L));
+            return true;
+        });
+        assertThat(names.size(), is(1));
+        assertThat(names.get(0), is("b.log"));
+
+        sftpConnection.deleteFile(path, "a.txt");
+        sftpConnection.deleteFile(path, "b.log");
+        sftpConnection.deleteDirectory(path);
+    }
+
+    @Test
+    public void should_stop_listing_when_consumer_return_false() throws ConnectionException {
+        String path = sftpConnection.currentDirectory() + "/test";
+        sftpConnection.upload(path, "a.txt", new ByteArrayInputStream("a".getBytes()));
+        sftpConnection.upload(path, "b.txt", new ByteArrayInputStream("b".getBytes()));
+        List<String> names = new ArrayList<>();
+        sftpConnection.list(path, name -> true, entry -> {
+            names.add(entry.getFilename());
+            return false;
+        });
+        assertThat(names.size(), is(1));
+
+        sftpConnection.deleteFile(path, "a.txt");
+        sftpConnection.deleteFile(path, "b.txt");
+        sftpConnection.deleteDirectory(path);
+    }
+
+    @Test
+    public void should_throw_connection_exception_when_stream_list_not_exists() throws ConnectionException {
+        expectedException.expect(ConnectionException.class);
+        sftpConnection.list(sftpConnection.currentDirectory() + "/test", name -> true, entry -> true);
+    }
+
+    @Test
+    public void should_keep_current_directory_when_operate_on_other_directory() throws ConnectionException {
+        String home = sftpConnection.currentDirectory();
+        String path = home + "/test/com";
+        sftpConnection.upload(path, "test.txt", new ByteArrayInputStream("test".getBytes()));
+        sftpConnection.download(path, "test.txt");
+        sftpConnection.deleteFile(path, "test.txt");
+        sftpConnection.deleteDirectory(path);
+        sftpConnection.deleteDirectory(home + "/test");
+        assertThat(sftpConnection.currentDirectory(), is(home));
+    }
+
+    @Test
+    public void should_change_directory_when_change_to_other_directory() throws ConnectionException {
+        String home = sftpConnection.currentDirectory();
+        String path = home + "/test";
+        sftpConnection.mkdirs(path);
+        sftpConnection.changeDirectory(path);
+        assertThat(sftpConnection.currentDirectory(), is(path));
+        sftpConnection.changeDirectory(home);
+        assertThat(sftpConnection.currentDirectory(), is(home));
+        sftpConnection.deleteDirectory(path);
+    }
+
+    @Test
+    public void should_throw_connection_exception_when_change_to_non_exists_directory() throws ConnectionException {
+        expectedException.expect(ConnectionException.class);
+        sftpConnection.changeDirectory(sftpConnection.currentDirectory() + "/test");
+    }
+
     @Test
     public void should_return_closed_status_when_connection_was_closed() throws ConnectionException {
         assertTrue(sftpConnection.isValid());
@@ -287,4 +581,171 @@ public class SftpImplTest {
         }
         return out.toByteArray();
     }
-}
\ No newline at end of file
+
+    @Test
+    public void should_transfer_whole_tree_when_upload_and_download_tree() throws ConnectionException, IOException {
+        Path localDir = Files.createTempDirectory("tree");
+        Path downloadDir = Files.createTempDirectory("tree");
+        String remoteDir = sftpConnection.currentDirectory() + "/target/tree_" + System.nanoTime();
+        StringBuilder longName = new StringBuilder();
+        for (int i = 0; i < 130; i++) {
+            longName.append((char) ('a' + i % 26));
+        }
+        byte[] large = new byte[70000];
+        new Random(7).nextBytes(large);
+        try {
+            Files.write(localDir.resolve("a.txt"), "a".getBytes());
+            Files.createDirectories(localDir.resolve("b/c"));
+            Files.createDirectories(localDir.resolve("empty"));
+            Files.write(localDir.resolve("b/large.bin"), large);
+            Files.write(localDir.resolve("b/c/" + longName), "long".getBytes());
+            assertThat(sftpConnection.uploadTree(localDir, remoteDir), is(3L));
+            assertTrue(sftpConnection.isFile(remoteDir + "/b/c/" + longName));
+            assertTrue(sftpConnection.isDirectory(remoteDir + "/empty"));
+
+            assertThat(sftpConnection.downloadTree(remoteDir, downloadDir), is(3L));
+            assertThat(new String(Files.readAllBytes(downloadDir.resolve("a.txt"))), is("a"));
+            assertTrue(Arrays.equals(Files.readAllBytes(downloadDir.resolve("b/large.bin")), large));
+            assertThat(new String(Files.readAllBytes(downloadDir.resolve("b/c/" + longName))), is("long"));
+            assertTrue(Files.isDirectory(downloadDir.resolve("empty")));
+        } finally {
+            deleteLocalTree(localDir);
+            deleteLocalTree(downloadDir);
+            deleteLocalTree(new File(remoteDir).toPath());
+        }
+    }
+
+    @Test
+    public void should_copy_file_and_directory_on_server_when_copy() throws ConnectionException, IOException {
+        String root = sftpConnection.currentDirectory() + "/target/copy_" + System.nanoTime();
+        Path rootPath = new File(root).toPath();
+        try {
+            Files.createDirectories(rootPath.resolve("src/sub"));
+            Files.write(rootPath.resolve("src/a.txt"), "a".getBytes());
+            Files.write(rootPath.resolve("src/sub/b.txt"), "b".getBytes());
+            sftpConnection.copy(root + "/src/a.txt", root + "/a-copy.txt");
+            assertThat(new String(Files.readAllBytes(rootPath.resolve("a-copy.txt"))), is("a"));
+            sftpConnection.copy(root + "/src", root + "/dst");
+            assertThat(new String(Files.readAllBytes(rootPath.resolve("dst/sub/b.txt"))), is("b"));
+            assertTrue(Files.exists(rootPath.resolve("src/sub/b.txt")));
+            expectedException.expect(ConnectionException.class);
+            sftpConnection.copy(root + "/src", root + "/dst");
+        } finally {
+            deleteLocalTree(rootPath);
+        }
+    }
+
+    @Test
+    public void should_merge_directories_by_renames_when_move_onto_existing_directory()
+            throws ConnectionException, IOException {
+        String root = sftpConnection.currentDirectory() + "/target/move_" + System.nanoTime();
+        Path rootPath = new File(root).toPath();
+        try {
+            Files.createDirectories(rootPath.resolve("src/sub"));
+            Files.createDirectories(rootPath.resolve("dst/sub"));
+            Files.write(rootPath.resolve("src/a.txt"), "new".getBytes());
+            Files.write(rootPath.resolve("src/sub/b.txt"), "b".getBytes());
+            Files.write(rootPath.resolve("dst/a.txt"), "old".getBytes());
+            Files.write(rootPath.resolve("dst/sub/c.txt"), "c".getBytes());
+            sftpConnection.move(root + "/src", root + "/dst");
+            assertFalse(Files.exists(rootPath.resolve("src")));
+            assertThat(new String(Files.readAllBytes(rootPath.resolve("dst/a.txt"))), is("new"));
+            assertTrue(Files.exists(rootPath.resolve("dst/sub/b.txt")));
+            assertTrue(Files.exists(rootPath.resolve("dst/sub/c.txt")));
+            sftpConnection.move(root + "/dst", root + "/moved");
+            assertTrue(Files.exists(rootPath.resolve("moved/sub/b.txt")));
+        } finally {
+            deleteLocalTree(rootPath);
+        }
+    }
+
+    @Test
+    public void should_copy_on_server_when_connection_has_no_timeout() throws ConnectionException, IOException {
+        String root = sftpConnection.currentDirectory() + "/target/no_timeout_" + System.nanoTime();
+        Path rootPath = new File(root).toPath();
+        ISftpConnection connection = new SftpImpl();
+        connection.connect(connectionBean, 0);
+        try {
+            Files.createDirectories(rootPath);
+            Files.write(rootPath.resolve("a.txt"), "a".getBytes());
+            FileTime modified = FileTime.from(946684800L, TimeUnit.SECONDS);
+            Files.setLastModifiedTime(rootPath.resolve("a.txt"), modified);
+            connection.copy(root + "/a.txt", root + "/b.txt");
+            // Only the remote cp -p keeps the modified time, the copy through the client does not.
+            assertThat(Files.getLastModifiedTime(rootPath.resolve("b.txt")), is(modified));
+        } finally {
+            connection.disconnect();
+            deleteLocalTree(rootPath);
+        }
+    }
+
+    @Test
+    public void should_copy_through_client_when_remote_commands_are_not_available()
+            throws ConnectionException, IOException {
+        String root = sftpConnection.currentDirectory() + "/target/client_copy_" + System.nanoTime();
+        Path rootPath = new File(root).toPath();
+        ((SftpImpl) sftpConnection).disableCommand("cp");
+        ((SftpImpl) sftpConnection).disableCommand("tar");
+        try {
+            Files.createDirectories(rootPath.resolve("src/sub/empty"));
+            Files.write(rootPath.resolve("src/a.txt"), "a".getBytes());
+            Files.write(rootPath.resolve("src/sub/b.txt"), "b".getBytes());
+            sftpConnection.copy(root + "/src/a.txt", root + "/a-copy.txt");
+            assertThat(new String(Files.readAllBytes(rootPath.resolve("a-copy.txt"))), is("a"));
+            sftpConnection.copy(root + "/src", root + "/dst");
+            assertThat(new String(Files.readAllBytes(rootPath.resolve("dst/a.txt"))), is("a"));
+            assertThat(new String(Files.readAllBytes(rootPath.resolve("dst/sub/b.txt"))), is("b"));
+            assertTrue(Files.isDirectory(rootPath.resolve("dst/sub/empty")));
+        } finally {
+            deleteLocalTree(rootPath);
+        }
+    }
+
+    @Test
+    public void should_refuse_file_copy_when_target_is_directory() throws ConnectionException, IOException {
+        String root = sftpConnection.currentDirectory() + "/target/copy_into_" + System.nanoTime();
+        Path rootPath = new File(root).toPath();
+        try {
+            Files.createDirectories(rootPath.resolve("dst"));
+            Files.write(rootPath.resolve("a.txt"), "a".getBytes());
+            assertCopyRefused(root + "/a.txt", root + "/dst");
+            // The copy through the client refuses the directory target the same way.
+            ((SftpImpl) sftpConnection).disableCommand("cp");
+            assertCopyRefused(root + "/a.txt", root + "/dst");
+            assertFalse(Files.exists(rootPath.resolve("dst/a.txt")));
+        } finally {
+            deleteLocalTree(rootPath);
+        }
+    }
+
+    private void assertCopyRefused(String source, String target) {
+        try {
+            sftpConnection.copy(source, target);
+            fail("The file was copied onto the directory.");
+        } catch (ConnectionException e) {
+            LOG.error("The copy is refused.", e);
+        }
+    }
+
+    @Test
+    public void should_replace_target_file_when_move_onto_existing_file() throws ConnectionException, IOException {
+        String root = sftpConnection.currentDirectory() + "/target/replace_" + System.nanoTime();
+        Path rootPath = new File(root).toPath();
+        try {
+            Files.createDirectories(rootPath);
+            Files.write(rootPath.resolve("a.txt"), "new".getBytes());
+            Files.write(rootPath.resolve("b.txt"), "old".getBytes());
+            sftpConnection.move(root + "/a.txt", root + "/b.txt");
+            assertFalse(Files.exists(rootPath.resolve("a.txt")));
+            assertThat(new String(Files.readAllBytes(rootPath.resolve("b.txt"))), is("new"));
+        } finally {
+            deleteLocalTree(rootPath);
+        }
+    }
+
+    private static void deleteLocalTree(Path root) throws IOException {
+        if (Files.exists(root)) {
+            Files.walk(root).sorted((a, b) -> b.compareTo(a)).forEach(path -> path.toFile().delete());
+        }
+    }
+}
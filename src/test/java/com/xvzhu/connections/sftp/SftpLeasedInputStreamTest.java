@@ -0,0 +1,178 @@
+/*
+ * Copyright (c)  Xvzhu 2020.  All rights reserved.
+ */
+
+package com.xvzhu.connections.sftp;
+
+import com.xvzhu.connections.BasicClientConnectionManager;
+import com.xvzhu.connections.PooledClientConnectionManager;
+import com.xvzhu.connections.apis.ConnectionBean;
+import com.xvzhu.connections.apis.ConnectionException;
+import com.xvzhu.connections.apis.IConnectionManager;
+import com.xvzhu.connections.apis.protocol.IConnection;
+import com.xvzhu.connections.apis.protocol.ISftpConnection;
+import com.xvzhu.connections.data.ConnectionBeanBuilder;
+import com.xvzhu.connections.mockserver.SftpServer;
+import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * @author : xvzhu
+ * @version V1.0
+ * @since Date : 2020-04-03 20:10
+ */
+public class SftpLeasedInputStreamTest {
+    private static final Logger LOG = LoggerFactory.getLogger(SftpLeasedInputStreamTest.class);
+    @Rule
+    public ExpectedException expectedException = ExpectedException.none();
+    private SftpServer sftpServer;
+    private ConnectionBean connectionBean;
+    private IConnectionManager manager;
+    private ISftpConnection sftpConnection;
+    private String remoteDir;
+
+    @Before
+    public void setup() throws InterruptedException, ConnectionException, IOException {
+        LOG.error("Begin to start server.");
+        sftpServer = new SftpServer();
+        String uuid = sftpServer.getUuid();
+        CountDownLatch countDownLatch = new CountDownLatch(1);
+        sftpServer.setupSftpServer(uuid, countDownLatch);
+        countDownLatch.await();
+        connectionBean = ConnectionBeanBuilder.builder().port(sftpServer.getPort(uuid)).build().getConnectionBean();
+        GenericObjectPoolConfig<IConnection> config = new GenericObjectPoolConfig<>();
+        config.setMaxTotal(1);
+        manager = PooledClientConnectionManager.builder()
+                .setConnectionConfig(config)
+                .setBorrowMaxWaitTimeMS(8000)
+                .build(connectionBean, ISftpConnection.class);
+        sftpConnection = new SftpImpl();
+        sftpConnection.connect(connectionBean, 10000);
+        remoteDir = sftpConnection.currentDirectory() + "/leased";
+    }
+
+    @After
+    public void shutdown() throws ConnectionException, IOException {
+        LOG.error("Begin to shutdown server.");
+        if (sftpConnection.isExist(remoteDir)) {
+            new SftpTreeWalker(manager, connectionBean, 1).deleteRecursively(remoteDir);
+        }
+        manager.closeConnection(connectionBean);
+        sftpConnection.disconnect();
+        sftpServer.shutdown();
+    }
+
+    @Test
+    public void should_release_connection_when_reach_end_of_file() throws ConnectionException, IOException {
+        byte[] content = new byte[100 * 1024];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) i;
+        }
+        sftpConnection.upload(remoteDir, "a.bin", new ByteArrayInputStream(content));
+        SftpLeasedInputStream in = SftpLeasedInputStream.open(manager, connectionBean, remoteDir, "a.bin", 4096);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int value;
+        while ((value = in.read()) >= 0) {
+            out.write(value);
+        }
+        assertThat(in.isReleased(), is(true));
+        assertThat(out.toByteArray(), is(content));
+        assertThat(manager.borrowConnection(connectionBean, ISftpConnection.class).isExist(remoteDir), is(true));
+        manager.releaseConnection(connectionBean);
+    }
+
+    @Test
+    public void should_keep_returning_end_of_file_when_read_again_after_end() throws ConnectionException, IOException {
+        sftpConnection.upload(remoteDir, "a.txt", new ByteArrayInputStream("aaaaaa".getBytes()));
+        SftpLeasedInputStream in = SftpLeasedInputStream.open(manager, connectionBean, remoteDir, "a.txt", 4);
+        byte[] bytes = new byte[3];
+        int total = 0;
+        int size;
+        while ((size = in.read(bytes, 0, bytes.length)) >= 0) {
+            total += size;
+        }
+        assertThat(total, is(6));
+        assertThat(in.isReleased(), is(true));
+        assertThat(in.read(), is(-1));
+        assertThat(in.read(), is(-1));
+        assertThat(in.read(bytes, 0, bytes.length), is(-1));
+        assertThat(in.read(new byte[16], 0, 16), is(-1));
+        in.close();
+        expectedException.expect(IOException.class);
+        in.read();
+    }
+
+    @Test
+    public void should_release_connection_when_closed_by_other_thread()
+            throws ConnectionException, IOException, InterruptedException, ExecutionException {
+        sftpConnection.upload(remoteDir, "a.txt", new ByteArrayInputStream("aaaaaa".getBytes()));
+        SftpLeasedInputStream in = SftpLeasedInputStream.open(manager, connectionBean, remoteDir, "a.txt");
+        assertThat(in.read(), is((int) 'a'));
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            executor.submit(() -> {
+                in.close();
+                return null;
+            }).get();
+        } finally {
+            executor.shutdown();
+        }
+        assertThat(in.isReleased(), is(true));
+        SftpLeasedInputStream again = SftpLeasedInputStream.open(manager, connectionBean, remoteDir, "a.txt");
+        byte[] bytes = new byte[16];
+        assertThat(new String(bytes, 0, again.read(bytes)), is("aaaaaa"));
+        again.close();
+        again.close();
+    }
+
+    @Test
+    public void should_refuse_second_stream_when_basic_manager_hands_back_leased_connection()
+            throws ConnectionException, IOException {
+        sftpConnection.upload(remoteDir, "a.txt", new ByteArrayInputStream("aaaaaa".getBytes()));
+        IConnectionManager basicManager = BasicClientConnectionManager.builder().setAutoInspect(false).build();
+        SftpLeasedInputStream in = SftpLeasedInputStream.open(basicManager, connectionBean, remoteDir, "a.txt");
+        try {
+            SftpLeasedInputStream.open(basicManager, connectionBean, remoteDir, "a.txt");
+            fail("The leased connection was handed to a second stream.");
+        } catch (ConnectionException e) {
+            LOG.error("The second stream is refused.", e);
+        }
+        // The first stream keeps its lease.
+        assertThat(in.isReleased(), is(false));
+        byte[] bytes = new byte[16];
+        assertThat(new String(bytes, 0, in.read(bytes)), is("aaaaaa"));
+        assertThat(in.read(), is(-1));
+        assertThat(in.isReleased(), is(true));
+        SftpLeasedInputStream again = SftpLeasedInputStream.open(basicManager, connectionBean, remoteDir, "a.txt");
+        again.close();
+        basicManager.closeConnection(connectionBean);
+    }
+
+    @Test(expected = ConnectionException.class)
+    public void should_release_connection_when_open_failed() throws ConnectionException, IOException {
+        try {
+            SftpLeasedInputStream.open(manager, connectionBean, remoteDir, "missing.txt");
+        } finally {
+            assertThat(manager.borrowConnection(connectionBean, ISftpConnection.class).isExist(remoteDir), is(false));
+            manager.releaseConnection(connectionBean);
+        }
+    }
+}
@@ -0,0 +1,191 @@
+/*
+ * Copyright (c)  Xvzhu 2020.  All rights reserved.
+ */
+
+package com.xvzhu.connections.sftp;
+
+import com.jcraft.jsch.ChannelSftp;
+import com.xvzhu.connections.PooledClientConnectionManager;
+import com.xvzhu.connections.apis.ConnectionBean;
+import com.xvzhu.connections.apis.ConnectionException;
+import com.xvzhu.connections.apis.IConnectionManager;
+import com.xvzhu.connections.apis.ISubscriber;
+import com.xvzhu.connections.apis.ISubscription;
+import com.xvzhu.connections.apis.protocol.IConnection;
+import com.xvzhu.connections.apis.protocol.ISftpConnection;
+import com.xvzhu.connections.data.ConnectionBeanBuilder;
+import com.xvzhu.connections.mockserver.SftpServer;
+import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author : xvzhu
+ * @version V1.0
+ * @since Date : 2020-04-05 16:30
+ */
+public class SftpPublisherTest {
+    private static final Logger LOG = LoggerFactory.getLogger(SftpPublisherTest.class);
+    private static final long EVENT_TIMEOUT_MS = 5000L;
+    private SftpServer sftpServer;
+    private ConnectionBean connectionBean;
+    private IConnectionManager manager;
+    private ISftpConnection sftpConnection;
+    private String remoteDir;
+    private ExecutorService executor = Executors.newCachedThreadPool();
+
+    @Before
+    public void setup() throws InterruptedException, ConnectionException, IOException {
+        LOG.error("Begin to start server.");
+        sftpServer = new SftpServer();
+        String uuid = sftpServer.getUuid();
+        CountDownLatch countDownLatch = new CountDownLatch(1);
+        sftpServer.setupSftpServer(uuid, countDownLatch);
+        countDownLatch.await();
+        connectionBean = ConnectionBeanBuilder.builder().port(sftpServer.getPort(uuid)).build().getConnectionBean();
+        GenericObjectPoolConfig<IConnection> config = new GenericObjectPoolConfig<>();
+        config.setMaxTotal(1);
+        manager = PooledClientConnectionManager.builder()
+                .setConnectionConfig(config)
+                .setBorrowMaxWaitTimeMS(8000)
+                .build(connectionBean, ISftpConnection.class);
+        sftpConnection = new SftpImpl();
+        sftpConnection.connect(connectionBean, 10000);
+        remoteDir = sftpConnection.currentDirectory() + "/publisher";
+    }
+
+    @After
+    public void shutdown() throws ConnectionException, IOException {
+        LOG.error("Begin to shutdown server.");
+        if (sftpConnection.isExist(remoteDir)) {
+            new SftpTreeWalker(manager, connectionBean, 1).deleteRecursively(remoteDir);
+        }
+        executor.shutdownNow();
+        manager.closeConnection(connectionBean);
+        sftpConnection.disconnect();
+        sftpServer.shutdown();
+    }
+
+    @Test
+    public void should_publish_file_content_when_request_one_by_one() throws ConnectionException, InterruptedException {
+        byte[] content = new byte[10 * 1024 + 7];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) i;
+        }
+        sftpConnection.upload(remoteDir, "a.bin", new ByteArrayInputStream(content));
+        CollectingSubscriber<ByteBuffer> subscriber = new CollectingSubscriber<>(1L);
+        SftpPublisher.download(manager, connectionBean, remoteDir + "/a.bin", 1024, executor).subscribe(subscriber);
+        assertTrue(subscriber.done.await(EVENT_TIMEOUT_MS, TimeUnit.MILLISECONDS));
+        assertNull(subscriber.error);
+        assertThat(subscriber.items.size(), is(11));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (ByteBuffer buffer : subscriber.items) {
+            out.write(buffer.array(), buffer.position(), buffer.remaining());
+        }
+        assertThat(out.toByteArray(), is(content));
+        assertTrue(manager.borrowConnection(connectionBean, ISftpConnection.class).isExist(remoteDir + "/a.bin"));
+        manager.releaseConnection(connectionBean);
+    }
+
+    @Test
+    public void should_complete_without_demand_when_file_is_multiple_of_chunk_size()
+            throws ConnectionException, InterruptedException {
+        sftpConnection.upload(remoteDir, "a.bin", new ByteArrayInputStream(new byte[4096]));
+        CollectingSubscriber<ByteBuffer> subscriber = new CollectingSubscriber<>(0L);
+        SftpPublisher.download(manager, connectionBean, remoteDir + "/a.bin", 1024, executor).subscribe(subscriber);
+        subscriber.subscription.request(4L);
+        assertTrue(subscriber.done.await(EVENT_TIMEOUT_MS, TimeUnit.MILLISECONDS));
+        assertNull(subscriber.error);
+        assertThat(subscriber.items.size(), is(4));
+    }
+
+    @Test
+    public void should_release_connection_when_subscription_cancelled() throws ConnectionException, InterruptedException {
+        sftpConnection.upload(remoteDir, "a.bin", new ByteArrayInputStream(new byte[4096]));
+        CollectingSubscriber<ByteBuffer> subscriber = new CollectingSubscriber<>(0L);
+        SftpPublisher.download(manager, connectionBean, remoteDir + "/a.bin", 1024, executor).subscribe(subscriber);
+        subscriber.subscription.request(1L);
+        subscriber.subscription.cancel();
+        ISftpConnection connection = manager.borrowConnection(connectionBean, ISftpConnection.class);
+        assertTrue(connection.isExist(remoteDir + "/a.bin"));
+        manager.releaseConnection(connectionBean);
+        assertTrue(subscriber.items.size() <= 1);
+    }
+
+    @Test
+    public void should_publish_entries_when_list_directory() throws ConnectionException, InterruptedException {
+        sftpConnection.upload(remoteDir, "a.txt", new ByteArrayInputStream("a".getBytes()));
+        sftpConnection.upload(remoteDir, "b.txt", new ByteArrayInputStream("b".getBytes()));
+        CollectingSubscriber<ChannelSftp.LsEntry> subscriber = new CollectingSubscriber<>(Long.MAX_VALUE);
+        SftpPublisher.list(manager, connectionBean, remoteDir, executor).subscribe(subscriber);
+        assertTrue(subscriber.done.await(EVENT_TIMEOUT_MS, TimeUnit.MILLISECONDS));
+        List<String> names = new ArrayList<>();
+        for (ChannelSftp.LsEntry entry : subscriber.items) {
+            names.add(entry.getFilename());
+        }
+        Collections.sort(names);
+        assertThat(names.toString(), is("[a.txt, b.txt]"));
+    }
+
+    /**
+     * The subscriber requesting the given count on subscribe and after each item.
+     */
+    private static class CollectingSubscriber<T> implements ISubscriber<T> {
+        private final long batch;
+        private final List<T> items = Collections.synchronizedList(new ArrayList<>());
+        private final CountDownLatch done = new CountDownLatch(1);
+        private volatile ISubscription subscription;
+        private volatile Throwable error;
+
+        CollectingSubscriber(long batch) {
+            this.batch = batch;
+        }
+
+        @Override
+        public void onSubscribe(ISubscription subscription) {
+            this.subscription = subscription;
+            if (batch > 0) {
+                subscription.request(batch);
+            }
+        }
+
+        @Override
+        public void onNext(T item) {
+            items.add(item);
+            if (batch > 0 && batch != Long.MAX_VALUE) {
+                subscription.request(batch);
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error = throwable;
+            done.countDown();
+        }
+
+        @Override
+        public void onComplete() {
+            done.countDown();
+        }
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright (c)  Xvzhu 2020.  All rights reserved.
+ */
+
+package com.xvzhu.connections.sftp;
+
+import com.xvzhu.connections.PooledClientConnectionManager;
+import com.xvzhu.connections.apis.ConnectionBean;
+import com.xvzhu.connections.apis.ConnectionException;
+import com.xvzhu.connections.apis.IConnectionManager;
+import com.xvzhu.connections.apis.protocol.ChecksumAlgorithm;
+import com.xvzhu.connections.apis.protocol.IConnection;
+import com.xvzhu.connections.apis.protocol.ISftpConnection;
+import com.xvzhu.connections.data.ConnectionBeanBuilder;
+import com.xvzhu.connections.mockserver.SftpServer;
+import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.concurrent.CountDownLatch;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * @author : xvzhu
+ * @version V1.0
+ * @since Date : 2020-03-23 22:15
+ */
+public class SftpSynchronizerTest {
+    private static final Logger LOG = LoggerFactory.getLogger(SftpSynchronizerTest.class);
+    private SftpServer sftpServer;
+    private ConnectionBean connectionBean;
+    private IConnectionManager manager;
+    private ISftpConnection sftpConnection;
+    private Path localDir;
+    private String remoteDir;
+
+    @Before
+    public void setup() throws InterruptedException, ConnectionException, IOException {
+        LOG.error("Begin to start server.");
+        sftpServer = new SftpServer();
+        String uuid = sftpServer.getUuid();
+        CountDownLatch countDownLatch = new CountDownLatch(1);
+        sftpServer.setupSftpServer(uuid, countDownLatch);
+        countDownLatch.await();
+        connectionBean = ConnectionBeanBuilder.builder().port(sftpServer.getPort(uuid)).build().getConnectionBean();
+        manager = PooledClientConnectionManager.builder()
+                .setBorrowMaxWaitTimeMS(8000)
+                .build(connectionBean, ISftpConnection.class);
+        sftpConnection = new SftpImpl();
+        sftpConnection.connect(connectionBean, 10000);
+        remoteDir = sftpConnection.currentDirectory() + "/mirror";
+
+        localDir = Files.createTempDirectory("sync");
+        Files.write(localDir.resolve("a.txt"), "a".getBytes());
+        Files.createDirectories(localDir.resolve("b/c"));
+        Files.write(localDir.resolve("b/b.txt"), "bb".getBytes());
+        Files.write(localDir.resolve("b/c/c.txt"), "ccc".getBytes());
+    }
+
+    @After
+    public void shutdown() throws ConnectionException, IOException {
+        LOG.error("Begin to shutdown server.");
+        if (sftpConnection.isExist(remoteDir)) {
+            new SftpTreeWalker(manager, connectionBean, 1).deleteRecursively(remoteDir);
+        }
+        Files.walk(localDir).sorted((a, b) -> b.compareTo(a)).forEach(path -> path.toFile().delete());
+        manager.closeConnection(connectionBean);
+        sftpConnection.disconnect();
+        sftpServer.shutdown();
+    }
+
+    @Test
+    public void should_upload_all_files_when_remote_tree_not_exists() throws ConnectionException {
+        SftpSyncResult result = new SftpSynchronizer(manager, connectionBean, 4).mirror(localDir, remoteDir, false);
+        assertThat(result.getUploadedFiles().get(), is(3));
+        assertThat(result.getTransferredBytes().get(), is(6L));
+        assertThat(sftpConnection.isFile(remoteDir + "/b/c/c.txt"), is(true));
+    }
+
+    @Test
+    public void should_transfer_nothing_when_sync_unchanged_tree_again() throws ConnectionException {
+        SftpSynchronizer synchronizer = new SftpSynchronizer(manager, connectionBean, 4);
+        synchronizer.mirror(localDir, remoteDir, false);
+
+        SftpSyncResult result = synchronizer.mirror(localDir, remoteDir, false);
+        assertThat(result.getUploadedFiles().get(), is(0));
+        assertThat(result.getSkippedFiles().get(), is(3));
+        assertThat(result.getListedDirectories().get(), is(3));
+    }
+
+    @Test
+    public void should_upload_changed_file_only_when_local_file_changed() throws ConnectionException, IOException {
+        SftpSynchronizer synchronizer = new SftpSynchronizer(manager, connectionBean, 4);
+        synchronizer.mirror(localDir, remoteDir, false);
+        Files.write(localDir.resolve("b/b.txt"), "changed".getBytes());
+
+        SftpSyncResult result = synchronizer.mirror(localDir, remoteDir, false);
+        assertThat(result.getUploadedFiles().get(), is(1));
+        assertThat(result.getSkippedFiles().get(), is(2));
+    }
+
+    @Test
+    public void should_skip_same_content_when_sync_touched_file_with_checksum() throws ConnectionException, IOException {
+        SftpSynchronizer synchronizer = new SftpSynchronizer(manager, connectionBean, 4);
+        synchronizer.mirror(localDir, remoteDir, false);
+        Files.setLastModifiedTime(localDir.resolve("a.txt"), FileTime.fromMillis(System.currentTimeMillis() + 60000L));
+
+        SftpSyncResult result = synchronizer.mirror(localDir, remoteDir, false, ChecksumAlgorithm.MD5);
+        assertThat(result.getUploadedFiles().get(), is(0));
+        assertThat(result.getSkippedFiles().get(), is(3));
+        result = synchronizer.mirror(localDir, remoteDir, false);
+        assertThat(result.getSkippedFiles().get(), is(3));
+    }
+
+    @Test
+    public void should_delete_extraneous_entries_when_delete_is_enabled() throws ConnectionException {
+        sftpConnection.upload(remoteDir, "old.txt", new ByteArrayInputStream("old".getBytes()));
+        sftpConnection.upload(remoteDir + "/old", "old.txt", new ByteArrayInputStream("old".getBytes()));
+
+        SftpSyncResult result = new SftpSynchronizer(manager, connectionBean, 4).mirror(localDir, remoteDir, true);
+        assertThat(result.getDeletedEntries().get(), is(2));
+        assertThat(sftpConnection.isExist(remoteDir + "/old.txt"), is(false));
+        assertThat(sftpConnection.isExist(remoteDir + "/old"), is(false));
+    }
+
+    @Test
+    public void should_keep_extraneous_entries_when_delete_is_disabled() throws ConnectionException {
+        sftpConnection.upload(remoteDir, "old.txt", new ByteArrayInputStream("old".getBytes()));
+
+        new SftpSynchronizer(manager, connectionBean, 4).mirror(localDir, remoteDir, false);
+        assertThat(sftpConnection.isExist(remoteDir + "/old.txt"), is(true));
+    }
+
+    @Test
+    public void should_replace_conflicting_entries_when_pool_is_held_by_workers() throws ConnectionException {
+        sftpConnection.upload(remoteDir + "/a.txt/sub", "x.txt", new ByteArrayInputStream("x".getBytes()));
+        sftpConnection.upload(remoteDir, "b", new ByteArrayInputStream("b".getBytes()));
+        GenericObjectPoolConfig<IConnection> config = new GenericObjectPoolConfig<>();
+        config.setMaxTotal(1);
+        IConnectionManager singleManager = PooledClientConnectionManager.builder()
+                .setConnectionConfig(config)
+                .setBorrowMaxWaitTimeMS(8000)
+                .build(connectionBean, ISftpConnection.class);
+        try {
+            SftpSyncResult result = new SftpSynchronizer(singleManager, connectionBean, 1)
+                    .mirror(localDir, remoteDir, true);
+            assertThat(result.getDeletedEntries().get(), is(2));
+            assertThat(sftpConnection.isFile(remoteDir + "/a.txt"), is(true));
+            assertThat(sftpConnection.isFile(remoteDir + "/b/c/c.txt"), is(true));
+        } finally {
+            singleManager.closeConnection(connectionBean);
+        }
+    }
+}
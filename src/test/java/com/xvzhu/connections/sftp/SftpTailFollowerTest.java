@@ -0,0 +1,158 @@
+/*
+ * Copyright (c)  Xvzhu 2020.  All rights reserved.
+ */
+
+package com.xvzhu.connections.sftp;
+
+import com.jcraft.jsch.ChannelSftp;
+import com.jcraft.jsch.SftpException;
+import com.xvzhu.connections.BasicClientConnectionManager;
+import com.xvzhu.connections.PooledClientConnectionManager;
+import com.xvzhu.connections.apis.ConnectionBean;
+import com.xvzhu.connections.apis.ConnectionException;
+import com.xvzhu.connections.apis.IConnectionManager;
+import com.xvzhu.connections.apis.protocol.ISftpConnection;
+import com.xvzhu.connections.apis.protocol.ISftpTailListener;
+import com.xvzhu.connections.data.ConnectionBeanBuilder;
+import com.xvzhu.connections.mockserver.SftpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author : xvzhu
+ * @version V1.0
+ * @since Date : 2020-04-04 15:40
+ */
+public class SftpTailFollowerTest {
+    private static final Logger LOG = LoggerFactory.getLogger(SftpTailFollowerTest.class);
+    private static final long EVENT_TIMEOUT_MS = 5000L;
+    private SftpServer sftpServer;
+    private ConnectionBean connectionBean;
+    private IConnectionManager manager;
+    private ISftpConnection sftpConnection;
+    private SftpTailFollower follower;
+    private String remoteDir;
+
+    @Before
+    public void setup() throws InterruptedException, ConnectionException, IOException {
+        LOG.error("Begin to start server.");
+        sftpServer = new SftpServer();
+        String uuid = sftpServer.getUuid();
+        CountDownLatch countDownLatch = new CountDownLatch(1);
+        sftpServer.setupSftpServer(uuid, countDownLatch);
+        countDownLatch.await();
+        connectionBean = ConnectionBeanBuilder.builder().port(sftpServer.getPort(uuid)).build().getConnectionBean();
+        manager = PooledClientConnectionManager.builder()
+                .setBorrowMaxWaitTimeMS(8000)
+                .build(connectionBean, ISftpConnection.class);
+        sftpConnection = new SftpImpl();
+        sftpConnection.connect(connectionBean, 10000);
+        remoteDir = sftpConnection.currentDirectory() + "/tail";
+        sftpConnection.mkdirs(remoteDir);
+        follower = new SftpTailFollower(manager, connectionBean, 50L);
+    }
+
+    @After
+    public void shutdown() throws ConnectionException, IOException {
+        LOG.error("Begin to shutdown server.");
+        follower.close();
+        if (sftpConnection.isExist(remoteDir)) {
+            new SftpTreeWalker(manager, connectionBean, 1).deleteRecursively(remoteDir);
+        }
+        manager.closeConnection(connectionBean);
+        sftpConnection.disconnect();
+        sftpServer.shutdown();
+    }
+
+
+    @Test
+    public void should_deliver_appended_lines_when_follow_from_end() throws Exception {
+        sftpConnection.upload(remoteDir, "a.log", new ByteArrayInputStream("old\n".getBytes()));
+        BlockingQueue<String> lines = new LinkedBlockingQueue<>();
+        follower.follow(remoteDir + "/a.log", new QueueListener(lines), true);
+        follower.start();
+        assertThat(follower.getOffset(remoteDir + "/a.log"), is(4L));
+
+        append("a.log", "first\r\nsec");
+        assertThat(lines.poll(EVENT_TIMEOUT_MS, TimeUnit.MILLISECONDS), is("first"));
+        append("a.log", "ond\n");
+        assertThat(lines.poll(EVENT_TIMEOUT_MS, TimeUnit.MILLISECONDS), is("second"));
+        assertNull(lines.poll(200L, TimeUnit.MILLISECONDS));
+        assertThat(follower.getOffset(remoteDir + "/a.log"), is(18L));
+    }
+
+    @Test
+    public void should_read_from_beginning_when_file_rotated() throws Exception {
+        sftpConnection.upload(remoteDir, "a.log", new ByteArrayInputStream("one\ntwo\n".getBytes()));
+        sftpConnection.upload(remoteDir, "b.log", new ByteArrayInputStream("b1\n".getBytes()));
+        BlockingQueue<String> lines = new LinkedBlockingQueue<>();
+        follower.follow(remoteDir + "/a.log", new QueueListener(lines), false);
+        follower.start();
+        assertThat(lines.poll(EVENT_TIMEOUT_MS, TimeUnit.MILLISECONDS), is("one"));
+        assertThat(lines.poll(EVENT_TIMEOUT_MS, TimeUnit.MILLISECONDS), is("two"));
+
+        sftpConnection.upload(remoteDir, "a.log", new ByteArrayInputStream("new\n".getBytes()));
+        assertThat(lines.poll(EVENT_TIMEOUT_MS, TimeUnit.MILLISECONDS), is("rotated"));
+        assertThat(lines.poll(EVENT_TIMEOUT_MS, TimeUnit.MILLISECONDS), is("new"));
+
+        follower.follow(remoteDir + "/b.log", new QueueListener(lines), false);
+        assertThat(lines.poll(EVENT_TIMEOUT_MS, TimeUnit.MILLISECONDS), is("b1"));
+        assertNull(lines.poll(200L, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void should_throw_connection_exception_when_first_poll_failed() throws ConnectionException {
+        // Nothing listens on the port, the borrow of the connection fails.
+        ConnectionBean unreachable = ConnectionBeanBuilder.builder().port(1).build().getConnectionBean();
+        SftpTailFollower unreachableFollower = new SftpTailFollower(
+                BasicClientConnectionManager.builder().setAutoInspect(false).build(), unreachable, 50L);
+        unreachableFollower.follow(remoteDir + "/a.log", new QueueListener(new LinkedBlockingQueue<>()), true);
+        boolean failed = false;
+        try {
+            unreachableFollower.start();
+        } catch (ConnectionException e) {
+            failed = true;
+        } finally {
+            unreachableFollower.close();
+        }
+        assertTrue(failed);
+    }
+
+    private void append(String name, String content) throws SftpException {
+        sftpConnection.getChannelSftp().put(new ByteArrayInputStream(content.getBytes()),
+                remoteDir + "/" + name, ChannelSftp.APPEND);
+    }
+
+    private static class QueueListener implements ISftpTailListener {
+        private final BlockingQueue<String> lines;
+
+        QueueListener(BlockingQueue<String> lines) {
+            this.lines = lines;
+        }
+
+        @Override
+        public void onLine(String path, String line) {
+            lines.add(line);
+        }
+
+        @Override
+        public void onRotated(String path) {
+            lines.add("rotated");
+        }
+    }
+}
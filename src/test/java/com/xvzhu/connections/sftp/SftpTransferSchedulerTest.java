@@ -0,0 +1,131 @@
+/*
+ * Copyright (c)  Xvzhu 2020.  All rights reserved.
+ */
+
+package com.xvzhu.connections.sftp;
+
+import com.xvzhu.connections.PooledClientConnectionManager;
+import com.xvzhu.connections.apis.ConnectionBean;
+import com.xvzhu.connections.apis.ConnectionException;
+import com.xvzhu.connections.apis.IConnectionManager;
+import com.xvzhu.connections.apis.protocol.ISftpConnection;
+import com.xvzhu.connections.data.ConnectionBeanBuilder;
+import com.xvzhu.connections.mockserver.SftpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author : xvzhu
+ * @version V1.0
+ * @since Date : 2020-03-30 21:40
+ */
+public class SftpTransferSchedulerTest {
+    private static final Logger LOG = LoggerFactory.getLogger(SftpTransferSchedulerTest.class);
+    private static final int FILE_COUNT = 6;
+    private SftpServer sftpServer;
+    private ConnectionBean connectionBean;
+    private IConnectionManager manager;
+    private ISftpConnection sftpConnection;
+    private Path localDir;
+    private String remoteDir;
+    private SftpTransferScheduler scheduler;
+
+    @Before
+    public void setup() throws InterruptedException, ConnectionException, IOException {
+        LOG.error("Begin to start server.");
+        sftpServer = new SftpServer();
+        String uuid = sftpServer.getUuid();
+        CountDownLatch countDownLatch = new CountDownLatch(1);
+        sftpServer.setupSftpServer(uuid, countDownLatch);
+        countDownLatch.await();
+        connectionBean = ConnectionBeanBuilder.builder().port(sftpServer.getPort(uuid)).build().getConnectionBean();
+        manager = PooledClientConnectionManager.builder()
+                .setBorrowMaxWaitTimeMS(8000)
+                .build(connectionBean, ISftpConnection.class);
+        sftpConnection = new SftpImpl();
+        sftpConnection.connect(connectionBean, 10000);
+        remoteDir = sftpConnection.currentDirectory() + "/scheduler";
+        localDir = Files.createTempDirectory("scheduler");
+        scheduler = new SftpTransferScheduler(manager, 2, 1);
+    }
+
+    @After
+    public void shutdown() throws ConnectionException, IOException {
+        LOG.error("Begin to shutdown server.");
+        scheduler.shutdown();
+        if (sftpConnection.isExist(remoteDir)) {
+            new SftpTreeWalker(manager, connectionBean, 1).deleteRecursively(remoteDir);
+        }
+        Files.walk(localDir).sorted((a, b) -> b.compareTo(a)).forEach(path -> path.toFile().delete());
+        manager.closeConnection(connectionBean);
+        sftpConnection.disconnect();
+        sftpServer.shutdown();
+    }
+
+    @Test
+    public void should_upload_and_download_file_when_schedule_transfers()
+            throws IOException, ExecutionException, InterruptedException {
+        Path localFile = localDir.resolve("up.txt");
+        Files.write(localFile, "scheduled".getBytes());
+        SftpTransferResult upload = scheduler.upload(connectionBean,
+                new SftpTransferItem(localFile, remoteDir + "/a/up.txt"), TransferPriority.NORMAL).get();
+        assertTrue(upload.isSuccess());
+
+        Path downloadFile = localDir.resolve("down/up.txt");
+        SftpTransferResult download = scheduler.download(connectionBean,
+                new SftpTransferItem(downloadFile, remoteDir + "/a/up.txt"), TransferPriority.LOW).get();
+        assertTrue(download.isSuccess());
+        assertThat(download.getBytes(), is(9L));
+        assertThat(new String(Files.readAllBytes(downloadFile)), is("scheduled"));
+    }
+
+    @Test
+    public void should_start_high_priority_at_once_when_shared_connections_are_busy()
+            throws IOException, ExecutionException, InterruptedException {
+        List<CompletableFuture<SftpTransferResult>> futures = new ArrayList<>();
+        for (int i = 0; i < FILE_COUNT; i++) {
+            Path localFile = localDir.resolve("file" + i + ".txt");
+            Files.write(localFile, new byte[256 * 1024]);
+            futures.add(scheduler.upload(connectionBean,
+                    new SftpTransferItem(localFile, remoteDir + "/file" + i + ".txt"), TransferPriority.LOW));
+        }
+        Path urgentFile = localDir.resolve("urgent.txt");
+        Files.write(urgentFile, "urgent".getBytes());
+        futures.add(scheduler.upload(connectionBean,
+                new SftpTransferItem(urgentFile, remoteDir + "/urgent.txt"), TransferPriority.HIGH));
+        // The reserved connection is free, so the urgent file is not queued behind the backfill.
+        assertThat(scheduler.getQueuedCount(connectionBean, TransferPriority.HIGH), is(0));
+
+        for (CompletableFuture<SftpTransferResult> future : futures) {
+            assertTrue(future.get().isSuccess());
+        }
+        assertTrue(sftpConnection.isExist(remoteDir + "/urgent.txt"));
+    }
+
+    @Test
+    public void should_fail_transfer_when_scheduler_is_shutdown()
+            throws IOException, ExecutionException, InterruptedException {
+        Path localFile = localDir.resolve("up.txt");
+        Files.write(localFile, "scheduled".getBytes());
+        scheduler.shutdown();
+        SftpTransferResult result = scheduler.upload(connectionBean,
+                new SftpTransferItem(localFile, remoteDir + "/up.txt"), TransferPriority.HIGH).get();
+        assertThat(result.isSuccess(), is(false));
+    }
+}
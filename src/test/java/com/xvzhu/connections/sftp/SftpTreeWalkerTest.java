@@ -0,0 +1,99 @@
+/*
+ * Copyright (c)  Xvzhu 2020.  All rights reserved.
+ */
+
+package com.xvzhu.connections.sftp;
+
+import com.xvzhu.connections.PooledClientConnectionManager;
+import com.xvzhu.connections.apis.ConnectionBean;
+import com.xvzhu.connections.apis.ConnectionException;
+import com.xvzhu.connections.apis.IConnectionManager;
+import com.xvzhu.connections.apis.protocol.ISftpConnection;
+import com.xvzhu.connections.data.ConnectionBeanBuilder;
+import com.xvzhu.connections.mockserver.SftpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * @author : xvzhu
+ * @version V1.0
+ * @since Date : 2020-03-22 15:10
+ */
+public class SftpTreeWalkerTest {
+    private static final Logger LOG = LoggerFactory.getLogger(SftpTreeWalkerTest.class);
+    @Rule
+    public ExpectedException expectedException = ExpectedException.none();
+    private SftpServer sftpServer;
+    private ConnectionBean connectionBean;
+    private IConnectionManager manager;
+    private ISftpConnection sftpConnection;
+    private String root;
+
+    @Before
+    public void setup() throws InterruptedException, ConnectionException {
+        LOG.error("Begin to start server.");
+        sftpServer = new SftpServer();
+        String uuid = sftpServer.getUuid();
+        CountDownLatch countDownLatch = new CountDownLatch(1);
+        sftpServer.setupSftpServer(uuid, countDownLatch);
+        countDownLatch.await();
+        connectionBean = ConnectionBeanBuilder.builder().port(sftpServer.getPort(uuid)).build().getConnectionBean();
+        manager = PooledClientConnectionManager.builder()
+                .setBorrowMaxWaitTimeMS(8000)
+                .build(connectionBean, ISftpConnection.class);
+        sftpConnection = new SftpImpl();
+        sftpConnection.connect(connectionBean, 10000);
+        root = sftpConnection.currentDirectory() + "/walker";
+        sftpConnection.upload(root, "a.txt", new ByteArrayInputStream("a".getBytes()));
+        sftpConnection.upload(root + "/b", "b.txt", new ByteArrayInputStream("bb".getBytes()));
+        sftpConnection.upload(root + "/b/c", "c.txt", new ByteArrayInputStream("ccc".getBytes()));
+        sftpConnection.upload(root + "/d", "a.txt", new ByteArrayInputStream("dddd".getBytes()));
+    }
+
+    @After
+    public void shutdown() throws ConnectionException {
+        LOG.error("Begin to shutdown server.");
+        if (sftpConnection.isExist(root)) {
+            new SftpTreeWalker(manager, connectionBean, 1).deleteRecursively(root);
+        }
+        manager.closeConnection(connectionBean);
+        sftpConnection.disconnect();
+        sftpServer.shutdown();
+    }
+
+    @Test
+    public void should_sum_all_file_size_when_calculate_size_of_tree() throws ConnectionException {
+        assertThat(new SftpTreeWalker(manager, connectionBean, 4).size(root), is(10L));
+    }
+
+    @Test
+    public void should_find_all_matched_paths_when_search_tree() throws ConnectionException {
+        List<String> paths = new SftpTreeWalker(manager, connectionBean, 4).search(root, name -> name.equals("a.txt"));
+        assertThat(paths.size(), is(2));
+        assertThat(paths.contains(root + "/d/a.txt"), is(true));
+    }
+
+    @Test
+    public void should_delete_whole_tree_when_delete_recursively() throws ConnectionException {
+        new SftpTreeWalker(manager, connectionBean, 4).deleteRecursively(root);
+        assertThat(sftpConnection.isExist(root), is(false));
+    }
+
+    @Test
+    public void should_throw_connection_exception_when_walk_non_exists_root() throws ConnectionException {
+        expectedException.expect(ConnectionException.class);
+        new SftpTreeWalker(manager, connectionBean, 2).size(root + "/none");
+    }
+}
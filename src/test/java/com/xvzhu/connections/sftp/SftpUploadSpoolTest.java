@@ -0,0 +1,167 @@
+/*
+ * Copyright (c)  Xvzhu 2020.  All rights reserved.
+ */
+
+package com.xvzhu.connections.sftp;
+
+import com.xvzhu.connections.PooledClientConnectionManager;
+import com.xvzhu.connections.apis.ConnectionBean;
+import com.xvzhu.connections.apis.ConnectionException;
+import com.xvzhu.connections.apis.IConnectionManager;
+import com.xvzhu.connections.apis.protocol.ISftpConnection;
+import com.xvzhu.connections.data.ConnectionBeanBuilder;
+import com.xvzhu.connections.mockserver.SftpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CountDownLatch;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author : xvzhu
+ * @version V1.0
+ * @since Date : 2020-03-31 21:45
+ */
+public class SftpUploadSpoolTest {
+    private static final Logger LOG = LoggerFactory.getLogger(SftpUploadSpoolTest.class);
+    private static final int FILE_COUNT = 5;
+    private static final long WAIT_TIMEOUT_MS = 20000L;
+    private SftpServer sftpServer;
+    private ConnectionBean connectionBean;
+    private IConnectionManager manager;
+    private ISftpConnection sftpConnection;
+    private Path localDir;
+    private String remoteDir;
+
+    @Before
+    public void setup() throws InterruptedException, ConnectionException, IOException {
+        LOG.error("Begin to start server.");
+        sftpServer = new SftpServer();
+        String uuid = sftpServer.getUuid();
+        CountDownLatch countDownLatch = new CountDownLatch(1);
+        sftpServer.setupSftpServer(uuid, countDownLatch);
+        countDownLatch.await();
+        connectionBean = ConnectionBeanBuilder.builder().port(sftpServer.getPort(uuid)).build().getConnectionBean();
+        manager = PooledClientConnectionManager.builder()
+                .setBorrowMaxWaitTimeMS(8000)
+                .build(connectionBean, ISftpConnection.class);
+        sftpConnection = new SftpImpl();
+        sftpConnection.connect(connectionBean, 10000);
+        remoteDir = sftpConnection.currentDirectory() + "/spool";
+        localDir = Files.createTempDirectory("spool");
+    }
+
+    @After
+    public void shutdown() throws ConnectionException, IOException {
+        LOG.error("Begin to shutdown server.");
+        if (sftpConnection.isExist(remoteDir)) {
+            new SftpTreeWalker(manager, connectionBean, 1).deleteRecursively(remoteDir);
+        }
+        Files.walk(localDir).sorted((a, b) -> b.compareTo(a)).forEach(path -> path.toFile().delete());
+        manager.closeConnection(connectionBean);
+        sftpConnection.disconnect();
+        sftpServer.shutdown();
+    }
+
+    @Test
+    public void should_upload_spooled_files_when_spool_is_started()
+            throws ConnectionException, IOException, InterruptedException {
+        SftpUploadSpool spool = new SftpUploadSpool(manager, connectionBean, localDir, 2);
+        for (int i = 0; i < FILE_COUNT; i++) {
+            spool.submit(new ByteArrayInputStream(("file" + i).getBytes()), remoteDir + "/file" + i + ".txt");
+        }
+        assertThat(spool.getPendingCount(), is(FILE_COUNT));
+        spool.start();
+        try {
+            awaitDrained(spool);
+        } finally {
+            spool.close();
+        }
+        for (int i = 0; i < FILE_COUNT; i++) {
+            assertTrue(sftpConnection.isFile(remoteDir + "/file" + i + ".txt"));
+        }
+        assertThat(Files.list(localDir).filter(Files::isRegularFile).count(), is(0L));
+    }
+
+    @Test
+    public void should_recover_spooled_files_when_spool_is_restarted()
+            throws ConnectionException, IOException, InterruptedException {
+        SftpUploadSpool stoppedSpool = new SftpUploadSpool(manager, connectionBean, localDir, 1);
+        stoppedSpool.submit(new ByteArrayInputStream("recovered".getBytes()), remoteDir + "/recovered.txt");
+        Files.write(localDir.resolve("0000000000001-000000000.data.tmp"), "unfinished".getBytes());
+        Thread.sleep(10L);
+
+        SftpUploadSpool spool = new SftpUploadSpool(manager, connectionBean, localDir, 1);
+        spool.start();
+        try {
+            assertThat(spool.getPendingCount(), is(1));
+            awaitDrained(spool);
+        } finally {
+            spool.close();
+        }
+        assertTrue(sftpConnection.isFile(remoteDir + "/recovered.txt"));
+        assertThat(Files.list(localDir).filter(Files::isRegularFile).count(), is(0L));
+    }
+
+    @Test
+    public void should_move_to_failed_directory_when_upload_always_fails()
+            throws ConnectionException, IOException, InterruptedException {
+        sftpConnection.upload(remoteDir, "file", new ByteArrayInputStream("file".getBytes()));
+        SftpUploadSpool spool = new SftpUploadSpool(manager, connectionBean, localDir, 1, 10L, 100L, 2);
+        spool.start();
+        try {
+            spool.submit(new ByteArrayInputStream("child".getBytes()), remoteDir + "/file/child.txt");
+            awaitDrained(spool);
+        } finally {
+            spool.close();
+        }
+        assertThat(Files.list(localDir.resolve("failed")).count(), is(2L));
+    }
+
+    @Test
+    public void should_keep_working_when_upload_throws_runtime_exception()
+            throws ConnectionException, IOException, InterruptedException {
+        IConnectionManager brokenManager = (IConnectionManager) Proxy.newProxyInstance(
+                IConnectionManager.class.getClassLoader(), new Class<?>[]{IConnectionManager.class},
+                (proxy, method, args) -> {
+                    if ("borrowConnection".equals(method.getName())) {
+                        throw new IllegalStateException("The manager is broken.");
+                    }
+                    try {
+                        return method.invoke(manager, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+        SftpUploadSpool spool = new SftpUploadSpool(brokenManager, connectionBean, localDir, 1, 10L, 100L, 2);
+        spool.start();
+        try {
+            spool.submit(new ByteArrayInputStream("a".getBytes()), remoteDir + "/a.txt");
+            spool.submit(new ByteArrayInputStream("b".getBytes()), remoteDir + "/b.txt");
+            awaitDrained(spool);
+        } finally {
+            spool.close();
+        }
+        assertThat(Files.list(localDir.resolve("failed")).count(), is(4L));
+    }
+
+    private static void awaitDrained(SftpUploadSpool spool) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + WAIT_TIMEOUT_MS;
+        while (spool.getPendingCount() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20L);
+        }
+        assertThat(spool.getPendingCount(), is(0));
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright (c)  Xvzhu 2020.  All rights reserved.
+ */
+
+package com.xvzhu.connections.shell;
+
+import com.xvzhu.connections.BasicClientConnectionManager;
+import com.xvzhu.connections.PooledClientConnectionManager;
+import com.xvzhu.connections.apis.ConnectionBean;
+import com.xvzhu.connections.apis.ConnectionException;
+import com.xvzhu.connections.apis.IConnectionManager;
+import com.xvzhu.connections.apis.protocol.IShellConnection;
+import com.xvzhu.connections.data.ConnectionBeanBuilder;
+import com.xvzhu.connections.mockserver.SftpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author : xvzhu
+ * @version V1.0
+ * @since Date : 2020-04-07 11:30
+ */
+public class ShellFanOutTest {
+    private static final Logger LOG = LoggerFactory.getLogger(ShellFanOutTest.class);
+
+    @Rule
+    public ExpectedException expectedException = ExpectedException.none();
+    private SftpServer sftpServer;
+    private ConnectionBean connectionBean;
+    private IConnectionManager manager;
+    private ShellFanOut fanOut;
+
+    @Before
+    public void setup() throws InterruptedException, ConnectionException {
+        LOG.error("Begin to start server.");
+        sftpServer = new SftpServer();
+        connectionBean = startServer(sftpServer);
+        manager = PooledClientConnectionManager.builder()
+                .setBorrowMaxWaitTimeMS(8000)
+                .build(connectionBean, IShellConnection.class);
+        fanOut = new ShellFanOut(manager, 4, 2);
+    }
+
+    @After
+    public void shutdown() throws ConnectionException {
+        LOG.error("Begin to shutdown server.");
+        fanOut.shutdown();
+        manager.closeConnection(connectionBean);
+        sftpServer.shutdown();
+    }
+
+    @Test
+    public void should_stream_results_and_summary_when_run_on_hosts() throws ConnectionException {
+        List<HostExecResult> results = new ArrayList<>();
+        FanOutSummary summary = fanOut.execute(Collections.nCopies(6, connectionBean), "echo hi", 5000, results::add);
+        assertThat(results.size(), is(6));
+        for (HostExecResult result : results) {
+            assertTrue(result.isSuccess());
+            assertThat(result.getResult().getStdout(), is("hi\n"));
+        }
+        assertThat(summary.getTotal(), is(6));
+        assertThat(summary.getSucceeded(), is(6));
+        assertTrue(summary.getP50Millis() <= summary.getP99Millis());
+        assertTrue(summary.getP99Millis() <= summary.getMaxMillis());
+    }
+
+    @Test
+    public void should_limit_commands_of_host_when_run_on_same_host() throws ConnectionException {
+        FanOutSummary summary = fanOut.execute(Collections.nCopies(4, connectionBean), "sleep 0.5", 5000,
+                result -> assertTrue(result.isSuccess()));
+        // Two rounds of two commands, the host never runs more than two at the same time.
+        assertTrue(summary.getElapsedMillis() >= 1000L);
+    }
+
+    @Test
+    public void should_report_failure_when_command_timed_out() throws ConnectionException {
+        List<HostExecResult> results = new ArrayList<>();
+        FanOutSummary summary = fanOut.execute(Collections.nCopies(2, connectionBean), "sleep 3", 200, results::add);
+        assertThat(summary.getFailed(), is(2));
+        assertFalse(results.get(0).isSuccess());
+        assertTrue(results.get(0).getFailure() != null);
+    }
+
+    @Test
+    public void should_report_failure_in_time_when_borrow_is_slower_than_timeout() throws ConnectionException {
+        IConnectionManager slowManager = (IConnectionManager) Proxy.newProxyInstance(
+                IConnectionManager.class.getClassLoader(), new Class<?>[]{IConnectionManager.class},
+                (proxy, method, args) -> {
+                    if ("borrowConnection".equals(method.getName())) {
+                        // Like the handshake with an unreachable host.
+                        Thread.sleep(3000L);
+                    }
+                    try {
+                        return method.invoke(manager, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+        ShellFanOut slowFanOut = new ShellFanOut(slowManager, 4, 2);
+        try {
+            List<HostExecResult> results = new ArrayList<>();
+            FanOutSummary summary = slowFanOut.execute(Collections.nCopies(2, connectionBean), "echo hi", 200,
+                    results::add);
+            assertThat(summary.getFailed(), is(2));
+            assertTrue(results.get(0).getFailure() != null);
+            assertTrue(summary.getElapsedMillis() < 2000L);
+        } finally {
+            slowFanOut.shutdown();
+        }
+    }
+
+    @Test
+    public void should_run_on_each_host_when_manager_connects_by_connection_bean()
+            throws InterruptedException, ConnectionException {
+        SftpServer otherServer = new SftpServer();
+        ConnectionBean otherBean = startServer(otherServer);
+        IConnectionManager basicManager = BasicClientConnectionManager.builder().setAutoInspect(false).build();
+        ShellFanOut basicFanOut = new ShellFanOut(basicManager, 4, 2);
+        try {
+            FanOutSummary summary = basicFanOut.execute(Arrays.asList(connectionBean, otherBean), "echo hi", 5000,
+                    result -> assertTrue(result.isSuccess()));
+            assertThat(summary.getSucceeded(), is(2));
+            // Only the commands sent to the stopped server fail, so each command went to its own host.
+            otherServer.shutdown();
+            List<HostExecResult> results = new ArrayList<>();
+            basicFanOut.execute(Arrays.asList(connectionBean, otherBean), "echo hi", 5000, results::add);
+            assertThat(results.size(), is(2));
+            for (HostExecResult result : results) {
+                assertThat(result.isSuccess(), is(result.getConnectionBean().equals(connectionBean)));
+            }
+        } finally {
+            basicFanOut.shutdown();
+            basicManager.closeConnection(connectionBean);
+            basicManager.closeConnection(otherBean);
+            otherServer.shutdown();
+        }
+    }
+
+    @Test
+    public void should_throw_connection_exception_when_pooled_manager_fans_out_to_many_hosts()
+            throws ConnectionException {
+        ConnectionBean otherBean = ConnectionBeanBuilder.builder().port(connectionBean.getPort() + 1).build()
+                .getConnectionBean();
+        expectedException.expect(ConnectionException.class);
+        fanOut.execute(Arrays.asList(connectionBean, otherBean), "echo hi", 5000, result -> {
+        });
+    }
+
+    private static ConnectionBean startServer(SftpServer server) throws InterruptedException {
+        String uuid = server.getUuid();
+        CountDownLatch countDownLatch = new CountDownLatch(1);
+        server.setupSftpServer(uuid, countDownLatch);
+        countDownLatch.await();
+        return ConnectionBeanBuilder.builder().port(server.getPort(uuid)).build().getConnectionBean();
+    }
+}
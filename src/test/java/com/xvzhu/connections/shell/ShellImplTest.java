@@ -6,6 +6,7 @@ package com.xvzhu.connections.shell;
 
 import com.xvzhu.connections.apis.ConnectionBean;
 import com.xvzhu.connections.apis.ConnectionException;
+import com.xvzhu.connections.apis.protocol.ExecResult;
 import com.xvzhu.connections.apis.protocol.IShellConnection;
 import com.xvzhu.connections.data.ConnectionBeanBuilder;
 import com.xvzhu.connections.mockserver.SftpServer;
@@ -16,10 +17,16 @@ import org.junit.Test;
 import org.junit.rules.ExpectedException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import static org.hamcrest.core.Is.is;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -71,4 +78,106 @@ public class ShellImplTest {
         assertFalse(shellConnection.isValid());
         assertTrue(shellConnection.isClosed());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void should_return_exit_status_and_output_when_exec_command() throws ConnectionException {
+        ExecResult result = shellConnection.exec("echo hello; echo oops 1>&2; exit 3", 5000);
+        assertThat(result.getExitStatus(), is(3));
+        assertThat(result.getStdout(), is("hello\n"));
+        assertThat(result.getStderr(), is("oops\n"));
+        assertFalse(result.isTruncated());
+        assertTrue(shellConnection.exec("true", 5000).isSuccess());
+    }
+
+    @Test
+    public void should_truncate_output_when_output_is_over_limit() throws ConnectionException {
+        ExecResult result = shellConnection.exec("head -c 100000 /dev/zero", 5000);
+        assertTrue(result.isSuccess());
+        assertTrue(result.isTruncated());
+        assertThat(result.getStdout().length(), is(64 * 1024));
+    }
+
+    @Test
+    public void should_throw_connection_exception_when_exec_timed_out() throws ConnectionException {
+        expectedException.expect(ConnectionException.class);
+        shellConnection.exec("sleep 3", 300);
+    }
+
+    @Test
+    public void should_run_commands_in_sequence_when_exec_in_shell() throws ConnectionException {
+        List<ExecResult> results = shellConnection.execInShell(
+                Arrays.asList("cd /tmp; X=1", "echo $X; pwd", "printf abc; echo oops 1>&2; false", "printf ''"), 5000);
+        assertThat(results.get(0).getExitStatus(), is(0));
+        assertThat(results.get(1).getStdout(), is("1\n/tmp\n"));
+        assertThat(results.get(2).getExitStatus(), is(1));
+        assertThat(results.get(2).getStdout(), is("abcoops\n"));
+        assertThat(results.get(3).getStdout(), is(""));
+        assertThat(shellConnection.execInShell("echo $X", 5000).getStdout(), is("1\n"));
+    }
+
+    @Test
+    public void should_open_new_shell_when_previous_command_timed_out() throws ConnectionException {
+        boolean timedOut = false;
+        try {
+            shellConnection.execInShell("sleep 3", 300);
+        } catch (ConnectionException e) {
+            timedOut = true;
+        }
+        assertTrue(timedOut);
+        ExecResult result = shellConnection.execInShell("echo again", 5000);
+        assertThat(result.getStdout(), is("again\n"));
+    }
+
+    @Test
+    public void should_stream_lines_of_stdout_and_stderr_when_exec_with_consumer() throws ConnectionException {
+        List<String> lines = new ArrayList<>();
+        int exitStatus = shellConnection.exec("echo hello; echo oops 1>&2; echo; printf 'a\\r\\nb'; exit 2", 5000,
+                (line, stderr) -> lines.add((stderr ? "err:" : "out:") + line));
+        assertThat(exitStatus, is(2));
+        assertThat(lines.size(), is(5));
+        assertTrue(lines.containsAll(Arrays.asList("out:hello", "err:oops", "out:", "out:a", "out:b")));
+    }
+
+    @Test
+    public void should_stop_command_when_consumer_returns_false() throws ConnectionException {
+        AtomicInteger count = new AtomicInteger();
+        int exitStatus = shellConnection.exec("seq 1 1000000", 5000, (line, stderr) -> count.incrementAndGet() < 10);
+        assertThat(exitStatus, is(-1));
+        assertThat(count.get(), is(10));
+        assertTrue(shellConnection.exec("true", 5000).isSuccess());
+    }
+
+    @Test
+    public void should_stream_lines_when_exec_in_shell_with_consumer() throws ConnectionException {
+        List<String> lines = new ArrayList<>();
+        assertThat(shellConnection.execInShell("echo a; echo; echo; printf b", 5000,
+                (line, stderr) -> lines.add(line.toString())), is(0));
+        assertThat(lines, is(Arrays.asList("a", "", "", "b")));
+        lines.clear();
+        assertThat(shellConnection.execInShell("echo c; echo", 5000,
+                (line, stderr) -> lines.add(line.toString())), is(0));
+        assertThat(lines, is(Arrays.asList("c", "")));
+        assertThat(shellConnection.execInShell("seq 1 1000", 5000, (line, stderr) -> false), is(-1));
+        assertThat(shellConnection.execInShell("echo again", 5000).getStdout(), is("again\n"));
+    }
+
+    @Test
+    public void should_deliver_long_line_in_pieces_when_exec_in_shell_with_consumer() throws ConnectionException {
+        List<String> lines = new ArrayList<>();
+        assertThat(shellConnection.execInShell("head -c 150000 /dev/zero | tr '\\0' x; echo; echo end", 5000,
+                (line, stderr) -> lines.add(line.toString())), is(0));
+        assertThat(lines.size(), is(4));
+        assertThat(lines.get(0).length() + lines.get(1).length() + lines.get(2).length(), is(150000));
+        assertThat(lines.get(0).length(), is(64 * 1024));
+        assertThat(lines.get(3), is("end"));
+    }
+
+    @Test
+    public void should_truncate_long_line_when_exec_in_shell() throws ConnectionException {
+        List<ExecResult> results = shellConnection.execInShell(
+                Arrays.asList("head -c 150000 /dev/zero | tr '\\0' x; echo", "echo end"), 5000);
+        assertTrue(results.get(0).isTruncated());
+        assertThat(results.get(0).getStdout().length(), is(64 * 1024));
+        assertThat(results.get(1).getStdout(), is("end\n"));
+    }
+}